@@ -0,0 +1,147 @@
+package se.danielkonsult.www.kvadratab;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import se.danielkonsult.www.kvadratab.services.data.CompetenceIndex;
+
+/**
+ * Tests for the in-memory index that consultants are filtered on by competence.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CompetenceIndexTests {
+
+    // Private methods
+
+    private static CompetenceIndex createIndex() {
+        Map<Integer, String[]> competences = new HashMap<>();
+        competences.put(1, new String[] { "Java", "Android", "SQL" });
+        competences.put(2, new String[] { " java ", "JavaScript" });
+        competences.put(3, new String[] { "Projektledning", "Ärendehantering" });
+        competences.put(4, null);
+
+        return new CompetenceIndex(competences);
+    }
+
+    private static Set<Integer> ids(Integer... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+
+    // Tests
+
+    /**
+     * Test that competences are found by prefix, regardless of case and surrounding spaces.
+     */
+    @Test
+    public void shouldFindConsultantsByCompetencePrefix() {
+        CompetenceIndex index = createIndex();
+
+        Assert.assertEquals(ids(1, 2), index.getConsultantIds("java"));
+        Assert.assertEquals(ids(2), index.getConsultantIds("JAVAS"));
+        Assert.assertEquals(ids(3), index.getConsultantIds(" ären"));
+        Assert.assertEquals(ids(), index.getConsultantIds("C#"));
+        Assert.assertEquals(ids(), index.getConsultantIds("  "));
+
+        // The competence is named as it was first seen
+        Assert.assertArrayEquals(new String[] { "Java", "JavaScript" }, index.findCompetences("ja"));
+        Assert.assertEquals(6, index.findCompetences(null).length);
+    }
+
+    /**
+     * Test that a filter on several competences only matches the consultants that have
+     * all of them, and that an empty filter doesn't constrain anything.
+     */
+    @Test
+    public void shouldFilterOnAllCompetences() {
+        CompetenceIndex index = createIndex();
+
+        Assert.assertEquals(ids(1, 2), index.getConsultantIds(Arrays.asList("java")));
+        Assert.assertEquals(ids(1), index.getConsultantIds(Arrays.asList("java", "andr")));
+        Assert.assertEquals(ids(), index.getConsultantIds(Arrays.asList("java", "projekt")));
+        Assert.assertEquals(ids(2), index.getConsultantIds(Arrays.asList("javas", " ", "java")));
+
+        Assert.assertNull(index.getConsultantIds(Collections.<String>emptyList()));
+        Assert.assertNull(index.getConsultantIds(Arrays.asList("", " ")));
+    }
+
+    /**
+     * Test that updating a consultant replaces its competences, and that competences
+     * that nobody has any longer disappear.
+     */
+    @Test
+    public void shouldReplaceCompetencesOnUpdate() {
+        CompetenceIndex index = createIndex();
+
+        index.update(2, new String[] { "Kotlin" });
+        Assert.assertEquals(ids(1), index.getConsultantIds("java"));
+        Assert.assertEquals(ids(2), index.getConsultantIds("kot"));
+        Assert.assertArrayEquals(new String[] { "Java" }, index.findCompetences("ja"));
+
+        index.update(4, new String[] { "SQL" });
+        Assert.assertEquals(ids(1, 4), index.getConsultantIds("sql"));
+
+        index.update(1, null);
+        Assert.assertEquals(ids(), index.getConsultantIds("java"));
+        Assert.assertEquals(0, index.findCompetences("and").length);
+    }
+
+    /**
+     * Test that the index can be read while another thread updates it.
+     */
+    @Test
+    public void shouldAllowLookupsDuringUpdates() throws Exception {
+        final CompetenceIndex index = createIndex();
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            futures.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    for (int i = 0; i < 2000; i++)
+                        index.update(100 + (i % 50), new String[] { "Java", "Competence " + i });
+                    return 0;
+                }
+            }));
+            for (int t = 0; t < 2; t++) {
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        int lookups = 0;
+                        for (int i = 0; i < 2000; i++) {
+                            // Consultant 1 is never updated and must always be found
+                            Assert.assertTrue(index.getConsultantIds(Arrays.asList("java", "sql")).contains(1));
+                            index.findCompetences("comp");
+                            lookups++;
+                        }
+                        return lookups;
+                    }
+                }));
+            }
+
+            for (Future<Integer> future : futures)
+                future.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // The two consultants with Java from the start and the fifty updated ones
+        Assert.assertEquals(52, index.getConsultantIds("java").size());
+    }
+}
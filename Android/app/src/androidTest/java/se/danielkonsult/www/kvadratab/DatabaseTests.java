@@ -1,21 +1,56 @@
 package se.danielkonsult.www.kvadratab;
 
+import android.content.ContentValues;
 import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
 
+import com.google.gson.Gson;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import se.danielkonsult.www.kvadratab.entities.ConsultantData;
 import se.danielkonsult.www.kvadratab.entities.ConsultantDetails;
+import se.danielkonsult.www.kvadratab.entities.HttpValidatorData;
+import se.danielkonsult.www.kvadratab.entities.NotificationData;
 import se.danielkonsult.www.kvadratab.entities.OfficeData;
 import se.danielkonsult.www.kvadratab.entities.TagData;
+import se.danielkonsult.www.kvadratab.helpers.db.DbSpec;
 import se.danielkonsult.www.kvadratab.helpers.db.KvadratDb;
+import se.danielkonsult.www.kvadratab.repositories.consultant.ConsultantMatcher;
+import se.danielkonsult.www.kvadratab.repositories.notification.NotificationPage;
+import se.danielkonsult.www.kvadratab.services.data.LazyConsultantList;
+import se.danielkonsult.www.kvadratab.services.notification.ConsultantDeletedNotification;
 import se.danielkonsult.www.kvadratab.services.notification.ConsultantInsertedNotification;
+import se.danielkonsult.www.kvadratab.services.notification.ConsultantUpdatedBitmapNotification;
+import se.danielkonsult.www.kvadratab.services.notification.ConsultantUpdatedNameNotification;
+import se.danielkonsult.www.kvadratab.services.notification.ConsultantUpdatedOfficeNotification;
+import se.danielkonsult.www.kvadratab.services.notification.ErrorNotification;
+import se.danielkonsult.www.kvadratab.services.notification.InfoNotification;
+import se.danielkonsult.www.kvadratab.services.notification.OfficeDeletedNotification;
 import se.danielkonsult.www.kvadratab.services.notification.OfficeInsertedNotification;
+import se.danielkonsult.www.kvadratab.services.notification.OfficeUpdatedNotification;
 import se.danielkonsult.www.kvadratab.services.notification.Notification;
+import se.danielkonsult.www.kvadratab.services.notification.NotificationCodecs;
+import se.danielkonsult.www.kvadratab.services.notification.NotificationDataConverter;
+import se.danielkonsult.www.kvadratab.services.notification.NotificationRetention;
+import se.danielkonsult.www.kvadratab.services.notification.NotificationRetentionPolicy;
 
 /**
  * Tests aimed at the KvadratDb class.
@@ -64,6 +99,40 @@ public class DatabaseTests {
         Assert.assertTrue((assertOffice.Id == oData.Id) && assertOffice.Name.equals(oData.Name));
     }
 
+    /**
+     * Test that offices are shared from the cache and that writes go through to it.
+     */
+    @Test
+    public void shouldCacheOffices() {
+        Context ctx = InstrumentationRegistry.getTargetContext();
+        ctx.deleteDatabase(KvadratTestDb.DATABASE_NAME);
+
+        KvadratDb db = new KvadratTestDb(ctx);
+        db.getOfficeDataRepository().insert(new OfficeData(17, "Jönköping"));
+        db.getOfficeDataRepository().insert(new OfficeData(6, "Linköping"));
+        db.getConsultantDataRepository().insert(new ConsultantData(6985, "Daniel", "Persson", 17));
+
+        // The same instance is read every time
+        OfficeData office = db.getOfficeDataRepository().getById(17);
+        Assert.assertSame(office, db.getOfficeDataRepository().getById(17));
+        Assert.assertSame(office, db.getConsultantDataRepository().getById(6985, true).Office);
+        Assert.assertEquals(2, db.getOfficeDataRepository().getAll().length);
+
+        // Changes are seen at once
+        db.getOfficeDataRepository().update(17, "Huskvarna");
+        Assert.assertEquals("Huskvarna", db.getConsultantDataRepository().getById(6985, true).Office.Name);
+        Assert.assertEquals("Jönköping", office.Name);
+
+        db.getOfficeDataRepository().delete(6);
+        Assert.assertNull(db.getOfficeDataRepository().getById(6));
+        Assert.assertEquals(1, db.getOfficeDataRepository().getAll().length);
+
+        // Also when the database is opened again
+        db = new KvadratTestDb(ctx);
+        Assert.assertEquals("Huskvarna", db.getOfficeDataRepository().getById(17).Name);
+        Assert.assertNull(db.getOfficeDataRepository().getById(6));
+    }
+
     /**
      * Test that a tag can be read and written to the database.
      */
@@ -205,6 +274,10 @@ public class DatabaseTests {
         Assert.assertEquals("Anna", assertConsultants[1].FirstName);
         Assert.assertEquals("Daniel", assertConsultants[2].FirstName);
 
+        // The details are only read for a single consultant
+        Assert.assertNull(assertConsultants[2].Description);
+        Assert.assertEquals(consultantData.Description, db.getConsultantDataRepository().getById(consultantData.Id, false).Description);
+
         // Count the consultants
         db = new KvadratTestDb(ctx);
         consultantCount = db.getConsultantDataRepository().getCount();
@@ -248,6 +321,20 @@ public class DatabaseTests {
             Assert.assertEquals(details.CompetenceAreas[a], foundConsultant.CompetenceAreas[a]);
         }
 
+        // Details that haven't changed are not written again, only their timestamp
+        long previousTimestamp = foundConsultant.DetailsTimstamp;
+        ConsultantDetails sameDetails = new ConsultantDetails();
+        sameDetails.CompetenceAreas = new String[] { ".NET-utvecklare", "Systemarkitekt", "Scrum master" };
+        sameDetails.Description = "Det här' är description!";
+        sameDetails.Overview = "Det här är overview";
+        Thread.sleep(10);
+        Assert.assertFalse(db.getConsultantDataRepository().updateDetails(consultantData3.Id, sameDetails));
+        Assert.assertTrue(db.getConsultantDataRepository().getById(consultantData3.Id, false).DetailsTimstamp > previousTimestamp);
+
+        sameDetails.Overview = null;
+        Assert.assertTrue(db.getConsultantDataRepository().updateDetails(consultantData3.Id, sameDetails));
+        Assert.assertNull(db.getConsultantDataRepository().getById(consultantData3.Id, false).Overview);
+
         // Add competences
         db = new KvadratTestDb(ctx);
         db.getConsultantCompetenceRepository().update(foundConsultant.Id, new String[] { "ABC", "DEF", "GHI" });
@@ -270,7 +357,7 @@ public class DatabaseTests {
 
         // Make sure that there are no notifications
         KvadratDb db = new KvadratTestDb(ctx);
-        Notification[] notifications = db.getNotificationRepository().getNotifications(0);
+        Notification[] notifications = db.getNotificationRepository().getNotificationsSince(0);
 
         Assert.assertEquals(0, notifications.length);
 
@@ -286,7 +373,7 @@ public class DatabaseTests {
 
         // Read it back
         db = new KvadratTestDb(ctx);
-        notifications = db.getNotificationRepository().getNotifications(0);
+        notifications = db.getNotificationRepository().getNotificationsSince(0);
         Assert.assertEquals(2, notifications.length);
         Assert.assertTrue(notifications[0] instanceof OfficeInsertedNotification);
         Assert.assertTrue(notifications[1] instanceof ConsultantInsertedNotification);
@@ -297,4 +384,470 @@ public class DatabaseTests {
         Assert.assertEquals(ncn.FirstName, existing.FirstName);
         Assert.assertEquals(ncn.Office, existing.Office);
     }
+
+    /**
+     * Test that notifications stored as Gson JSON by earlier versions are read by the
+     * codecs, and that unknown types are skipped.
+     */
+    @Test
+    public void shouldReadStoredNotificationFormat() {
+        NotificationData nd = new NotificationData();
+        nd.Id = 12;
+        nd.Timestamp = 1475600000000L;
+        nd.Type = "ConsultantUpdatedNameNotification";
+        nd.Data = "{\"ConsultantId\":7565,\"OldFirstName\":\"Roland\",\"OldLastName\":\"Heimdahl\"," +
+                "\"NewFirstName\":\"Roland\",\"NewLastName\":\"von Heimdahl\",\"Timestamp\":1475600000000}";
+
+        ConsultantUpdatedNameNotification notification = (ConsultantUpdatedNameNotification) NotificationDataConverter.toNotification(nd);
+        Assert.assertEquals(7565, notification.ConsultantId);
+        Assert.assertEquals("von Heimdahl", notification.NewLastName);
+        Assert.assertNull(notification.Office);
+        Assert.assertEquals(nd.Timestamp, notification.Timestamp);
+        Assert.assertEquals(nd.Id, notification.RowId);
+
+        // Write it back and read it again
+        NotificationData written = NotificationDataConverter.toNotificationData(notification);
+        Assert.assertEquals(nd.Type, written.Type);
+        notification = (ConsultantUpdatedNameNotification) NotificationDataConverter.toNotification(written);
+        Assert.assertEquals("Heimdahl", notification.OldLastName);
+
+        nd.Type = "RenamedNotification";
+        Assert.assertNull(NotificationDataConverter.toNotification(nd));
+    }
+
+    /**
+     * Reads a notification stored as Gson JSON by an earlier version, and checks that it
+     * has the expected fields both as read and after being written and read again.
+     * Returns the type tag of the notification.
+     */
+    private static String assertStoredNotification(String type, String data, Notification expected) {
+        Gson gson = new Gson();
+        expected.Timestamp = 1475600000000L;
+
+        NotificationData nd = new NotificationData();
+        nd.Timestamp = expected.Timestamp;
+        nd.Type = type;
+        nd.Data = data;
+        Notification read = NotificationDataConverter.toNotification(nd);
+        Assert.assertNotNull(type, read);
+        Assert.assertEquals(type, expected.getClass(), read.getClass());
+        Assert.assertEquals(type, gson.toJson(expected), gson.toJson(read));
+
+        NotificationData written = NotificationDataConverter.toNotificationData(read);
+        Assert.assertEquals(type, written.Type);
+        Assert.assertEquals(type, gson.toJson(expected), gson.toJson(NotificationDataConverter.toNotification(written)));
+
+        return type;
+    }
+
+    /**
+     * Test that every registered notification type can be read from the Gson JSON that
+     * earlier versions stored, and written and read again by its codec.
+     */
+    @Test
+    public void shouldReadAndWriteAllNotificationTypes() {
+        Set<String> testedTypes = new HashSet<>();
+
+        testedTypes.add(assertStoredNotification("ConsultantInsertedNotification",
+                "{\"ConsultantId\":6985,\"FirstName\":\"Daniel\",\"LastName\":\"Persson\",\"Office\":\"Jönköping\",\"Timestamp\":1475600000000}",
+                new ConsultantInsertedNotification(6985, "Daniel", "Persson", "Jönköping")));
+        testedTypes.add(assertStoredNotification("ConsultantDeletedNotification",
+                "{\"ConsultantId\":5872,\"FirstName\":\"Mikael\",\"LastName\":\"Lindsten\",\"Office\":\"Skövde\",\"Timestamp\":1475600000000}",
+                new ConsultantDeletedNotification(5872, "Mikael", "Lindsten", "Skövde")));
+        testedTypes.add(assertStoredNotification("ConsultantUpdatedBitmapNotification",
+                "{\"ConsultantId\":6985,\"FirstName\":\"Daniel\",\"LastName\":\"Persson\",\"Office\":\"Jönköping\",\"Timestamp\":1475600000000}",
+                new ConsultantUpdatedBitmapNotification(6985, "Daniel", "Persson", "Jönköping")));
+        testedTypes.add(assertStoredNotification("ConsultantUpdatedNameNotification",
+                "{\"ConsultantId\":7565,\"OldFirstName\":\"Roland\",\"OldLastName\":\"Heimdahl\",\"NewFirstName\":\"Roland\"," +
+                        "\"NewLastName\":\"von Heimdahl\",\"Office\":\"Borås\",\"Timestamp\":1475600000000}",
+                new ConsultantUpdatedNameNotification(7565, "Roland", "Heimdahl", "Roland", "von Heimdahl", "Borås")));
+        testedTypes.add(assertStoredNotification("ConsultantUpdatedOfficeNotification",
+                "{\"ConsultantId\":6985,\"FirstName\":\"Daniel\",\"LastName\":\"Persson\",\"NewOffice\":\"Skövde\",\"Timestamp\":1475600000000}",
+                new ConsultantUpdatedOfficeNotification(6985, "Daniel", "Persson", "Skövde")));
+        testedTypes.add(assertStoredNotification("OfficeInsertedNotification",
+                "{\"OfficeId\":4,\"Name\":\"Borås\",\"Timestamp\":1475600000000}",
+                new OfficeInsertedNotification(4, "Borås")));
+        testedTypes.add(assertStoredNotification("OfficeDeletedNotification",
+                "{\"Id\":2,\"Name\":\"Skövde\",\"Timestamp\":1475600000000}",
+                new OfficeDeletedNotification(2, "Skövde")));
+        testedTypes.add(assertStoredNotification("OfficeUpdatedNotification",
+                "{\"Id\":1,\"OldName\":\"Jönköping\",\"NewName\":\"Jönköping City\",\"Timestamp\":1475600000000}",
+                new OfficeUpdatedNotification(1, "Jönköping", "Jönköping City")));
+        testedTypes.add(assertStoredNotification("InfoNotification",
+                "{\"Message\":\"Första inladdning av konsulter avslutad\",\"Timestamp\":1475600000000}",
+                new InfoNotification("Första inladdning av konsulter avslutad")));
+        testedTypes.add(assertStoredNotification("ErrorNotification",
+                "{\"Message\":\"Kunde inte läsa kontor från webbsidan!\",\"Timestamp\":1475600000000}",
+                new ErrorNotification("Kunde inte läsa kontor från webbsidan!")));
+
+        // A new type must be added above when it's registered
+        Assert.assertEquals(NotificationCodecs.getTags(), testedTypes);
+    }
+
+    /**
+     * Test that the writes of several repositories in an outer transaction are all
+     * rolled back if a later one fails.
+     */
+    @Test
+    public void shouldRollBackOuterTransaction() {
+        Context ctx = InstrumentationRegistry.getTargetContext();
+        ctx.deleteDatabase(KvadratTestDb.DATABASE_NAME);
+
+        final KvadratDb db = new KvadratTestDb(ctx);
+        db.getOfficeDataRepository().insert(new OfficeData(1, "Jönköping"));
+
+        try {
+            db.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    db.getConsultantDataRepository().insertAll(new ConsultantData[] { new ConsultantData(6985, "Daniel", "Persson", 1) });
+                    Map<Integer, String> fingerprints = new HashMap<>();
+                    fingerprints.put(1, "abc");
+                    db.getOfficeDataRepository().updateListingFingerprints(fingerprints);
+                    throw new IllegalStateException("Failed after the writes");
+                }
+            });
+            Assert.fail("The failure should be passed on");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+
+        Assert.assertNull(db.getConsultantDataRepository().getById(6985, false));
+        Assert.assertTrue(db.getOfficeDataRepository().getListingFingerprints().isEmpty());
+    }
+
+    /**
+     * Test that notifications can be read page by page, also when several of them
+     * share the same timestamp or a whole page of rows can't be converted.
+     */
+    @Test
+    public void shouldReadNotificationsInPages() {
+        Context ctx = InstrumentationRegistry.getTargetContext();
+        ctx.deleteDatabase(KvadratTestDb.DATABASE_NAME);
+
+        // Insert notifications with three per timestamp
+        KvadratDb db = new KvadratTestDb(ctx);
+        final int count = 45;
+        for (int i = 0; i < count; i++) {
+            OfficeInsertedNotification notification = new OfficeInsertedNotification(i, "Kontor " + i);
+            notification.Timestamp = 1000 + (i / 3);
+            db.getNotificationRepository().insert(notification);
+        }
+
+        // Rows of an unknown type in between, more than a page of them, are skipped
+        for (int i = 0; i < 40; i++) {
+            ContentValues values = new ContentValues();
+            values.put(DbSpec.NotificationEntry.COLUMN_NAME_TIMESTAMP, 500);
+            values.put(DbSpec.NotificationEntry.COLUMN_NAME_TYPE, "Unknown");
+            values.put(DbSpec.NotificationEntry.COLUMN_NAME_DATA, "{}");
+            db.getWritableDatabase().insert(DbSpec.NotificationEntry.TABLE_NAME, null, values);
+        }
+        OfficeInsertedNotification oldest = new OfficeInsertedNotification(count, "Kontor " + count);
+        oldest.Timestamp = 100;
+        db.getNotificationRepository().insert(oldest);
+
+        // Read them all back, newest first and without duplicates
+        List<Integer> officeIds = new ArrayList<>();
+        NotificationPage page = null;
+        do {
+            page = db.getNotificationRepository().getNotifications(20, page);
+            for (Notification notification : page.Notifications)
+                officeIds.add(((OfficeInsertedNotification) notification).OfficeId);
+        } while (page.HasMore);
+
+        Assert.assertEquals(count + 1, officeIds.size());
+        for (int i = 0; i < count; i++)
+            Assert.assertEquals(count - 1 - i, (int) officeIds.get(i));
+        Assert.assertEquals(count, (int) officeIds.get(count));
+    }
+
+    /**
+     * Test that the retention compacts related notifications and removes the ones
+     * that are too old or too many.
+     */
+    @Test
+    public void shouldApplyNotificationRetention() {
+        Context ctx = InstrumentationRegistry.getTargetContext();
+        ctx.deleteDatabase(KvadratTestDb.DATABASE_NAME);
+
+        KvadratDb db = new KvadratTestDb(ctx);
+        long now = System.currentTimeMillis();
+        long msPerDay = 24L * 3600 * 1000;
+
+        // A consultant that is added and then changes name twice, one that changes name
+        // and back again, and one that changes name back and then to another name
+        Notification[] notifications = {
+                new ConsultantInsertedNotification(7565, "Roland", "Heimdahl", "Jönköping"),
+                new InfoNotification("Refresh av data"),
+                new ConsultantUpdatedNameNotification(7565, "Roland", "Heimdahl", "Roland", "von Heimdahl", "Jönköping"),
+                new ConsultantUpdatedNameNotification(7565, "Roland", "von Heimdahl", "Roland", "Heimdahl", "Jönköping"),
+                new ConsultantUpdatedNameNotification(6985, "Daniel", "Persson", "Daniel", "Pärsson", "Jönköping"),
+                new ConsultantUpdatedNameNotification(6985, "Daniel", "Pärsson", "Daniel", "Persson", "Jönköping"),
+                new ConsultantUpdatedNameNotification(5872, "Mikael", "Lindsten", "Mikael", "Lindstén", "Skövde"),
+                new ConsultantUpdatedNameNotification(5872, "Mikael", "Lindstén", "Mikael", "Lindsten", "Skövde"),
+                new ConsultantUpdatedNameNotification(5872, "Mikael", "Lindsten", "Mikael", "Lindqvist", "Skövde"),
+        };
+        for (int i = 0; i < notifications.length; i++) {
+            notifications[i].Timestamp = now - (10 - i) * msPerDay;
+            db.getNotificationRepository().insert(notifications[i]);
+        }
+
+        // Old notifications and too many messages
+        OfficeInsertedNotification old = new OfficeInsertedNotification(90, "Vetlanda");
+        old.Timestamp = now - 40 * msPerDay;
+        db.getNotificationRepository().insert(old);
+        for (int i = 0; i < 10; i++)
+            db.getNotificationRepository().insert(new InfoNotification("Meddelande " + i));
+
+        NotificationRetentionPolicy policy = new NotificationRetentionPolicy();
+        policy.MaxAgeMs = 30 * msPerDay;
+        policy.CompactionWindowMs = 14 * msPerDay;
+        policy.BatchSize = 3;
+        policy.setTypeCap(InfoNotification.class, 4);
+
+        int removedCount = new NotificationRetention(db.getNotificationRepository(), policy).run();
+        Assert.assertEquals(2 + 2 + 2 + 1 + 7, removedCount);
+
+        // The first consultant is left as one insert with the latest name, in place of the latest
+        // change, the second is left without notifications and the third with a single change
+        notifications = db.getNotificationRepository().getNotificationsSince(0);
+        Assert.assertEquals(6, notifications.length);
+        ConsultantInsertedNotification inserted = (ConsultantInsertedNotification) notifications[5];
+        Assert.assertEquals("Heimdahl", inserted.LastName);
+        Assert.assertEquals(now - 7 * msPerDay, inserted.Timestamp);
+        ConsultantUpdatedNameNotification renamed = (ConsultantUpdatedNameNotification) notifications[4];
+        Assert.assertEquals(5872, renamed.ConsultantId);
+        Assert.assertEquals("Lindsten", renamed.OldLastName);
+        Assert.assertEquals("Lindqvist", renamed.NewLastName);
+        Assert.assertEquals(now - 2 * msPerDay, renamed.Timestamp);
+        for (int i = 0; i < 4; i++)
+            Assert.assertTrue(notifications[i] instanceof InfoNotification);
+
+        // Running it again changes nothing
+        Assert.assertEquals(0, new NotificationRetention(db.getNotificationRepository(), policy).run());
+    }
+
+    /**
+     * Test that HTTP validators can be stored, replaced and deleted.
+     */
+    @Test
+    public void shouldStoreAndReplaceHttpValidators() {
+        Context ctx = InstrumentationRegistry.getTargetContext();
+        ctx.deleteDatabase(KvadratTestDb.DATABASE_NAME);
+
+        final String url = "http://www.kvadrat.se/profil/?id=5833";
+
+        KvadratDb db = new KvadratTestDb(ctx);
+        Assert.assertNull(db.getHttpValidatorRepository().getByUrl(url));
+
+        db.getHttpValidatorRepository().save(new HttpValidatorData(url, "\"abc\"", null));
+        db.getHttpValidatorRepository().save(new HttpValidatorData(url, "\"def\"", "Tue, 18 Oct 2016 10:00:00 GMT"));
+
+        // Read it back, the second save should have replaced the first one
+        db = new KvadratTestDb(ctx);
+        HttpValidatorData validator = db.getHttpValidatorRepository().getByUrl(url);
+        Assert.assertNotNull(validator);
+        Assert.assertEquals("\"def\"", validator.ETag);
+        Assert.assertEquals("Tue, 18 Oct 2016 10:00:00 GMT", validator.LastModified);
+
+        db.getHttpValidatorRepository().delete(url);
+        Assert.assertNull(db.getHttpValidatorRepository().getByUrl(url));
+    }
+
+    /**
+     * Test that consultants can be inserted, updated and deleted in bulk.
+     */
+    @Test
+    public void shouldWriteConsultantsInBulk() {
+        Context ctx = InstrumentationRegistry.getTargetContext();
+        ctx.deleteDatabase(KvadratTestDb.DATABASE_NAME);
+
+        KvadratDb db = new KvadratTestDb(ctx);
+        db.getOfficeDataRepository().insert(new OfficeData(17, "Jönköping"));
+        db.getOfficeDataRepository().insert(new OfficeData(6, "Linköping"));
+
+        ConsultantData[] consultants = new ConsultantData[100];
+        for (int i = 0; i < consultants.length; i++) {
+            consultants[i] = new ConsultantData(1000 + i, "Förnamn" + i, "Efternamn" + i, 17);
+            consultants[i].CompetenceAreas = new String[] { "Frontend", "Backend" };
+        }
+        db.getConsultantDataRepository().insertAll(consultants);
+        Assert.assertEquals(consultants.length, db.getConsultantDataRepository().getCount());
+        Assert.assertArrayEquals(new String[] { "Frontend", "Backend" }, db.getConsultantDataRepository().getById(1050, false).CompetenceAreas);
+
+        // Move one, rename another and replace the competences of a third
+        Map<Integer, Integer> officeIds = new HashMap<>();
+        officeIds.put(1001, 6);
+        db.getConsultantDataRepository().updateOffices(officeIds);
+        db.getConsultantDataRepository().updateNames(new ConsultantData[] { new ConsultantData(1002, "Nytt", "Namn", 17) });
+        Map<Integer, String[]> competences = new HashMap<>();
+        competences.put(1003, new String[] { "Test" });
+        db.getConsultantCompetenceRepository().replaceCompetences(competences);
+
+        db = new KvadratTestDb(ctx);
+        Assert.assertEquals(6, db.getConsultantDataRepository().getById(1001, false).OfficeId);
+        ConsultantData renamed = db.getConsultantDataRepository().getById(1002, false);
+        Assert.assertEquals("Nytt", renamed.FirstName);
+        Assert.assertEquals("Namn", renamed.LastName);
+        Assert.assertArrayEquals(new String[] { "Test" }, db.getConsultantDataRepository().getById(1003, false).CompetenceAreas);
+
+        // Read back the competences of all consultants at once
+        Map<Integer, String[]> allCompetences = db.getConsultantCompetenceRepository().getAll();
+        Assert.assertEquals(consultants.length, allCompetences.size());
+        Assert.assertArrayEquals(new String[] { "Test" }, allCompetences.get(1003));
+        Assert.assertArrayEquals(new String[] { "Frontend", "Backend" }, allCompetences.get(1099));
+
+        // Delete all but the first one, including their competences
+        int[] ids = new int[consultants.length - 1];
+        for (int i = 0; i < ids.length; i++)
+            ids[i] = consultants[i + 1].Id;
+        db.getConsultantDataRepository().deleteAll(ids);
+        Assert.assertEquals(1, db.getConsultantDataRepository().getCount());
+        Assert.assertEquals(0, db.getConsultantCompetenceRepository().getById(1050).length);
+    }
+
+    /**
+     * Test that consultant lists are sorted and filtered, and read a page at a time.
+     */
+    @Test
+    public void shouldListConsultantsLazily() throws InterruptedException {
+        Context ctx = InstrumentationRegistry.getTargetContext();
+        ctx.deleteDatabase(KvadratTestDb.DATABASE_NAME);
+
+        KvadratDb db = new KvadratTestDb(ctx);
+        db.getOfficeDataRepository().insert(new OfficeData(17, "Jönköping"));
+        db.getOfficeDataRepository().insert(new OfficeData(6, "Linköping"));
+
+        // Insert in reverse name order, every third one at another office
+        ConsultantData[] consultants = new ConsultantData[50];
+        for (int i = 0; i < consultants.length; i++)
+            consultants[i] = new ConsultantData(1000 + i, "Förnamn", String.format("Efternamn%02d", 49 - i), (i % 3 == 0) ? 6 : 17);
+        db.getConsultantDataRepository().insertAll(consultants);
+
+        int[] ids = db.getConsultantDataRepository().getSortedIds(null);
+        Assert.assertEquals(consultants.length, ids.length);
+        Assert.assertEquals(1049, ids[0]);
+        Assert.assertEquals(1000, ids[49]);
+
+        int[] linkopingIds = db.getConsultantDataRepository().getSortedIds(new ConsultantMatcher() {
+            @Override
+            public boolean matches(ConsultantData listItem) {
+                return listItem.OfficeId == 6;
+            }
+        });
+        Assert.assertEquals(17, linkopingIds.length);
+        Assert.assertEquals(1048, linkopingIds[0]);
+
+        // Read the list from both ends, with a deleted consultant in it
+        db.getConsultantDataRepository().delete(1020);
+        LazyConsultantList list = new LazyConsultantList(db.getConsultantDataRepository(), ids, 10, 2, 3);
+        Assert.assertEquals(50, list.size());
+        for (int i = 0; i < list.size(); i++) {
+            ConsultantData cd = list.read((i % 2 == 0) ? i : list.size() - i);
+            if (cd != null)
+                Assert.assertEquals(ids[(i % 2 == 0) ? i : list.size() - i], cd.Id);
+        }
+        Assert.assertNull(list.read(29));
+        ConsultantData first = list.read(0);
+        Assert.assertEquals("Efternamn00", first.LastName);
+        Assert.assertEquals("Jönköping", first.Office.Name);
+        Assert.assertNull(first.Description);
+
+        // Without waiting, a page that hasn't been read is a placeholder until the listener is told
+        LazyConsultantList asyncList = new LazyConsultantList(db.getConsultantDataRepository(), ids, 10, 2, 3);
+        final CountDownLatch loaded = new CountDownLatch(1);
+        asyncList.setListener(new LazyConsultantList.Listener() {
+            @Override
+            public void onPageLoaded() {
+                loaded.countDown();
+            }
+        });
+        Assert.assertNull(asyncList.get(45));
+        Assert.assertTrue(loaded.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(asyncList.isLoaded(45));
+        Assert.assertEquals(ids[45], asyncList.get(45).Id);
+    }
+
+    /**
+     * Test that consultants can be read while another thread is writing.
+     */
+    @Test
+    public void shouldReadWhileWriting() throws Exception {
+        Context ctx = InstrumentationRegistry.getTargetContext();
+        ctx.deleteDatabase(KvadratTestDb.DATABASE_NAME);
+
+        final KvadratDb db = new KvadratTestDb(ctx);
+        db.getOfficeDataRepository().insert(new OfficeData(17, "Jönköping"));
+        db.getConsultantDataRepository().insert(new ConsultantData(6985, "Daniel", "Persson", 17));
+
+        // Keep a write transaction open on this thread
+        SQLiteDatabase writableDb = db.getWritableDatabase();
+        writableDb.beginTransactionNonExclusive();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            db.getConsultantDataRepository().insert(new ConsultantData(7565, "Roland", "Heimdahl", 17));
+
+            // The reader should not be blocked, and should not see the uncommitted consultant
+            Future<Integer> count = executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return db.getConsultantDataRepository().getCount();
+                }
+            });
+            Assert.assertEquals(1, (int) count.get(5, TimeUnit.SECONDS));
+
+            writableDb.setTransactionSuccessful();
+        } finally {
+            writableDb.endTransaction();
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(2, db.getConsultantDataRepository().getCount());
+    }
+
+    /**
+     * Test that consultants can be searched by free text, and that the search
+     * follows changes of the consultants.
+     */
+    @Test
+    public void shouldSearchConsultants() {
+        Context ctx = InstrumentationRegistry.getTargetContext();
+        ctx.deleteDatabase(KvadratTestDb.DATABASE_NAME);
+
+        KvadratDb db = new KvadratTestDb(ctx);
+        db.getOfficeDataRepository().insert(new OfficeData(2, "Stockholm"));
+        db.getOfficeDataRepository().insert(new OfficeData(15, "Göteborg"));
+
+        ConsultantData stockholm = new ConsultantData(1, "Anna", "Berg", 2);
+        stockholm.CompetenceAreas = new String[] { "Kubernetes", "Docker" };
+        ConsultantData goteborg = new ConsultantData(2, "Åsa", "Öberg", 15);
+        goteborg.CompetenceAreas = new String[] { "Kubernetes" };
+        ConsultantData other = new ConsultantData(3, "Bo", "Ek", 15);
+        other.CompetenceAreas = new String[] { "Java" };
+        db.getConsultantDataRepository().insertAll(new ConsultantData[] { stockholm, goteborg, other });
+
+        // Both words should rank the consultant in Göteborg who knows Kubernetes first
+        int[] hits = db.getConsultantDataRepository().search("Vem kan Kubernetes i Göteborg?");
+        Assert.assertEquals(3, hits.length);
+        Assert.assertEquals(2, hits[0]);
+
+        // Search by prefix, ignoring case
+        Assert.assertArrayEquals(new int[] { 2 }, db.getConsultantDataRepository().search("ÖBE"));
+        Assert.assertEquals(0, db.getConsultantDataRepository().search(" ? ").length);
+
+        // Changed details and names should be found
+        ConsultantDetails details = new ConsultantDetails();
+        details.Description = "Arbetar med molnplattformar";
+        details.CompetenceAreas = new String[] { "Scrum" };
+        db.getConsultantDataRepository().updateDetails(3, details);
+        db.getConsultantDataRepository().updateName(1, "Anna", "Lind");
+        Assert.assertArrayEquals(new int[] { 3 }, db.getConsultantDataRepository().search("molnplattform"));
+        Assert.assertArrayEquals(new int[] { 3 }, db.getConsultantDataRepository().search("scrum"));
+        Assert.assertArrayEquals(new int[] { 1 }, db.getConsultantDataRepository().search("lind"));
+        Assert.assertEquals(0, db.getConsultantDataRepository().search("berg").length);
+
+        // Deleted consultants should be gone
+        db.getConsultantDataRepository().delete(2);
+        Assert.assertArrayEquals(new int[] { 1 }, db.getConsultantDataRepository().search("kubernetes"));
+    }
 }
@@ -0,0 +1,155 @@
+package se.danielkonsult.www.kvadratab;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import se.danielkonsult.www.kvadratab.entities.ConsultantData;
+import se.danielkonsult.www.kvadratab.entities.OfficeData;
+import se.danielkonsult.www.kvadratab.helpers.db.DbSpec;
+import se.danielkonsult.www.kvadratab.helpers.db.KvadratDb;
+import se.danielkonsult.www.kvadratab.helpers.db.migrations.Migrations;
+
+/**
+ * Tests aimed at the schema migrations of the KvadratDb class.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationTests {
+
+    // Private methods
+
+    /**
+     * Reads the tables and indexes of a database, sorted by name.
+     */
+    private static List<String> getSchema(SQLiteDatabase db) {
+        List<String> result = new ArrayList<>();
+        Cursor c = db.rawQuery("SELECT type, name, sql FROM sqlite_master " +
+                "WHERE name NOT LIKE 'sqlite_%' AND name <> 'android_metadata' ORDER BY name", null);
+        try {
+            while (c.moveToNext())
+                result.add(c.getString(0) + " " + c.getString(1) + " " + c.getString(2));
+        } finally {
+            c.close();
+        }
+        return result;
+    }
+
+    /**
+     * Gets the query plan of a query as a single string.
+     */
+    private static String getQueryPlan(SQLiteDatabase db, String sql) {
+        StringBuilder result = new StringBuilder();
+        Cursor c = db.rawQuery("EXPLAIN QUERY PLAN " + sql, null);
+        try {
+            while (c.moveToNext())
+                result.append(c.getString(c.getColumnIndex("detail"))).append('\n');
+        } finally {
+            c.close();
+        }
+        return result.toString();
+    }
+
+    /**
+     * Creates a test database of the base version, containing one consultant.
+     */
+    private static void createBaseDatabase(Context ctx) {
+        ctx.deleteDatabase(KvadratTestDb.DATABASE_NAME);
+        ctx.getDatabasePath(KvadratTestDb.DATABASE_NAME).getParentFile().mkdirs();
+
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(ctx.getDatabasePath(KvadratTestDb.DATABASE_NAME), null);
+        try {
+            Migrations.createBaseSchema(db);
+            db.execSQL("INSERT INTO office (id, name) VALUES (17, 'Jönköping')");
+            db.execSQL("INSERT INTO consultant (id, firstname, lastname, office_id, description) " +
+                    "VALUES (6985, 'Daniel', 'Persson', 17, 'Arbetar med molnplattformar')");
+            db.setVersion(Migrations.BASE_VERSION);
+        } finally {
+            db.close();
+        }
+    }
+
+    // Tests
+
+    /**
+     * Test that the migrations lead all the way up to the current database version.
+     */
+    @Test
+    public void shouldMigrateToCurrentVersion() {
+        Assert.assertEquals(KvadratDb.DATABASE_VERSION, Migrations.getLatestVersion());
+    }
+
+    /**
+     * Test that an upgraded database keeps its data and ends up with the same
+     * schema as a newly created one.
+     */
+    @Test
+    public void shouldUpgradeToSameSchemaAsCreate() {
+        Context ctx = InstrumentationRegistry.getTargetContext();
+
+        // Upgrade a database of the base version
+        createBaseDatabase(ctx);
+        KvadratDb db = new KvadratTestDb(ctx);
+        List<String> upgradedSchema = getSchema(db.getReadableDatabase());
+        ConsultantData consultant = db.getConsultantDataRepository().getById(6985, false);
+        int[] hits = db.getConsultantDataRepository().search("persson jönköping");
+        int[] descriptionHits = db.getConsultantDataRepository().search("molnplattformar");
+        db.close();
+
+        Assert.assertNotNull(consultant);
+        Assert.assertEquals("Persson", consultant.LastName);
+        Assert.assertEquals(17, consultant.OfficeId);
+        Assert.assertEquals("Arbetar med molnplattformar", consultant.Description);
+        Assert.assertArrayEquals(new int[] { 6985 }, hits);
+        Assert.assertArrayEquals(new int[] { 6985 }, descriptionHits);
+
+        // Create a new one
+        ctx.deleteDatabase(KvadratTestDb.DATABASE_NAME);
+        db = new KvadratTestDb(ctx);
+        List<String> createdSchema = getSchema(db.getReadableDatabase());
+        db.close();
+
+        Assert.assertEquals(createdSchema, upgradedSchema);
+    }
+
+    /**
+     * Test that sorting and lookups use the indexes instead of scanning and sorting.
+     */
+    @Test
+    public void shouldUseIndexes() {
+        Context ctx = InstrumentationRegistry.getTargetContext();
+        ctx.deleteDatabase(KvadratTestDb.DATABASE_NAME);
+
+        KvadratDb kvadratDb = new KvadratTestDb(ctx);
+        kvadratDb.getOfficeDataRepository().insert(new OfficeData(17, "Jönköping"));
+        SQLiteDatabase db = kvadratDb.getReadableDatabase();
+
+        String plan = getQueryPlan(db, "SELECT * FROM " + DbSpec.ConsultantEntry.TABLE_NAME + " ORDER BY " +
+                DbSpec.ConsultantEntry.COLUMN_NAME_LASTNAME + "," + DbSpec.ConsultantEntry.COLUMN_NAME_FIRSTNAME);
+        Assert.assertTrue(plan, plan.contains("consultant_name_idx"));
+        Assert.assertFalse(plan, plan.contains("TEMP B-TREE"));
+
+        plan = getQueryPlan(db, "SELECT * FROM " + DbSpec.NotificationEntry.TABLE_NAME + " ORDER BY " +
+                DbSpec.NotificationEntry.COLUMN_NAME_TIMESTAMP + " DESC");
+        Assert.assertTrue(plan, plan.contains("notification_timestamp_idx"));
+        Assert.assertFalse(plan, plan.contains("TEMP B-TREE"));
+
+        plan = getQueryPlan(db, "SELECT * FROM " + DbSpec.ConsultantEntry.TABLE_NAME + " WHERE " +
+                DbSpec.ConsultantEntry.COLUMN_NAME_OFFICEID + " = 17");
+        Assert.assertTrue(plan, plan.contains("consultant_office_id_idx"));
+
+        plan = getQueryPlan(db, "SELECT * FROM " + DbSpec.ConsultantCompetenceEntry.TABLE_NAME + " WHERE " +
+                DbSpec.ConsultantCompetenceEntry.COLUMN_NAME_COMPETENCE + " = 'Test'");
+        Assert.assertTrue(plan, plan.contains("consultant_competence_competence_idx"));
+
+        kvadratDb.close();
+    }
+}
@@ -11,10 +11,13 @@ import org.junit.runner.RunWith;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import se.danielkonsult.www.kvadratab.entities.ConsultantData;
 import se.danielkonsult.www.kvadratab.entities.OfficeData;
+import se.danielkonsult.www.kvadratab.entities.TagData;
 import se.danielkonsult.www.kvadratab.helpers.KvadratAppException;
 import se.danielkonsult.www.kvadratab.mocks.TestImageService;
 import se.danielkonsult.www.kvadratab.mocks.TestNotificationService;
@@ -85,8 +88,11 @@ public class RefresherTests {
                 od4
         }, null);
 
-        // Compare the office datas
-        List<Notification> notifications = OfficeComparer.compare();
+        // Compare the office datas, the removed office is deleted when the consultants have been compared
+        Set<Integer> removedOfficeIds = new HashSet<>();
+        List<Notification> notifications = OfficeComparer.compare(removedOfficeIds);
+        Assert.assertNotNull(rep.getById(od1.Id));
+        Assert.assertEquals(0, ConsultantComparer.compare(removedOfficeIds).size());
 
         // Assert that the correct notifications are present by putting them in a hash
         // with the Notification type as key
@@ -160,7 +166,7 @@ public class RefresherTests {
         });
 
         // Compare the consultant datas
-        List<Notification> notifications = ConsultantComparer.compare();
+        List<Notification> notifications = ConsultantComparer.compare(new HashSet<Integer>());
 
         Assert.assertEquals(5, notifications.size());
 
@@ -201,6 +207,98 @@ public class RefresherTests {
         Assert.assertEquals(od1.Name, delNot.Office);
     }
 
+    /**
+     * Tests that offices whose consultant listings haven't changed since the last
+     * refresh are skipped, and that the others are still compared.
+     */
+    @Test
+    public void shouldSkipUnchangedOffices() throws IOException, KvadratAppException {
+        setupTestEnvironment();
+
+        AppCtrl.getDb().getOfficeDataRepository().insert(new OfficeData(1, "Jönköping"));
+        AppCtrl.getDb().getOfficeDataRepository().insert(new OfficeData(2, "Skövde"));
+        AppCtrl.getDb().getConsultantDataRepository().insert(new ConsultantData(6985, "Daniel", "Persson", 1));
+        AppCtrl.getDb().getConsultantDataRepository().insert(new ConsultantData(5872, "Mikael", "Lindsten", 2));
+
+        TestWebPageScraper scraper = (TestWebPageScraper) AppCtrl.getWebPageScraper();
+        scraper.setConsultantData(1, new ConsultantData[] { new ConsultantData(6985, "Daniel", "Persson", 1) });
+        scraper.setConsultantData(2, new ConsultantData[] { new ConsultantData(5872, "Mikael", "Lindsten", 2) });
+
+        // The first refresh compares all offices and remembers their listings
+        Assert.assertEquals(0, ConsultantComparer.compare(new HashSet<Integer>()).size());
+        Assert.assertEquals(2, AppCtrl.getDb().getOfficeDataRepository().getListingFingerprints().size());
+
+        // Change a consultant of the first office behind its back, which is not
+        // noticed since its listing is the same, and change the listing of the second
+        AppCtrl.getDb().getConsultantDataRepository().updateName(6985, "Dan", "Persson");
+        scraper.setConsultantData(2, new ConsultantData[] { new ConsultantData(5872, "Mikael", "Lindstén", 2) });
+
+        List<Notification> notifications = ConsultantComparer.compare(new HashSet<Integer>());
+        Assert.assertEquals(1, notifications.size());
+        ConsultantUpdatedNameNotification nameNot = (ConsultantUpdatedNameNotification) notifications.get(0);
+        Assert.assertEquals(5872, nameNot.ConsultantId);
+        Assert.assertEquals("Lindstén", nameNot.NewLastName);
+
+        Assert.assertEquals("Dan", AppCtrl.getDb().getConsultantDataRepository().getById(6985, false).FirstName);
+        Assert.assertEquals("Lindstén", AppCtrl.getDb().getConsultantDataRepository().getById(5872, false).LastName);
+
+        // Nothing has changed now
+        Assert.assertEquals(0, ConsultantComparer.compare(new HashSet<Integer>()).size());
+    }
+
+    /**
+     * Tests that the consultants of a removed office are moved to the office that lists
+     * them now or deleted, before the office itself is deleted.
+     */
+    @Test
+    public void shouldHandleConsultantsOfRemovedOffice() throws IOException, KvadratAppException {
+        setupTestEnvironment();
+
+        AppCtrl.getDb().getOfficeDataRepository().insert(new OfficeData(1, "Jönköping"));
+        AppCtrl.getDb().getOfficeDataRepository().insert(new OfficeData(2, "Skövde"));
+        AppCtrl.getDb().getOfficeDataRepository().insert(new OfficeData(3, "Borås"));
+        AppCtrl.getDb().getConsultantDataRepository().insert(new ConsultantData(6985, "Daniel", "Persson", 1));
+        AppCtrl.getDb().getConsultantDataRepository().insert(new ConsultantData(5872, "Mikael", "Lindsten", 2));
+        AppCtrl.getDb().getConsultantDataRepository().insert(new ConsultantData(4711, "Anna", "Berg", 2));
+        AppCtrl.getDb().getConsultantDataRepository().insert(new ConsultantData(6271, "May-Lis", "Farnes", 3));
+
+        TestWebPageScraper scraper = (TestWebPageScraper) AppCtrl.getWebPageScraper();
+        scraper.setConsultantData(1, new ConsultantData[] { new ConsultantData(6985, "Daniel", "Persson", 1) });
+        scraper.setConsultantData(2, new ConsultantData[] {
+                new ConsultantData(5872, "Mikael", "Lindsten", 2),
+                new ConsultantData(4711, "Anna", "Berg", 2)
+        });
+        scraper.setConsultantData(3, new ConsultantData[] { new ConsultantData(6271, "May-Lis", "Farnes", 3) });
+        Assert.assertEquals(0, ConsultantComparer.compare(new HashSet<Integer>()).size());
+
+        // Remove the second office from the web page, where one of its consultants is now listed by the third
+        scraper.setSummaryData(new OfficeData[] {
+                new OfficeData(1, "Jönköping"),
+                new OfficeData(3, "Borås")
+        }, new TagData[0]);
+        scraper.setConsultantData(3, new ConsultantData[] {
+                new ConsultantData(6271, "May-Lis", "Farnes", 3),
+                new ConsultantData(5872, "Mikael", "Lindsten", 3)
+        });
+        Set<Integer> removedOfficeIds = new HashSet<>();
+        List<Notification> notifications = OfficeComparer.compare(removedOfficeIds);
+        notifications.addAll(ConsultantComparer.compare(removedOfficeIds));
+
+        Assert.assertEquals(3, notifications.size());
+        Assert.assertTrue(notifications.get(0) instanceof OfficeDeletedNotification);
+        ConsultantUpdatedOfficeNotification officeNot = (ConsultantUpdatedOfficeNotification) notifications.get(1);
+        Assert.assertEquals(5872, officeNot.ConsultantId);
+        Assert.assertEquals("Borås", officeNot.NewOffice);
+        ConsultantDeletedNotification delNot = (ConsultantDeletedNotification) notifications.get(2);
+        Assert.assertEquals(4711, delNot.ConsultantId);
+        Assert.assertEquals("Skövde", delNot.Office);
+
+        Assert.assertNull(AppCtrl.getDb().getOfficeDataRepository().getById(2));
+        Assert.assertEquals(3, AppCtrl.getDb().getConsultantDataRepository().getById(5872, false).OfficeId);
+        Assert.assertNull(AppCtrl.getDb().getConsultantDataRepository().getById(4711, false));
+        Assert.assertNotNull(AppCtrl.getDb().getConsultantDataRepository().getById(6985, false));
+    }
+
     /**
      * Tests whether bitmaps can be properly compared when downloaded
      * and read from disk. (Seems that it's not the case...)
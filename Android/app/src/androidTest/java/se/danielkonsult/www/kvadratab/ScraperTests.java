@@ -11,15 +11,23 @@ import org.junit.runner.RunWith;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 
 import se.danielkonsult.www.kvadratab.entities.ConsultantData;
 import se.danielkonsult.www.kvadratab.entities.ConsultantDetails;
 import se.danielkonsult.www.kvadratab.entities.OfficeData;
 import se.danielkonsult.www.kvadratab.entities.TagData;
+import se.danielkonsult.www.kvadratab.helpers.KvadratAppException;
+import se.danielkonsult.www.kvadratab.helpers.scraper.ConsultantDetailsParser;
+import se.danielkonsult.www.kvadratab.helpers.scraper.ConsultantScrapeListener;
 import se.danielkonsult.www.kvadratab.helpers.scraper.DefaultWebPageScraper;
 import se.danielkonsult.www.kvadratab.helpers.scraper.ConsultantDataParser;
 import se.danielkonsult.www.kvadratab.entities.SummaryData;
 import se.danielkonsult.www.kvadratab.helpers.scraper.SummaryDataParser;
+import se.danielkonsult.www.kvadratab.mocks.TestListingWebClient;
 
 /**
  * Tests of web page scraper functionality.
@@ -42,6 +50,62 @@ public class ScraperTests {
         }
     }
 
+    /**
+     * Tests that the listing can be parsed from a stream that delivers the page in small
+     * chunks, so the markers are split between reads.
+     */
+    @Test
+    public void shouldParseMainPageWebDataFromStream() throws IOException, KvadratAppException {
+        final String testData = "<a class='single-consultant' href='../../konsult/6573-kristoffer-arvidsson'><div class='full-name'>Kristoffer Arvidsson</div></a>" +
+                "<a class='single-consultant' href='../../konsult/'><div class='full-name'>Utan Id</div></a>" +
+                "<a class='single-consultant' href='../../konsult/8538-mattias-bybro'><div class='full-name'>Mattias Bybro (Svensson)</div></a>";
+
+        // A reader that returns at most three characters per read
+        Reader reader = new StringReader(testData) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                return super.read(cbuf, off, Math.min(len, 3));
+            }
+        };
+
+        final List<ConsultantData> webDatas = new ArrayList<>();
+        ConsultantDataParser.parse(reader, new ConsultantScrapeListener() {
+            @Override
+            public void onConsultantScraped(ConsultantData consultant) {
+                webDatas.add(consultant);
+            }
+        });
+
+        Assert.assertEquals(2, webDatas.size());
+        Assert.assertEquals(6573, webDatas.get(0).Id);
+        Assert.assertEquals("Kristoffer", webDatas.get(0).FirstName);
+        Assert.assertEquals("Arvidsson", webDatas.get(0).LastName);
+        Assert.assertEquals(8538, webDatas.get(1).Id);
+        Assert.assertEquals("Bybro", webDatas.get(1).LastName);
+    }
+
+    /**
+     * Tests that listings larger than one page are fetched page by page, with growing page sizes.
+     */
+    @Test
+    public void shouldScrapeListingInPages() throws IOException {
+        TestListingWebClient webClient = new TestListingWebClient(3500);
+        AppCtrl.setTestWebClient(webClient);
+        try {
+            ConsultantData[] consultants = new DefaultWebPageScraper().scrapeConsultants(0, 0);
+
+            Assert.assertEquals(3500, consultants.length);
+            Assert.assertEquals(1001, consultants[0].Id);
+            Assert.assertEquals(4500, consultants[3499].Id);
+
+            // 1000 + 2000 + a short page of 500
+            Assert.assertEquals(3, webClient.getRequestBodies().size());
+            Assert.assertTrue(webClient.getRequestBodies().get(2).contains("offset=3001&count=4000"));
+        } finally {
+            AppCtrl.setTestWebClient(null);
+        }
+    }
+
     /**
      * Tests that a complete list of consultants can be fetched from the main web page.
      * @throws Throwable
@@ -85,6 +149,50 @@ public class ScraperTests {
         Assert.assertTrue(details.Overview.contains("Med sin humor, värme och medmänsklighet"));
     }
 
+    /**
+     * Tests that consultant details are parsed from page data.
+     */
+    @Test
+    public void shouldParseConsultantDetails() {
+        final String testData = "<script>var template = '<li>Not a competence</li>';</script>\n" +
+                "<ul id='competence-areas'>\n" +
+                "    <li>Ledarskaps-/Kommunikationskonsult</li>\n" +
+                "    <li>Föreläsare/inspiratör</li>\n" +
+                "</ul>\n" +
+                "<!-- <h2 class='small-heading'>Översikt</h2> -->\n" +
+                "<h2 class='small-heading'>Översikt</h2><p class='small-text'>Första raden<br>Andra raden</p>\n" +
+                "<h2 class='small-heading'>Egenskaper</h2>\n" +
+                "<p class='small-text'>Med sin humor</p>";
+
+        ConsultantDetails details = ConsultantDetailsParser.parse(testData);
+
+        Assert.assertEquals(2, details.CompetenceAreas.length);
+        Assert.assertEquals("Ledarskaps-/Kommunikationskonsult", details.CompetenceAreas[0]);
+        Assert.assertEquals("Föreläsare/inspiratör", details.CompetenceAreas[1]);
+        Assert.assertEquals("Första raden\nAndra raden", details.Description);
+        Assert.assertEquals("Med sin humor", details.Overview);
+    }
+
+    /**
+     * Tests that an end tag is only matched by its full name, and not by another
+     * end tag whose name starts with the same letters.
+     */
+    @Test
+    public void shouldMatchEndTagsByFullName() {
+        final String testData = "<script>var end = '</scripts>'; var template = '<ul id=\"competence-areas\"><li>Not a competence</li></ul>';</script>\n" +
+                "<ul id='competence-areas'>\n" +
+                "    <li>Föreläsare/inspiratör</li>\n" +
+                "</ul>\n" +
+                "<h2 class='small-heading'>Egenskaper</h2>\n" +
+                "<p class='small-text'>Med sin <picture>bild</picture> humor</p >";
+
+        ConsultantDetails details = ConsultantDetailsParser.parse(testData);
+
+        Assert.assertEquals(1, details.CompetenceAreas.length);
+        Assert.assertEquals("Föreläsare/inspiratör", details.CompetenceAreas[0]);
+        Assert.assertEquals("Med sin <picture>bild</picture> humor", details.Overview);
+    }
+
     @Test
     public void shouldScrapeSummaryWebPage() {
 
@@ -36,6 +36,11 @@ public class TestImageService implements ImageService {
         return _defaultImageService.getConsultantBitmapFromFile(id);
     }
 
+    @Override
+    public void deleteConsultantBitmapFile(int id) {
+        _defaultImageService.deleteConsultantBitmapFile(id);
+    }
+
     @Override
     public void deleteAllConsultantImages() {
 
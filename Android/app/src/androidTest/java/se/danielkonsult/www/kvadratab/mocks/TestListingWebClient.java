@@ -0,0 +1,77 @@
+package se.danielkonsult.www.kvadratab.mocks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import se.danielkonsult.www.kvadratab.helpers.http.WebClient;
+import se.danielkonsult.www.kvadratab.helpers.http.WebRequest;
+import se.danielkonsult.www.kvadratab.helpers.http.WebResponse;
+
+/**
+ * Web client for unit tests that serves a consultant listing of a given size,
+ * honoring the offset and count of each request.
+ */
+public class TestListingWebClient implements WebClient {
+
+    private final int _consultantCount;
+    private final List<String> _requestBodies = new ArrayList<>();
+
+    public TestListingWebClient(int consultantCount) {
+        _consultantCount = consultantCount;
+    }
+
+    private static int getFormValue(String body, String name) {
+        for (String pair : body.split("&")) {
+            if (pair.startsWith(name + "="))
+                return Integer.parseInt(pair.substring(name.length() + 1));
+        }
+        return 0;
+    }
+
+    @Override
+    public WebResponse execute(WebRequest request) throws IOException {
+        String body = new String(request.Body, "UTF-8");
+        _requestBodies.add(body);
+
+        int offset = getFormValue(body, "offset");
+        int count = getFormValue(body, "count");
+
+        // Consultant ids are 1000 + their position in the listing
+        StringBuilder page = new StringBuilder();
+        for (int position = offset; (position < offset + count) && (position <= _consultantCount); position++) {
+            int id = 1000 + position;
+            page.append(String.format("<a class='single-consultant' href='../../konsult/%d-test-%d'><div class='full-name'>Test Konsult%d</div></a>", id, id, id));
+        }
+
+        final byte[] bytes = page.toString().getBytes("UTF-8");
+        return new WebResponse() {
+            private final InputStream _is = new ByteArrayInputStream(bytes);
+
+            @Override
+            public int getStatusCode() {
+                return 200;
+            }
+
+            @Override
+            public String getHeader(String name) {
+                return null;
+            }
+
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return _is;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    public List<String> getRequestBodies() {
+        return _requestBodies;
+    }
+}
@@ -25,6 +25,10 @@ public class TestNotificationService implements NotificationService {
         _notifications.addAll(notifications);
     }
 
+    @Override
+    public void applyRetention() {
+    }
+
     // Test methods
 
     public List<Notification> getNotifications(){
@@ -5,9 +5,12 @@ import java.util.HashMap;
 
 import se.danielkonsult.www.kvadratab.entities.ConsultantData;
 import se.danielkonsult.www.kvadratab.entities.ConsultantDetails;
+import se.danielkonsult.www.kvadratab.entities.HttpValidatorData;
 import se.danielkonsult.www.kvadratab.entities.OfficeData;
 import se.danielkonsult.www.kvadratab.entities.SummaryData;
 import se.danielkonsult.www.kvadratab.entities.TagData;
+import se.danielkonsult.www.kvadratab.helpers.KvadratAppException;
+import se.danielkonsult.www.kvadratab.helpers.scraper.ConsultantScrapeListener;
 import se.danielkonsult.www.kvadratab.helpers.scraper.WebPageScraper;
 
 /**
@@ -27,16 +30,36 @@ public class TestWebPageScraper implements WebPageScraper {
         return _officeConsultantDatas.get(officeId);
     }
 
+    @Override
+    public void scrapeConsultants(int officeId, int tagId, ConsultantScrapeListener listener) throws IOException, KvadratAppException {
+        for (ConsultantData cd : scrapeConsultants(officeId, tagId))
+            listener.onConsultantScraped(cd);
+    }
+
     @Override
     public SummaryData scrapeSummaryData() throws IOException {
         return _summaryData;
     }
 
+    @Override
+    public SummaryData scrapeSummaryDataIfModified() throws IOException {
+        return _summaryData;
+    }
+
     @Override
     public ConsultantDetails scrapeConsultantDetails(int consultantId) throws IOException {
         return null;
     }
 
+    @Override
+    public ConsultantDetails scrapeConsultantDetailsIfModified(int consultantId) throws IOException {
+        return null;
+    }
+
+    @Override
+    public void saveValidator(HttpValidatorData validator) {
+    }
+
     public void setSummaryData(OfficeData[] officeDatas, TagData[] tagDatas) {
         _summaryData = new SummaryData();
         _summaryData.OfficeDatas = officeDatas;
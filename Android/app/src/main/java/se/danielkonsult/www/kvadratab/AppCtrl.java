@@ -3,6 +3,8 @@ package se.danielkonsult.www.kvadratab;
 import android.content.Context;
 
 import se.danielkonsult.www.kvadratab.helpers.db.KvadratDb;
+import se.danielkonsult.www.kvadratab.helpers.http.DefaultWebClient;
+import se.danielkonsult.www.kvadratab.helpers.http.WebClient;
 import se.danielkonsult.www.kvadratab.helpers.scraper.DefaultWebPageScraper;
 import se.danielkonsult.www.kvadratab.helpers.scraper.WebPageScraper;
 import se.danielkonsult.www.kvadratab.services.data.DataService;
@@ -32,6 +34,7 @@ public class AppCtrl {
     private static ImageService _imageService;
     private static RefresherService _refresherService;
     private static WebPageScraper _webPageScraper;
+    private static WebClient _webClient;
     private static NotificationService _notificationService;
     private static boolean _testFlag;
 
@@ -56,6 +59,9 @@ public class AppCtrl {
     time it is requested.
      */
     public static void dropDatabase() {
+        // Close the connections first so that the WAL files are deleted as well
+        if (_db != null)
+            _db.close();
         getApplicationContext().deleteDatabase(KvadratDb.DATABASE_NAME);
         _db = new KvadratDb();
     }
@@ -108,6 +114,13 @@ public class AppCtrl {
         return _webPageScraper;
     }
 
+    public static synchronized WebClient getWebClient() {
+        if (_webClient == null)
+            _webClient = new DefaultWebClient();
+
+        return _webClient;
+    }
+
     // Test methods
 
     /**
@@ -125,6 +138,10 @@ public class AppCtrl {
         _webPageScraper = webPageScraper;
     }
 
+    public static void setTestWebClient(WebClient webClient) {
+        _webClient = webClient;
+    }
+
     public static void setTestNotificationService(NotificationService notificationService) {
         _notificationService = notificationService;
     }
@@ -14,11 +14,11 @@ import android.widget.Toast;
 import se.danielkonsult.www.kvadratab.AppCtrl;
 import se.danielkonsult.www.kvadratab.R;
 import se.danielkonsult.www.kvadratab.adapters.ConsultantListAdapter;
-import se.danielkonsult.www.kvadratab.entities.ConsultantData;
 import se.danielkonsult.www.kvadratab.fragments.ConsultantFilterFragment;
 import se.danielkonsult.www.kvadratab.helpers.Constants;
 import se.danielkonsult.www.kvadratab.services.data.ConsultantFilter;
 import se.danielkonsult.www.kvadratab.services.data.DataServiceListener;
+import se.danielkonsult.www.kvadratab.services.data.LazyConsultantList;
 
 public class ConsultantListActivity extends AppCompatActivity implements ConsultantFilterFragment.Listener, DataServiceListener {
 
@@ -90,8 +90,8 @@ public class ConsultantListActivity extends AppCompatActivity implements Consult
         _lvMain.setOnItemClickListener(new AdapterView.OnItemClickListener() {
             @Override
             public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                ConsultantData consultant = (ConsultantData) parent.getItemAtPosition(position);
-                gotoConsultantDetails(consultant.Id);
+                // The item id is the consultant id
+                gotoConsultantDetails((int) id);
             }
         });
 
@@ -150,8 +150,8 @@ public class ConsultantListActivity extends AppCompatActivity implements Consult
     public void onFilteredConsultantsUpdated() {
         _lvMain.setVisibility(View.INVISIBLE);
         try {
-            ConsultantData[] consultantDatas = AppCtrl.getDataService().getFilteredConsultants();
-            _lvMain.setAdapter(new ConsultantListAdapter(ConsultantListActivity.this, consultantDatas));
+            LazyConsultantList consultants = AppCtrl.getDataService().getFilteredConsultants();
+            _lvMain.setAdapter(new ConsultantListAdapter(ConsultantListActivity.this, consultants));
         } finally {
             _lvMain.setVisibility(View.VISIBLE);
         }
@@ -16,6 +16,7 @@ import se.danielkonsult.www.kvadratab.AppCtrl;
 import se.danielkonsult.www.kvadratab.R;
 import se.danielkonsult.www.kvadratab.entities.ConsultantData;
 import se.danielkonsult.www.kvadratab.services.data.ConsultantDataListener;
+import se.danielkonsult.www.kvadratab.services.data.LazyConsultantList;
 
 public class GameActivity extends BaseActivity {
 
@@ -118,13 +119,12 @@ public class GameActivity extends BaseActivity {
 
                 showHourglass();
 
-                final ConsultantData[] allConsultants = AppCtrl.getDataService().getAllConsultants();
-                final int count = allConsultants.length;
-                final List<Integer> randoms = new ArrayList<>();
-                randoms.add((int) (Math.random() * count));
-                randoms.add((int) (Math.random() * count));
-                randoms.add((int) (Math.random() * count));
-                randoms.add((int) (Math.random() * count));
+                final LazyConsultantList allConsultants = AppCtrl.getDataService().getAllConsultants();
+                final List<Integer> randoms = drawPositions(allConsultants, 4);
+                if (randoms.size() < 4) {
+                    hideHourglass();
+                    return;
+                }
 
                 final List<String> readyList = new ArrayList<>();
 
@@ -134,11 +134,14 @@ public class GameActivity extends BaseActivity {
                 loadImage(_imgConsultant4, allConsultants, randoms.get(3), readyList);
 
 
+                // Read the consultant here, since it may have to be read from the database
+                final ConsultantData consultantData = allConsultants.read(randoms.get(randIndex));
+                if (consultantData == null)
+                    return;
                 runOnUiThread(new Runnable() {
                     @Override
                     public void run() {
                         int rand5 = (int) (Math.random() * 4);
-                        ConsultantData consultantData = allConsultants[randoms.get(randIndex)];
                         _tvVemArDet.setText(consultantData.FirstName + " " + consultantData.LastName);
                         setImageVisibility(View.VISIBLE);
                     }
@@ -149,6 +152,23 @@ public class GameActivity extends BaseActivity {
         });
     }
 
+    /**
+     * Draws random positions of consultants that still exist, since the list may hold
+     * consultants that have been deleted after it was created. Returns fewer positions
+     * if not enough of them could be found.
+     */
+    private static List<Integer> drawPositions(LazyConsultantList consultants, int count) {
+        List<Integer> result = new ArrayList<>();
+        int attempts = 0;
+        while ((result.size() < count) && (consultants.size() > 0) && (attempts++ < count * 10)) {
+            int position = (int) (Math.random() * consultants.size());
+            if (consultants.read(position) != null)
+                result.add(position);
+        }
+
+        return result;
+    }
+
     private void setImageVisibility(int visibility) {
         _imgConsultant1.setVisibility(visibility);
         _imgConsultant2.setVisibility(visibility);
@@ -156,8 +176,8 @@ public class GameActivity extends BaseActivity {
         _imgConsultant4.setVisibility(visibility);
     }
 
-    private void loadImage(final ImageView imageView, ConsultantData[] allConsultant, final int rand, final List<String> readyList) {
-        AppCtrl.getDataService().getConsultantDetails(allConsultant[rand].Id, new ConsultantDataListener() {
+    private void loadImage(final ImageView imageView, LazyConsultantList allConsultant, final int rand, final List<String> readyList) {
+        AppCtrl.getDataService().getConsultantDetails(allConsultant.getId(rand), new ConsultantDataListener() {
             @Override
             public void onResult(final ConsultantData consultantData) {
                 runOnUiThread(new Runnable() {
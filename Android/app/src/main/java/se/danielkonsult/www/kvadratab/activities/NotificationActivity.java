@@ -8,21 +8,61 @@ import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
 import android.widget.ListView;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import se.danielkonsult.www.kvadratab.AppCtrl;
 import se.danielkonsult.www.kvadratab.R;
 import se.danielkonsult.www.kvadratab.adapters.NotificationAdapter;
 import se.danielkonsult.www.kvadratab.helpers.Constants;
 import se.danielkonsult.www.kvadratab.helpers.Dialogs;
+import se.danielkonsult.www.kvadratab.repositories.notification.NotificationPage;
 import se.danielkonsult.www.kvadratab.services.notification.ClickableNotification;
 import se.danielkonsult.www.kvadratab.services.notification.Notification;
 
 public class NotificationActivity extends BaseActivity {
 
     private ListView _lvMain;
-    private Notification[] _notifications;
+    private NotificationAdapter _adapter;
+    private final List<Notification> _notifications = new ArrayList<>();
+
+    // Only touched on the UI thread
+    private NotificationPage _lastPage;
+    private boolean _isLoadingPage;
+
+    /**
+     * Loads the next page of notifications in the background and appends it to the list.
+     */
+    private void loadNextPage() {
+        if (_isLoadingPage || ((_lastPage != null) && !_lastPage.HasMore))
+            return;
+
+        _isLoadingPage = true;
+        final NotificationPage previous = _lastPage;
+        runInBackground(new Runnable() {
+            @Override
+            public void run() {
+                final NotificationPage page = AppCtrl.getDb().getNotificationRepository().getNotifications(Constants.NOTIFICATIONS_PAGE_SIZE, previous);
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        _lastPage = page;
+                        _isLoadingPage = false;
+
+                        // A page where nothing could be shown doesn't grow the list, so keep going
+                        if (page.Notifications.length > 0)
+                            _adapter.addAll(page.Notifications);
+                        else
+                            loadNextPage();
+                    }
+                });
+            }
+        });
+    }
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -36,14 +76,27 @@ public class NotificationActivity extends BaseActivity {
             @Override
             public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
                 // Is it a clickable notification?
-                if (_notifications[position] instanceof ClickableNotification) {
-                    ((ClickableNotification) _notifications[position]).click(NotificationActivity.this);
+                if (_notifications.get(position) instanceof ClickableNotification) {
+                    ((ClickableNotification) _notifications.get(position)).click(NotificationActivity.this);
                 }
             }
         });
-        _notifications = AppCtrl.getDb().getNotificationRepository().getNotifications(Constants.NOTIFICATIONS_MAX_COUNT);
+        _lvMain.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+                // Load the next page when the end of the list comes into view
+                if ((totalItemCount > 0) && (firstVisibleItem + visibleItemCount >= totalItemCount))
+                    loadNextPage();
+            }
+        });
 
-        _lvMain.setAdapter(new NotificationAdapter(this, _notifications));
+        _adapter = new NotificationAdapter(this, _notifications);
+        _lvMain.setAdapter(_adapter);
+        loadNextPage();
     }
 
     @Override
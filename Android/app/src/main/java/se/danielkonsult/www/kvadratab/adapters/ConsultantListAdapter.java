@@ -1,34 +1,69 @@
 package se.danielkonsult.www.kvadratab.adapters;
 
 import android.content.Context;
-import android.os.StrictMode;
-import android.provider.ContactsContract;
+import android.os.Handler;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
+import android.widget.BaseAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import se.danielkonsult.www.kvadratab.AppCtrl;
 import se.danielkonsult.www.kvadratab.R;
 import se.danielkonsult.www.kvadratab.entities.ConsultantData;
+import se.danielkonsult.www.kvadratab.services.data.LazyConsultantList;
 
 /**
  * Created by Daniel on 2016-09-15.
  */
-public class ConsultantListAdapter extends ArrayAdapter<ConsultantData> {
+public class ConsultantListAdapter extends BaseAdapter {
 
     // Private variables
 
     private final Context _context;
+    private final LazyConsultantList _consultants;
+    private final Handler _handler = new Handler();
 
     // Constructor
 
 
-    public ConsultantListAdapter(Context context, ConsultantData[] objects) {
-        super(context, R.layout.adapter_consultant_list, objects);
+    public ConsultantListAdapter(Context context, LazyConsultantList consultants) {
         _context = context;
+        _consultants = consultants;
+
+        // Rows that were shown as placeholders are drawn again once their page has been read
+        _consultants.setListener(new LazyConsultantList.Listener() {
+            @Override
+            public void onPageLoaded() {
+                _handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        notifyDataSetChanged();
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public int getCount() {
+        return _consultants.size();
+    }
+
+    @Override
+    public ConsultantData getItem(int position) {
+        return _consultants.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return _consultants.getId(position);
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
     }
 
     @Override
@@ -39,15 +74,23 @@ public class ConsultantListAdapter extends ArrayAdapter<ConsultantData> {
             convertView = inflater.inflate(R.layout.adapter_consultant_list, null);
         }
 
+        TextView tvName = (TextView) convertView.findViewById(R.id.tvName);
+        TextView tvOffice = (TextView) convertView.findViewById(R.id.tvOffice);
+        ImageView imgConsultant = (ImageView) convertView.findViewById(R.id.imgConsultant);
+
+        // The consultant may not have been read yet, or have been deleted since the list was created
         ConsultantData item = getItem(position);
+        if (item == null) {
+            tvName.setText("");
+            tvOffice.setText("");
+            imgConsultant.setImageBitmap(null);
+            return convertView;
+        }
+
         String officeText = "";
         if (item.Office != null)
             officeText = item.Office.Name;
 
-        TextView tvName = (TextView) convertView.findViewById(R.id.tvName);
-        TextView tvOffice = (TextView) convertView.findViewById(R.id.tvOffice);
-        ImageView imgConsultant = (ImageView) convertView.findViewById(R.id.imgConsultant);
-
         tvName.setText(String.format("%s %s", item.FirstName, item.LastName));
         tvOffice.setText(officeText);
 
@@ -11,6 +11,7 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import java.util.HashMap;
+import java.util.List;
 
 import se.danielkonsult.www.kvadratab.R;
 import se.danielkonsult.www.kvadratab.entities.ConsultantData;
@@ -25,7 +26,7 @@ public class NotificationAdapter extends ArrayAdapter<Notification> {
 
     private final Context _context;
 
-    public NotificationAdapter(Context context, Notification[] objects) {
+    public NotificationAdapter(Context context, List<Notification> objects) {
         super(context, R.layout.adapter_notification_list, objects);
         _context = context;
     }
@@ -8,4 +8,10 @@ public class ConsultantDetails {
     public String[] CompetenceAreas;
     public String Description;
     public String Overview;
+
+    /**
+     * The validators of the page that the details were scraped from, which should be
+     * saved once the details have been stored.
+     */
+    public HttpValidatorData Validator;
 }
@@ -0,0 +1,21 @@
+package se.danielkonsult.www.kvadratab.entities;
+
+/**
+ * The HTTP cache validators last received for a URL, used to make
+ * conditional requests.
+ */
+public class HttpValidatorData {
+
+    public HttpValidatorData() {
+    }
+
+    public HttpValidatorData(String url, String eTag, String lastModified) {
+        Url = url;
+        ETag = eTag;
+        LastModified = lastModified;
+    }
+
+    public String Url;
+    public String ETag;
+    public String LastModified;
+}
@@ -14,4 +14,10 @@ public class SummaryData {
     public TagData[] TagDatas;
 
     public OfficeData[] OfficeDatas;
+
+    /**
+     * The validators of the page that the data was scraped from, which should be
+     * saved once the data has been stored.
+     */
+    public HttpValidatorData Validator;
 }
@@ -215,7 +215,9 @@ public class ConsultantFilterFragment extends Fragment {
      * Gets a filter instance based on the current state of the fragment.
      */
     public ConsultantFilter getFilter(){
-        return new ConsultantFilter(_officeIds, _editName.getText().toString());
+        // Competences are not edited here, keep the current ones
+        return new ConsultantFilter(_officeIds, _editName.getText().toString(),
+                AppCtrl.getDataService().getFilter().getCompetences());
     }
 
     public void setListener(Listener listener){
@@ -11,6 +11,40 @@ public class Constants {
     public static final int REFRESHER_INTENT_REQUEST_CODE = 1122;
     public static final String REFRESHER_INTENT_ACTION = "se.danielkonsult.www.kvadratab.refresher";
     public static final long REFRESHER_CONSULTANT_IMAGE_COMPARISON_INTERVAL_HOURS = 72; // Once every 3 days
+    public static final int REFRESHER_PARALLELISM = 4; // Offices that are scraped at the same time
 
-    public static final int NOTIFICATIONS_MAX_COUNT = 20;
+    public static final int NOTIFICATIONS_PAGE_SIZE = 20;
+
+    // Consultant lists read this many consultants at a time and keep the most recent pages
+    public static final int CONSULTANT_LIST_PAGE_SIZE = 30;
+    public static final int CONSULTANT_LIST_CACHED_PAGES = 3;
+    public static final int CONSULTANT_LIST_PREFETCH_MARGIN = 10; // Positions from a page end where the next page is read
+    public static final int NOTIFICATIONS_MAX_COUNT = 500;
+    public static final int NOTIFICATIONS_MAX_AGE_DAYS = 180;
+    public static final int NOTIFICATIONS_MAX_MESSAGES = 20; // Of each of the info and error types
+    public static final int NOTIFICATIONS_COMPACTION_WINDOW_DAYS = 14;
+    public static final int NOTIFICATIONS_RETENTION_BATCH_SIZE = 100; // Rows deleted per statement
+
+    public static final int LOADER_PARALLELISM = 4; // Offices that are scraped at the same time
+    public static final int LOADER_IMAGE_FETCH_THREADS = 4;
+    public static final int LOADER_IMAGE_STORE_THREADS = 2;
+    public static final int LOADER_PIPELINE_WINDOW = 16; // Consultants whose images are being processed at the same time
+
+    public static final int WEBCLIENT_CONNECT_TIMEOUT_MS = 10000;
+    public static final int WEBCLIENT_READ_TIMEOUT_MS = 20000;
+    public static final int WEBCLIENT_MAX_CONNECTIONS_PER_HOST = 4;
+    public static final double WEBCLIENT_REQUESTS_PER_SECOND = 5.0;
+    public static final int WEBCLIENT_REQUEST_BURST = 10;
+    public static final long WEBCLIENT_DEFAULT_RETRY_AFTER_MS = 30000; // When a 429 doesn't say
+    public static final long WEBCLIENT_MAX_RETRY_AFTER_MS = 300000;
+    public static final int WEBCLIENT_MAX_ATTEMPTS = 3;
+    public static final long WEBCLIENT_RETRY_BASE_DELAY_MS = 1000;
+    public static final long WEBCLIENT_RETRY_MAX_DELAY_MS = 15000;
+    public static final int WEBCLIENT_CIRCUIT_FAILURE_THRESHOLD = 5; // Consecutive failures before a host is left alone
+    public static final long WEBCLIENT_CIRCUIT_OPEN_MS = 60000;
+
+    // Page sizes when scraping consultant listings, the size adapts between min and max
+    public static final int SCRAPER_LISTING_INITIAL_PAGE_SIZE = 1000;
+    public static final int SCRAPER_LISTING_MIN_PAGE_SIZE = 50;
+    public static final int SCRAPER_LISTING_MAX_PAGE_SIZE = 4000;
 }
@@ -0,0 +1,85 @@
+package se.danielkonsult.www.kvadratab.helpers;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes a SHA-1 fingerprint of a sequence of strings, used to tell whether
+ * scraped content has changed since it was stored. Each string is prefixed by
+ * its length, so that null, empty strings and different splits of the same
+ * text all give different fingerprints.
+ */
+public class ContentHash {
+
+    // Private variables
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final MessageDigest _digest;
+
+    // Constructor
+
+    public ContentHash() {
+        try {
+            _digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Private methods
+
+    private void addLength(int length) {
+        _digest.update((byte) (length >>> 24));
+        _digest.update((byte) (length >>> 16));
+        _digest.update((byte) (length >>> 8));
+        _digest.update((byte) length);
+    }
+
+    // Public methods
+
+    /**
+     * Adds a string, which may be null.
+     */
+    public ContentHash add(String value) {
+        if (value == null) {
+            addLength(-1);
+        } else {
+            byte[] bytes = value.getBytes(UTF8);
+            addLength(bytes.length);
+            _digest.update(bytes);
+        }
+        return this;
+    }
+
+    /**
+     * Adds an array of strings, which may be null.
+     */
+    public ContentHash add(String[] values) {
+        if (values == null) {
+            addLength(-1);
+        } else {
+            addLength(values.length);
+            for (String value : values)
+                add(value);
+        }
+        return this;
+    }
+
+    /**
+     * Gets the fingerprint of everything added, as 40 hexadecimal digits. The
+     * instance can't be used after this.
+     */
+    public String toHex() {
+        byte[] hash = _digest.digest();
+        char[] result = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            result[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0x0F];
+            result[i * 2 + 1] = HEX_DIGITS[hash[i] & 0x0F];
+        }
+        return new String(result);
+    }
+}
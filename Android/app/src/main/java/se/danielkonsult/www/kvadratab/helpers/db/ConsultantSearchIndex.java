@@ -0,0 +1,295 @@
+package se.danielkonsult.www.kvadratab.helpers.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Keeps the full-text search table of consultants in sync with the consultant,
+ * details, office and competence tables, and searches it.
+ *
+ * Text is lowercased in Swedish before it is indexed and searched, since the
+ * tokenizer available on all supported versions only folds ASCII letters. The
+ * write methods are meant to be called inside the transaction of the change.
+ */
+public class ConsultantSearchIndex {
+
+    // Private variables
+
+    private static final Locale SWEDISH = new Locale("sv", "SE");
+
+    /**
+     * The maximum number of terms of a search, the rest are ignored.
+     */
+    private static final int MAX_SEARCH_TERMS = 10;
+
+    /**
+     * The minimum length of a search term, shorter ones are ignored.
+     */
+    private static final int MIN_TERM_LENGTH = 2;
+
+    /**
+     * The weight of a hit in each column of the search table, in column order.
+     */
+    private static final double[] COLUMN_WEIGHTS = { 4.0, 2.0, 2.0, 3.0, 1.0, 1.0 };
+
+    private static final String SQL_SELECT_CONSULTANTS =
+            "SELECT c." + DbSpec.ConsultantEntry.COLUMN_NAME_ID +
+                    ", c." + DbSpec.ConsultantEntry.COLUMN_NAME_FIRSTNAME +
+                    ", c." + DbSpec.ConsultantEntry.COLUMN_NAME_LASTNAME +
+                    ", c." + DbSpec.ConsultantEntry.COLUMN_NAME_JOBROLE +
+                    ", o." + DbSpec.OfficeEntry.COLUMN_NAME_NAME +
+                    ", d." + DbSpec.ConsultantDetailsEntry.COLUMN_NAME_DESCRIPTION +
+                    ", d." + DbSpec.ConsultantDetailsEntry.COLUMN_NAME_OVERVIEW +
+                    " FROM " + DbSpec.ConsultantEntry.TABLE_NAME + " c LEFT JOIN " + DbSpec.OfficeEntry.TABLE_NAME +
+                    " o ON c." + DbSpec.ConsultantEntry.COLUMN_NAME_OFFICEID + " = o." + DbSpec.OfficeEntry.COLUMN_NAME_ID +
+                    " LEFT JOIN " + DbSpec.ConsultantDetailsEntry.TABLE_NAME + " d ON d." +
+                    DbSpec.ConsultantDetailsEntry.COLUMN_NAME_CONSULTANT_ID + " = c." + DbSpec.ConsultantEntry.COLUMN_NAME_ID;
+
+    private static final String SQL_SELECT_COMPETENCES =
+            "SELECT " + DbSpec.ConsultantCompetenceEntry.COLUMN_NAME_CONSULTANT_ID + ", " +
+                    DbSpec.ConsultantCompetenceEntry.COLUMN_NAME_COMPETENCE +
+                    " FROM " + DbSpec.ConsultantCompetenceEntry.TABLE_NAME;
+
+    private final SQLiteDatabase _db;
+    private final SQLiteStatement _insertStatement;
+    private final SQLiteStatement _deleteStatement;
+
+    // Constructor
+
+    public ConsultantSearchIndex(SQLiteDatabase db) {
+        _db = db;
+        _insertStatement = db.compileStatement(DbSpec.ConsultantSearchEntry.SQL_INSERT);
+        _deleteStatement = db.compileStatement(DbSpec.ConsultantSearchEntry.SQL_DELETE);
+    }
+
+    // Private methods
+
+    /**
+     * Lowercases a text the Swedish way, returns an empty string for null.
+     */
+    private static String normalize(String text) {
+        if (text == null)
+            return "";
+        return text.toLowerCase(SWEDISH);
+    }
+
+    /**
+     * Joins the competences of a consultant to one text.
+     */
+    private static String joinCompetences(List<String> competences) {
+        if (competences == null)
+            return "";
+
+        StringBuilder sb = new StringBuilder();
+        for (String competence : competences) {
+            if (sb.length() > 0)
+                sb.append(' ');
+            sb.append(competence);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads the competences of the consultants matched by a where clause, grouped by consultant id.
+     */
+    private Map<Integer, List<String>> readCompetences(String where, String[] whereArgs) {
+        Map<Integer, List<String>> result = new HashMap<>();
+        Cursor c = _db.rawQuery(SQL_SELECT_COMPETENCES + where + " ORDER BY " +
+                DbSpec.ConsultantCompetenceEntry.COLUMN_NAME_INDEX, whereArgs);
+        try {
+            while (c.moveToNext()) {
+                List<String> competences = result.get(c.getInt(0));
+                if (competences == null) {
+                    competences = new ArrayList<>();
+                    result.put(c.getInt(0), competences);
+                }
+                competences.add(c.getString(1));
+            }
+        } finally {
+            c.close();
+        }
+        return result;
+    }
+
+    /**
+     * Indexes the consultants matched by a where clause, reading them from the database.
+     */
+    private void reindexWhere(String consultantWhere, String competenceWhere, String[] whereArgs) {
+        Map<Integer, List<String>> competences = readCompetences(competenceWhere, whereArgs);
+
+        Cursor c = _db.rawQuery(SQL_SELECT_CONSULTANTS + consultantWhere, whereArgs);
+        try {
+            while (c.moveToNext()) {
+                int id = c.getInt(0);
+                remove(id);
+                index(id, c.getString(1), c.getString(2), c.getString(3), c.getString(4),
+                        c.getString(5), c.getString(6), joinCompetences(competences.get(id)));
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Adds a row for a consultant, which must not already be indexed.
+     */
+    private void index(int consultantId, String firstName, String lastName, String jobRole, String officeName,
+                       String description, String overview, String competences) {
+        _insertStatement.bindLong(1, consultantId);
+        _insertStatement.bindString(2, normalize(firstName) + " " + normalize(lastName));
+        _insertStatement.bindString(3, normalize(jobRole));
+        _insertStatement.bindString(4, normalize(officeName));
+        _insertStatement.bindString(5, normalize(competences));
+        _insertStatement.bindString(6, normalize(description));
+        _insertStatement.bindString(7, normalize(overview));
+        _insertStatement.executeInsert();
+    }
+
+    /**
+     * Scores a row from its matchinfo blob in the 'pcnx' format. Each phrase found
+     * in a column adds the weight of the column, scaled by how rare the phrase is
+     * among the consultants.
+     */
+    private static double score(byte[] matchInfo) {
+        ByteBuffer buffer = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder());
+        int phraseCount = buffer.getInt(0);
+        int columnCount = buffer.getInt(4);
+        int rowCount = buffer.getInt(8);
+
+        double result = 0;
+        for (int phrase = 0; phrase < phraseCount; phrase++) {
+            for (int column = 0; column < columnCount; column++) {
+                int offset = 4 * (3 + 3 * (phrase * columnCount + column));
+                int hitsInRow = buffer.getInt(offset);
+                int rowsWithHits = buffer.getInt(offset + 8);
+                if (hitsInRow > 0)
+                    result += COLUMN_WEIGHTS[column] * Math.log((rowCount + 1.0) / rowsWithHits);
+            }
+        }
+        return result;
+    }
+
+    // Public methods
+
+    /**
+     * Builds a full-text query matching any word of a free text, by prefix.
+     * Returns null if the text has no usable words.
+     */
+    public static String toMatchQuery(String text) {
+        StringBuilder sb = new StringBuilder();
+        int termCount = 0;
+        for (String term : normalize(text).split("[^\\p{L}\\p{N}]+")) {
+            // Single letters would match almost everything
+            if (term.length() < MIN_TERM_LENGTH)
+                continue;
+            if (termCount == MAX_SEARCH_TERMS)
+                break;
+
+            if (termCount > 0)
+                sb.append(" OR ");
+            sb.append(term).append('*');
+            termCount++;
+        }
+
+        return (termCount > 0) ? sb.toString() : null;
+    }
+
+    /**
+     * Searches for consultants matching any word of a free text and returns
+     * their ids, best match first.
+     */
+    public static int[] search(SQLiteDatabase db, String text) {
+        String query = toMatchQuery(text);
+        if (query == null)
+            return new int[0];
+
+        final List<Integer> ids = new ArrayList<>();
+        final Map<Integer, Double> scores = new HashMap<>();
+        Cursor c = db.rawQuery(DbSpec.ConsultantSearchEntry.SQL_MATCH, new String[] { query });
+        try {
+            while (c.moveToNext()) {
+                ids.add(c.getInt(0));
+                scores.put(c.getInt(0), score(c.getBlob(1)));
+            }
+        } finally {
+            c.close();
+        }
+
+        Collections.sort(ids, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer id1, Integer id2) {
+                return scores.get(id2).compareTo(scores.get(id1));
+            }
+        });
+
+        int[] result = new int[ids.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = ids.get(i);
+        return result;
+    }
+
+    /**
+     * Indexes a new consultant from its data, using the given office name.
+     */
+    public void add(int consultantId, String firstName, String lastName, String jobRole, String officeName,
+                    String description, String overview, String[] competences) {
+        index(consultantId, firstName, lastName, jobRole, officeName, description, overview,
+                joinCompetences((competences != null) ? Arrays.asList(competences) : null));
+    }
+
+    /**
+     * Indexes a consultant again from what is currently stored in the database.
+     */
+    public void reindex(int consultantId) {
+        String[] whereArgs = { Integer.toString(consultantId) };
+        reindexWhere(" WHERE c." + DbSpec.ConsultantEntry.COLUMN_NAME_ID + " = ?",
+                " WHERE " + DbSpec.ConsultantCompetenceEntry.COLUMN_NAME_CONSULTANT_ID + " = ?", whereArgs);
+    }
+
+    /**
+     * Indexes all consultants of an office again, e.g. since the office has been renamed.
+     */
+    public void reindexOffice(int officeId) {
+        String[] whereArgs = { Integer.toString(officeId) };
+        reindexWhere(" WHERE c." + DbSpec.ConsultantEntry.COLUMN_NAME_OFFICEID + " = ?",
+                " WHERE " + DbSpec.ConsultantCompetenceEntry.COLUMN_NAME_CONSULTANT_ID + " IN (SELECT " +
+                        DbSpec.ConsultantEntry.COLUMN_NAME_ID + " FROM " + DbSpec.ConsultantEntry.TABLE_NAME + " WHERE " +
+                        DbSpec.ConsultantEntry.COLUMN_NAME_OFFICEID + " = ?)", whereArgs);
+    }
+
+    /**
+     * Removes a consultant from the index.
+     */
+    public void remove(int consultantId) {
+        _deleteStatement.bindLong(1, consultantId);
+        _deleteStatement.executeUpdateDelete();
+    }
+
+    /**
+     * Clears the index and indexes all consultants in the database.
+     */
+    public void rebuild() {
+        _db.execSQL("DELETE FROM " + DbSpec.ConsultantSearchEntry.TABLE_NAME);
+        reindexWhere("", "", null);
+    }
+
+    /**
+     * Releases the compiled statements.
+     */
+    public void close() {
+        _insertStatement.close();
+        _deleteStatement.close();
+    }
+}
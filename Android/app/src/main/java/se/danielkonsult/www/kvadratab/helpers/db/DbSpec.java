@@ -17,11 +17,18 @@ public class DbSpec {
         public static final String TABLE_NAME = "office";
         public static final String COLUMN_NAME_ID = "id";
         public static final String COLUMN_NAME_NAME = "name";
+        public static final String COLUMN_NAME_LISTINGFINGERPRINT = "listing_fingerprint";
 
         public static final String SQL_CREATE =
                 "CREATE TABLE " + TABLE_NAME + " (" +
                 COLUMN_NAME_ID + INTEGER_TYPE + PRIMARY_KEY + COMMA_SEP +
                 COLUMN_NAME_NAME + TEXT_TYPE + " )";
+
+        public static final String SQL_ADD_COLUMN_LISTINGFINGERPRINT =
+                "ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COLUMN_NAME_LISTINGFINGERPRINT + TEXT_TYPE;
+
+        public static final String SQL_UPDATE_LISTINGFINGERPRINT =
+                "UPDATE " + TABLE_NAME + " SET " + COLUMN_NAME_LISTINGFINGERPRINT + "=? WHERE " + COLUMN_NAME_ID + "=?";
     }
 
     public static class TagEntry {
@@ -42,10 +49,15 @@ public class DbSpec {
         public static final String COLUMN_NAME_LASTNAME = "lastname";
         public static final String COLUMN_NAME_OFFICEID = "office_id";
         public static final String COLUMN_NAME_JOBROLE = "jobrole";
+        public static final String COLUMN_NAME_DETAILSTIMESTAMP = "details_timestamp";
+
+        // Moved to ConsultantDetailsEntry in version 6, only part of the base schema
         public static final String COLUMN_NAME_DESCRIPTION = "description";
         public static final String COLUMN_NAME_OVERVIEW = "overview";
-        public static final String COLUMN_NAME_DETAILSTIMESTAMP = "details_timestamp";
 
+        /**
+         * Creates the table of the base schema, which still has the details.
+         */
         public static final String SQL_CREATE =
                 "CREATE TABLE " + TABLE_NAME + " (" +
                         COLUMN_NAME_ID + INTEGER_TYPE + PRIMARY_KEY + COMMA_SEP +
@@ -59,7 +71,95 @@ public class DbSpec {
                         "FOREIGN KEY(" + COLUMN_NAME_OFFICEID + ") REFERENCES " +
                         OfficeEntry.TABLE_NAME + "(" + OfficeEntry.COLUMN_NAME_ID + "))";
 
+        /**
+         * Creates the table without the details, as it is since version 6, under the given name.
+         */
+        public static String getSqlCreateWithoutDetails(String tableName) {
+            return "CREATE TABLE " + tableName + " (" +
+                    COLUMN_NAME_ID + INTEGER_TYPE + PRIMARY_KEY + COMMA_SEP +
+                    COLUMN_NAME_FIRSTNAME + TEXT_TYPE + COMMA_SEP +
+                    COLUMN_NAME_LASTNAME + TEXT_TYPE + COMMA_SEP +
+                    COLUMN_NAME_JOBROLE + TEXT_TYPE + COMMA_SEP +
+                    COLUMN_NAME_OFFICEID + INTEGER_TYPE + COMMA_SEP +
+                    COLUMN_NAME_DETAILSTIMESTAMP + INTEGER_TYPE + COMMA_SEP +
+                    "FOREIGN KEY(" + COLUMN_NAME_OFFICEID + ") REFERENCES " +
+                    OfficeEntry.TABLE_NAME + "(" + OfficeEntry.COLUMN_NAME_ID + "))";
+        }
+
+        public static final String SQL_CREATE_INDEX_OFFICEID =
+                "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_" + COLUMN_NAME_OFFICEID + "_idx ON " +
+                        TABLE_NAME + " (" + COLUMN_NAME_OFFICEID + ")";
+
+        public static final String SQL_CREATE_INDEX_NAME =
+                "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_name_idx ON " +
+                        TABLE_NAME + " (" + COLUMN_NAME_LASTNAME + COMMA_SEP + COLUMN_NAME_FIRSTNAME + ")";
+
         public static final String SQL_COUNT_ALL = "SELECT COUNT(*) FROM " + TABLE_NAME;
+
+        public static final String SQL_INSERT =
+                "INSERT INTO " + TABLE_NAME + " (" +
+                        COLUMN_NAME_ID + COMMA_SEP +
+                        COLUMN_NAME_FIRSTNAME + COMMA_SEP +
+                        COLUMN_NAME_LASTNAME + COMMA_SEP +
+                        COLUMN_NAME_JOBROLE + COMMA_SEP +
+                        COLUMN_NAME_OFFICEID + ") VALUES (?,?,?,?,?)";
+
+        public static final String SQL_UPDATE_OFFICE =
+                "UPDATE " + TABLE_NAME + " SET " + COLUMN_NAME_OFFICEID + "=? WHERE " + COLUMN_NAME_ID + "=?";
+
+        public static final String SQL_UPDATE_NAME =
+                "UPDATE " + TABLE_NAME + " SET " + COLUMN_NAME_FIRSTNAME + "=?," + COLUMN_NAME_LASTNAME + "=? WHERE " + COLUMN_NAME_ID + "=?";
+
+        public static final String SQL_DELETE =
+                "DELETE FROM " + TABLE_NAME + " WHERE " + COLUMN_NAME_ID + "=?";
+    }
+
+    /**
+     * The long texts of the consultant details, kept apart from the consultant table
+     * so that lists and refreshes don't have to read past them.
+     */
+    public static class ConsultantDetailsEntry {
+        public static final String TABLE_NAME = "consultant_details";
+        public static final String COLUMN_NAME_CONSULTANT_ID = "consultant_id";
+        public static final String COLUMN_NAME_DESCRIPTION = "description";
+        public static final String COLUMN_NAME_OVERVIEW = "overview";
+        public static final String COLUMN_NAME_CONTENTHASH = "content_hash";
+
+        public static final String SQL_CREATE =
+                "CREATE TABLE " + TABLE_NAME + " (" +
+                        COLUMN_NAME_CONSULTANT_ID + INTEGER_TYPE + PRIMARY_KEY + COMMA_SEP +
+                        COLUMN_NAME_DESCRIPTION + TEXT_TYPE + COMMA_SEP +
+                        COLUMN_NAME_OVERVIEW + TEXT_TYPE + COMMA_SEP +
+                        "FOREIGN KEY(" + COLUMN_NAME_CONSULTANT_ID + ") REFERENCES " +
+                        ConsultantEntry.TABLE_NAME + "(" + ConsultantEntry.COLUMN_NAME_ID + "))";
+
+        public static final String SQL_ADD_COLUMN_CONTENTHASH =
+                "ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COLUMN_NAME_CONTENTHASH + TEXT_TYPE;
+
+        public static final String SQL_SELECT_CONTENTHASH =
+                "SELECT " + COLUMN_NAME_CONTENTHASH + " FROM " + TABLE_NAME + " WHERE " + COLUMN_NAME_CONSULTANT_ID + "=?";
+
+        /**
+         * Forgets the content hash of a consultant, for when the details are changed some other way.
+         */
+        public static final String SQL_CLEAR_CONTENTHASH =
+                "UPDATE " + TABLE_NAME + " SET " + COLUMN_NAME_CONTENTHASH + "=NULL WHERE " + COLUMN_NAME_CONSULTANT_ID + "=?";
+
+        public static final String SQL_INSERT_OR_REPLACE =
+                "INSERT OR REPLACE INTO " + TABLE_NAME + " (" +
+                        COLUMN_NAME_CONSULTANT_ID + COMMA_SEP +
+                        COLUMN_NAME_DESCRIPTION + COMMA_SEP +
+                        COLUMN_NAME_OVERVIEW + ") VALUES (?,?,?)";
+
+        public static final String SQL_DELETE =
+                "DELETE FROM " + TABLE_NAME + " WHERE " + COLUMN_NAME_CONSULTANT_ID + "=?";
+
+        /**
+         * Joins the details to the consultant table, leaving them null for consultants without any.
+         */
+        public static final String SQL_LEFT_JOIN =
+                " LEFT JOIN " + TABLE_NAME + " ON " + TABLE_NAME + "." + COLUMN_NAME_CONSULTANT_ID + " = " +
+                        ConsultantEntry.TABLE_NAME + "." + ConsultantEntry.COLUMN_NAME_ID;
     }
 
     public static class ConsultantTagEntry{
@@ -92,6 +192,69 @@ public class DbSpec {
                         "PRIMARY KEY(" + COLUMN_NAME_CONSULTANT_ID + ", " + COLUMN_NAME_INDEX + "),"+
                         "FOREIGN KEY(" + COLUMN_NAME_CONSULTANT_ID + ") REFERENCES " +
                         ConsultantEntry.TABLE_NAME + "(" + ConsultantEntry.COLUMN_NAME_ID + "))";
+
+        public static final String SQL_CREATE_INDEX_COMPETENCE =
+                "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_" + COLUMN_NAME_COMPETENCE + "_idx ON " +
+                        TABLE_NAME + " (" + COLUMN_NAME_COMPETENCE + ")";
+
+        public static final String SQL_INSERT =
+                "INSERT INTO " + TABLE_NAME + " (" +
+                        COLUMN_NAME_CONSULTANT_ID + COMMA_SEP +
+                        COLUMN_NAME_INDEX + COMMA_SEP +
+                        COLUMN_NAME_COMPETENCE + ") VALUES (?,?,?)";
+
+        public static final String SQL_DELETE =
+                "DELETE FROM " + TABLE_NAME + " WHERE " + COLUMN_NAME_CONSULTANT_ID + "=?";
+
+        // Separators of the concatenated competences, which can't occur in scraped text
+        public static final String CONCAT_INDEX_SEPARATOR = "\u001E";
+        public static final String CONCAT_SEPARATOR = "\u001F";
+
+        /**
+         * Subquery that concatenates the indexes and competences of the consultant in the
+         * outer query, as "index<RS>competence" joined by <US>. Null if there are none.
+         */
+        public static final String SQL_CONCAT_FOR_CONSULTANT =
+                "(SELECT group_concat(" + COLUMN_NAME_INDEX + " || '" + CONCAT_INDEX_SEPARATOR + "' || " +
+                        COLUMN_NAME_COMPETENCE + ", '" + CONCAT_SEPARATOR + "') FROM " + TABLE_NAME +
+                        " WHERE " + TABLE_NAME + "." + COLUMN_NAME_CONSULTANT_ID + " = " +
+                        ConsultantEntry.TABLE_NAME + "." + ConsultantEntry.COLUMN_NAME_ID + ")";
+    }
+
+    public static class ConsultantSearchEntry {
+        public static final String TABLE_NAME = "consultant_fts";
+        public static final String COLUMN_NAME_NAME = "name";
+        public static final String COLUMN_NAME_JOBROLE = "jobrole";
+        public static final String COLUMN_NAME_OFFICE = "office";
+        public static final String COLUMN_NAME_COMPETENCES = "competences";
+        public static final String COLUMN_NAME_DESCRIPTION = "description";
+        public static final String COLUMN_NAME_OVERVIEW = "overview";
+
+        // The docid of each row is the id of the consultant
+        public static final String SQL_CREATE =
+                "CREATE VIRTUAL TABLE " + TABLE_NAME + " USING fts4(" +
+                        COLUMN_NAME_NAME + COMMA_SEP +
+                        COLUMN_NAME_JOBROLE + COMMA_SEP +
+                        COLUMN_NAME_OFFICE + COMMA_SEP +
+                        COLUMN_NAME_COMPETENCES + COMMA_SEP +
+                        COLUMN_NAME_DESCRIPTION + COMMA_SEP +
+                        COLUMN_NAME_OVERVIEW + ")";
+
+        public static final String SQL_INSERT =
+                "INSERT INTO " + TABLE_NAME + " (docid" + COMMA_SEP +
+                        COLUMN_NAME_NAME + COMMA_SEP +
+                        COLUMN_NAME_JOBROLE + COMMA_SEP +
+                        COLUMN_NAME_OFFICE + COMMA_SEP +
+                        COLUMN_NAME_COMPETENCES + COMMA_SEP +
+                        COLUMN_NAME_DESCRIPTION + COMMA_SEP +
+                        COLUMN_NAME_OVERVIEW + ") VALUES (?,?,?,?,?,?,?)";
+
+        public static final String SQL_DELETE =
+                "DELETE FROM " + TABLE_NAME + " WHERE docid=?";
+
+        public static final String SQL_MATCH =
+                "SELECT docid, matchinfo(" + TABLE_NAME + ", 'pcnx') FROM " + TABLE_NAME +
+                        " WHERE " + TABLE_NAME + " MATCH ?";
     }
 
     public static class NotificationEntry {
@@ -107,5 +270,29 @@ public class DbSpec {
                         COLUMN_NAME_TIMESTAMP + INTEGER_TYPE + COMMA_SEP +
                         COLUMN_NAME_TYPE + TEXT_TYPE + COMMA_SEP +
                         COLUMN_NAME_DATA + TEXT_TYPE + ")";
+
+        public static final String SQL_CREATE_INDEX_TIMESTAMP =
+                "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_" + COLUMN_NAME_TIMESTAMP + "_idx ON " +
+                        TABLE_NAME + " (" + COLUMN_NAME_TIMESTAMP + ")";
+
+        public static final String SQL_UPDATE =
+                "UPDATE " + TABLE_NAME + " SET " + COLUMN_NAME_TIMESTAMP + "=?," + COLUMN_NAME_TYPE + "=?," +
+                        COLUMN_NAME_DATA + "=? WHERE " + COLUMN_NAME_ID + "=?";
+
+        public static final String SQL_DELETE =
+                "DELETE FROM " + TABLE_NAME + " WHERE " + COLUMN_NAME_ID + "=?";
+    }
+
+    public static class HttpValidatorEntry {
+        public static final String TABLE_NAME = "http_validator";
+        public static final String COLUMN_NAME_URL = "url";
+        public static final String COLUMN_NAME_ETAG = "etag";
+        public static final String COLUMN_NAME_LASTMODIFIED = "last_modified";
+
+        public static final String SQL_CREATE =
+                "CREATE TABLE " + TABLE_NAME + " (" +
+                        COLUMN_NAME_URL + TEXT_TYPE + PRIMARY_KEY + COMMA_SEP +
+                        COLUMN_NAME_ETAG + TEXT_TYPE + COMMA_SEP +
+                        COLUMN_NAME_LASTMODIFIED + TEXT_TYPE + ")";
     }
 }
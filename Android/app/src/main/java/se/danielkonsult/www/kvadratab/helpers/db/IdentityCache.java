@@ -0,0 +1,119 @@
+package se.danielkonsult.www.kvadratab.helpers.db;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps all rows of a small table in memory, with one shared instance per row
+ * that can be looked up by id in an array.
+ *
+ * The owning repository loads the cache on first use and writes its own changes
+ * through to it once they have been committed. The instances must therefore not
+ * be modified by anyone else, a changed row is replaced by a new instance.
+ */
+public abstract class IdentityCache<T> {
+
+    // Private variables
+
+    private List<T> _items;
+    private Object[] _itemsById;
+    private int _version;
+
+    // Private methods
+
+    /**
+     * Builds the array that the items are looked up in, indexed by id.
+     */
+    private void index() {
+        int maxId = -1;
+        for (T item : _items)
+            maxId = Math.max(maxId, getId(item));
+
+        _itemsById = new Object[maxId + 1];
+        for (T item : _items)
+            _itemsById[getId(item)] = item;
+    }
+
+    // Protected methods
+
+    protected abstract int getId(T item);
+
+    // Public methods
+
+    /**
+     * Gets the version of the contents, which is changed by every write. Should be
+     * read before the items are queried from the database and passed to load.
+     */
+    public synchronized int getVersion() {
+        return _version;
+    }
+
+    public synchronized boolean isLoaded() {
+        return _items != null;
+    }
+
+    /**
+     * Fills the cache with items read from the database. Nothing is loaded if a
+     * write has been made since the version was read, the items may be stale then.
+     * @return True if the items were loaded.
+     */
+    public synchronized boolean load(List<T> items, int version) {
+        if (version != _version)
+            return false;
+
+        _items = new ArrayList<>(items);
+        index();
+        return true;
+    }
+
+    /**
+     * Gets all items in the order they were loaded, or null if the cache has not been loaded.
+     */
+    public synchronized List<T> getAll() {
+        return (_items == null) ? null : new ArrayList<>(_items);
+    }
+
+    /**
+     * Gets the item with an id, null if there is none or the cache has not been loaded.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized T get(int id) {
+        if ((_itemsById == null) || (id < 0) || (id >= _itemsById.length))
+            return null;
+        return (T) _itemsById[id];
+    }
+
+    /**
+     * Adds an item or replaces the one with the same id.
+     */
+    public synchronized void put(T item) {
+        _version++;
+        if (_items == null)
+            return;
+
+        int id = getId(item);
+        for (int i = 0; i < _items.size(); i++) {
+            if (getId(_items.get(i)) == id) {
+                _items.set(i, item);
+                _itemsById[id] = item;
+                return;
+            }
+        }
+        _items.add(item);
+        index();
+    }
+
+    public synchronized void remove(int id) {
+        _version++;
+        if (_items == null)
+            return;
+
+        for (int i = 0; i < _items.size(); i++) {
+            if (getId(_items.get(i)) == id) {
+                _items.remove(i);
+                _itemsById[id] = null;
+                return;
+            }
+        }
+    }
+}
@@ -3,16 +3,20 @@ package se.danielkonsult.www.kvadratab.helpers.db;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 
 import se.danielkonsult.www.kvadratab.AppCtrl;
 import se.danielkonsult.www.kvadratab.entities.ConsultantData;
 import se.danielkonsult.www.kvadratab.entities.NotificationData;
 import se.danielkonsult.www.kvadratab.entities.OfficeData;
 import se.danielkonsult.www.kvadratab.entities.TagData;
+import se.danielkonsult.www.kvadratab.helpers.db.migrations.Migrations;
 import se.danielkonsult.www.kvadratab.repositories.consultant.ConsultantCompetenceRepository;
 import se.danielkonsult.www.kvadratab.repositories.consultant.ConsultantDataRepository;
 import se.danielkonsult.www.kvadratab.repositories.consultant.DefaultConsultantCompetenceRepository;
 import se.danielkonsult.www.kvadratab.repositories.consultant.DefaultConsultantDataRepository;
+import se.danielkonsult.www.kvadratab.repositories.httpvalidator.DefaultHttpValidatorRepository;
+import se.danielkonsult.www.kvadratab.repositories.httpvalidator.HttpValidatorRepository;
 import se.danielkonsult.www.kvadratab.repositories.notification.DefaultNotificationRepository;
 import se.danielkonsult.www.kvadratab.repositories.notification.NotificationRepository;
 import se.danielkonsult.www.kvadratab.repositories.office.DefaultOfficeDataRepository;
@@ -24,55 +28,112 @@ import se.danielkonsult.www.kvadratab.services.notification.Notification;
 /**
  * Handles the database that stores data that is downloaded from the
  * Kvadrat web page.
+ *
+ * The database uses write-ahead logging and is shared by all threads through a
+ * single instance. Android then serializes all writes on one connection while reads
+ * run on a pool of connections of their own, so browsing is not blocked by a refresh
+ * or initial load that writes at the same time. Bulk writes use non-exclusive
+ * transactions and should be kept short, since they still block other writers.
  */
 public class KvadratDb extends SQLiteOpenHelper {
 
     public static final String DATABASE_NAME = "Kvadrat.db";
     // public static final int DATABASE_VERSION = 1;
-    public static final int DATABASE_VERSION = 2;
+    // public static final int DATABASE_VERSION = 2;
+    // public static final int DATABASE_VERSION = 3;
+    // public static final int DATABASE_VERSION = 4;
+    // public static final int DATABASE_VERSION = 5;
+    // public static final int DATABASE_VERSION = 6;
+    // public static final int DATABASE_VERSION = 7;
+    public static final int DATABASE_VERSION = 8;
 
     private OfficeDataRepository _officeDataRepository;
     private TagDataRepository _tagDataRepository;
     private ConsultantDataRepository _consultantDataRepository;
     private NotificationRepository _notificationRepository;
     private ConsultantCompetenceRepository _consultantCompetenceRepository;
+    private HttpValidatorRepository _httpValidatorRepository;
+
+    private final IdentityCache<OfficeData> _officeCache = new IdentityCache<OfficeData>() {
+        @Override
+        protected int getId(OfficeData item) {
+            return item.Id;
+        }
+    };
+    private final IdentityCache<TagData> _tagCache = new IdentityCache<TagData>() {
+        @Override
+        protected int getId(TagData item) {
+            return item.Id;
+        }
+    };
 
     // Constructor
 
     public KvadratDb() {
         super(AppCtrl.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+        enableWriteAheadLogging();
     }
 
     protected KvadratDb(Context context, String databaseName){
         super(context, databaseName, null, DATABASE_VERSION);
+        enableWriteAheadLogging();
+    }
+
+    // Private methods
+
+    /**
+     * Lets the helper open the database in WAL mode, on older versions this is done in onOpen instead.
+     */
+    private void enableWriteAheadLogging() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)
+            setWriteAheadLoggingEnabled(true);
     }
 
+    // Public methods
+
     @Override
     public void onCreate(SQLiteDatabase db) {
-        db.execSQL("PRAGMA foreign_keys=ON;");
-        db.execSQL(DbSpec.OfficeEntry.SQL_CREATE);
-        db.execSQL(DbSpec.TagEntry.SQL_CREATE);
-        db.execSQL(DbSpec.ConsultantEntry.SQL_CREATE);
-        db.execSQL(DbSpec.ConsultantTagEntry.SQL_CREATE);
-        db.execSQL(DbSpec.ConsultantCompetenceEntry.SQL_CREATE);
-        db.execSQL(DbSpec.NotificationEntry.SQL_CREATE);
+        // Create the base schema and then take it to the current version the same
+        // way as an upgrade would, so that both end up with identical schemas
+        Migrations.createBaseSchema(db);
+        Migrations.migrate(db, Migrations.BASE_VERSION, DATABASE_VERSION);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        for (int version = oldVersion;version < newVersion-1;version++){
-            if (version == 2){
-                // TBD Upgrade from version 2 to version 3
-            }
-        }
+        // Apply the migrations of each version in turn
+        Migrations.migrate(db, oldVersion, newVersion);
     }
 
     @Override
     public void onOpen(SQLiteDatabase db) {
         super.onOpen(db);
         if (!db.isReadOnly()) {
-            // Enable foreign key constraints
+            // Enable foreign key constraints. This is only done here, after any migrations,
+            // since onCreate and onUpgrade run inside a transaction where the pragma is
+            // ignored, and since the migrations that rebuild tables need them to be off.
             db.execSQL("PRAGMA foreign_keys=ON;");
+
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN)
+                db.enableWriteAheadLogging();
+
+            // With WAL a commit only needs to be synced at checkpoints
+            db.execSQL("PRAGMA synchronous=NORMAL;");
+        }
+    }
+
+    /**
+     * Runs work in a single transaction that the transactions of the repositories become
+     * part of, so that either all of its writes are made or none. Rolls back if it throws.
+     */
+    public void runInTransaction(Runnable work) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            work.run();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
         }
     }
 
@@ -111,4 +172,25 @@ public class KvadratDb extends SQLiteOpenHelper {
 
         return _consultantCompetenceRepository;
     }
+
+    /**
+     * Gets the cache of all offices, which is kept by the office repository.
+     */
+    public IdentityCache<OfficeData> getOfficeCache() {
+        return _officeCache;
+    }
+
+    /**
+     * Gets the cache of all tags, which is kept by the tag repository.
+     */
+    public IdentityCache<TagData> getTagCache() {
+        return _tagCache;
+    }
+
+    public HttpValidatorRepository getHttpValidatorRepository() {
+        if (_httpValidatorRepository == null)
+            _httpValidatorRepository = new DefaultHttpValidatorRepository(this);
+
+        return _httpValidatorRepository;
+    }
 }
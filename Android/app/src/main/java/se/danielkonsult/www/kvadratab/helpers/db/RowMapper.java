@@ -0,0 +1,79 @@
+package se.danielkonsult.www.kvadratab.helpers.db;
+
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps the rows of a cursor to objects. The positions of the columns are
+ * resolved once per cursor, and the cursor is always closed when read.
+ * Instances hold no state of their own and can be shared between threads.
+ */
+public abstract class RowMapper<T> {
+
+    // Private variables
+
+    private final String[] _columns;
+
+    // Constructor
+
+    /**
+     * Creates a mapper for the given column names, normally the projection of the query.
+     */
+    protected RowMapper(String[] columns) {
+        _columns = columns;
+    }
+
+    // Private methods
+
+    /**
+     * Resolves the positions of the columns in the cursor, in the order they were given.
+     */
+    private int[] resolveColumns(Cursor c) {
+        int[] result = new int[_columns.length];
+        for (int i = 0; i < _columns.length; i++)
+            result[i] = c.getColumnIndexOrThrow(_columns[i]);
+
+        return result;
+    }
+
+    // Protected methods
+
+    /**
+     * Maps the current row, columns holds the cursor position of each column name.
+     */
+    protected abstract T map(Cursor c, int[] columns);
+
+    // Public methods
+
+    /**
+     * Maps all rows of a cursor and closes it.
+     */
+    public List<T> readAll(Cursor c) {
+        try {
+            List<T> result = new ArrayList<>(Math.max(c.getCount(), 0));
+            int[] columns = resolveColumns(c);
+            while (c.moveToNext())
+                result.add(map(c, columns));
+
+            return result;
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Maps the first row of a cursor and closes it, returns null if there are no rows.
+     */
+    public T readFirst(Cursor c) {
+        try {
+            if (c.moveToFirst())
+                return map(c, resolveColumns(c));
+
+            return null;
+        } finally {
+            c.close();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package se.danielkonsult.www.kvadratab.helpers.db.migrations;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import se.danielkonsult.www.kvadratab.helpers.db.ConsultantSearchIndex;
+import se.danielkonsult.www.kvadratab.helpers.db.DbSpec;
+
+/**
+ * Version 6, moves the description and overview of the consultants to a table
+ * of their own and rebuilds the consultant table without them.
+ *
+ * SQLite can't drop columns, so the table is copied to a new one that replaces it.
+ * This requires that foreign keys aren't enforced, since dropping the old table would
+ * otherwise fail because of the tables that refer to it. They can't be turned off here,
+ * since the pragma is ignored inside the transaction that the migrations run in, so
+ * KvadratDb only turns them on in onOpen, which runs after the migrations.
+ */
+class ConsultantDetailsMigration implements Migration {
+
+    private static final String NEW_TABLE_NAME = DbSpec.ConsultantEntry.TABLE_NAME + "_new";
+
+    private static final String CONSULTANT_COLUMNS =
+            DbSpec.ConsultantEntry.COLUMN_NAME_ID + "," +
+                    DbSpec.ConsultantEntry.COLUMN_NAME_FIRSTNAME + "," +
+                    DbSpec.ConsultantEntry.COLUMN_NAME_LASTNAME + "," +
+                    DbSpec.ConsultantEntry.COLUMN_NAME_JOBROLE + "," +
+                    DbSpec.ConsultantEntry.COLUMN_NAME_OFFICEID + "," +
+                    DbSpec.ConsultantEntry.COLUMN_NAME_DETAILSTIMESTAMP;
+
+    @Override
+    public int getVersion() {
+        return 6;
+    }
+
+    @Override
+    public void apply(SQLiteDatabase db) {
+        Cursor c = db.rawQuery("PRAGMA foreign_keys", null);
+        try {
+            if (c.moveToFirst() && (c.getInt(0) != 0))
+                throw new IllegalStateException("Foreign keys must not be enforced while the consultant table is rebuilt");
+        } finally {
+            c.close();
+        }
+
+        db.execSQL(DbSpec.ConsultantDetailsEntry.SQL_CREATE);
+        db.execSQL("INSERT INTO " + DbSpec.ConsultantDetailsEntry.TABLE_NAME + " (" +
+                DbSpec.ConsultantDetailsEntry.COLUMN_NAME_CONSULTANT_ID + "," +
+                DbSpec.ConsultantDetailsEntry.COLUMN_NAME_DESCRIPTION + "," +
+                DbSpec.ConsultantDetailsEntry.COLUMN_NAME_OVERVIEW + ") SELECT " +
+                DbSpec.ConsultantEntry.COLUMN_NAME_ID + "," +
+                DbSpec.ConsultantEntry.COLUMN_NAME_DESCRIPTION + "," +
+                DbSpec.ConsultantEntry.COLUMN_NAME_OVERVIEW + " FROM " + DbSpec.ConsultantEntry.TABLE_NAME +
+                " WHERE " + DbSpec.ConsultantEntry.COLUMN_NAME_DESCRIPTION + " IS NOT NULL OR " +
+                DbSpec.ConsultantEntry.COLUMN_NAME_OVERVIEW + " IS NOT NULL");
+
+        // Replace the consultant table, the indexes are dropped along with the old one
+        db.execSQL(DbSpec.ConsultantEntry.getSqlCreateWithoutDetails(NEW_TABLE_NAME));
+        db.execSQL("INSERT INTO " + NEW_TABLE_NAME + " (" + CONSULTANT_COLUMNS + ") SELECT " +
+                CONSULTANT_COLUMNS + " FROM " + DbSpec.ConsultantEntry.TABLE_NAME);
+        db.execSQL("DROP TABLE " + DbSpec.ConsultantEntry.TABLE_NAME);
+        db.execSQL("ALTER TABLE " + NEW_TABLE_NAME + " RENAME TO " + DbSpec.ConsultantEntry.TABLE_NAME);
+        db.execSQL(DbSpec.ConsultantEntry.SQL_CREATE_INDEX_OFFICEID);
+        db.execSQL(DbSpec.ConsultantEntry.SQL_CREATE_INDEX_NAME);
+
+        // The search index reads the details from the new table from now on
+        ConsultantSearchIndex searchIndex = new ConsultantSearchIndex(db);
+        try {
+            searchIndex.rebuild();
+        } finally {
+            searchIndex.close();
+        }
+    }
+}
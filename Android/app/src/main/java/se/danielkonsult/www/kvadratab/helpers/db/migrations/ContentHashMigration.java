@@ -0,0 +1,22 @@
+package se.danielkonsult.www.kvadratab.helpers.db.migrations;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import se.danielkonsult.www.kvadratab.helpers.db.DbSpec;
+
+/**
+ * Version 7, adds the content hash of the consultant details. Details stored
+ * earlier have no hash and are written again the next time they are scraped.
+ */
+class ContentHashMigration implements Migration {
+
+    @Override
+    public int getVersion() {
+        return 7;
+    }
+
+    @Override
+    public void apply(SQLiteDatabase db) {
+        db.execSQL(DbSpec.ConsultantDetailsEntry.SQL_ADD_COLUMN_CONTENTHASH);
+    }
+}
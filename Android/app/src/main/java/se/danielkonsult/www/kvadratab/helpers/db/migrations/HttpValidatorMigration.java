@@ -0,0 +1,21 @@
+package se.danielkonsult.www.kvadratab.helpers.db.migrations;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import se.danielkonsult.www.kvadratab.helpers.db.DbSpec;
+
+/**
+ * Version 3, adds the table that stores HTTP validators.
+ */
+class HttpValidatorMigration implements Migration {
+
+    @Override
+    public int getVersion() {
+        return 3;
+    }
+
+    @Override
+    public void apply(SQLiteDatabase db) {
+        db.execSQL(DbSpec.HttpValidatorEntry.SQL_CREATE);
+    }
+}
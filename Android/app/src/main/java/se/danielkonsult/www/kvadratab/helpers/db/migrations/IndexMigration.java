@@ -0,0 +1,25 @@
+package se.danielkonsult.www.kvadratab.helpers.db.migrations;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import se.danielkonsult.www.kvadratab.helpers.db.DbSpec;
+
+/**
+ * Version 4, adds the indexes used for office lookups, sorting of consultants
+ * and notifications, and competence lookups.
+ */
+class IndexMigration implements Migration {
+
+    @Override
+    public int getVersion() {
+        return 4;
+    }
+
+    @Override
+    public void apply(SQLiteDatabase db) {
+        db.execSQL(DbSpec.ConsultantEntry.SQL_CREATE_INDEX_OFFICEID);
+        db.execSQL(DbSpec.ConsultantEntry.SQL_CREATE_INDEX_NAME);
+        db.execSQL(DbSpec.ConsultantCompetenceEntry.SQL_CREATE_INDEX_COMPETENCE);
+        db.execSQL(DbSpec.NotificationEntry.SQL_CREATE_INDEX_TIMESTAMP);
+    }
+}
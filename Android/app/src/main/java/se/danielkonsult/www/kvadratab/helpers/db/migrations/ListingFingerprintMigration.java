@@ -0,0 +1,21 @@
+package se.danielkonsult.www.kvadratab.helpers.db.migrations;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import se.danielkonsult.www.kvadratab.helpers.db.DbSpec;
+
+/**
+ * Version 8, adds the fingerprint of the consultant listing of each office.
+ */
+class ListingFingerprintMigration implements Migration {
+
+    @Override
+    public int getVersion() {
+        return 8;
+    }
+
+    @Override
+    public void apply(SQLiteDatabase db) {
+        db.execSQL(DbSpec.OfficeEntry.SQL_ADD_COLUMN_LISTINGFINGERPRINT);
+    }
+}
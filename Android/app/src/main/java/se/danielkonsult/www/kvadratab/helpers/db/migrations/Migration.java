@@ -0,0 +1,20 @@
+package se.danielkonsult.www.kvadratab.helpers.db.migrations;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * A single step of the database schema, taking the database from the
+ * previous version to the version of the migration.
+ */
+public interface Migration {
+
+    /**
+     * Gets the database version that the migration results in.
+     */
+    int getVersion();
+
+    /**
+     * Applies the changes of the migration. Runs inside the upgrade transaction.
+     */
+    void apply(SQLiteDatabase db);
+}
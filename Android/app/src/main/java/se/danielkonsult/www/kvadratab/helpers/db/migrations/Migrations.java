@@ -0,0 +1,73 @@
+package se.danielkonsult.www.kvadratab.helpers.db.migrations;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import se.danielkonsult.www.kvadratab.helpers.db.DbSpec;
+
+/**
+ * Creates the database schema and takes it from one version to another by
+ * applying the migrations in order.
+ */
+public class Migrations {
+
+    // Constants
+
+    /**
+     * The version of the schema created by createBaseSchema. Every later change
+     * is made by a migration.
+     */
+    public static final int BASE_VERSION = 2;
+
+    // Private variables
+
+    private static final Migration[] MIGRATIONS = {
+            new HttpValidatorMigration(),
+            new IndexMigration(),
+            new SearchIndexMigration(),
+            new ConsultantDetailsMigration(),
+            new ContentHashMigration(),
+            new ListingFingerprintMigration()
+    };
+
+    // Public methods
+
+    /**
+     * Gets the version that all migrations together result in.
+     */
+    public static int getLatestVersion() {
+        return MIGRATIONS[MIGRATIONS.length - 1].getVersion();
+    }
+
+    /**
+     * Creates the tables of the base version of the schema.
+     */
+    public static void createBaseSchema(SQLiteDatabase db) {
+        db.execSQL(DbSpec.OfficeEntry.SQL_CREATE);
+        db.execSQL(DbSpec.TagEntry.SQL_CREATE);
+        db.execSQL(DbSpec.ConsultantEntry.SQL_CREATE);
+        db.execSQL(DbSpec.ConsultantTagEntry.SQL_CREATE);
+        db.execSQL(DbSpec.ConsultantCompetenceEntry.SQL_CREATE);
+        db.execSQL(DbSpec.NotificationEntry.SQL_CREATE);
+    }
+
+    /**
+     * Applies each migration after oldVersion up to and including newVersion, in order.
+     */
+    public static void migrate(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (newVersion > getLatestVersion())
+            throw new IllegalStateException(String.format("No migration to version %d", newVersion));
+
+        int version = oldVersion;
+        for (Migration migration : MIGRATIONS) {
+            if ((migration.getVersion() <= oldVersion) || (migration.getVersion() > newVersion))
+                continue;
+
+            // Each migration must follow directly upon the previous version
+            if ((version >= BASE_VERSION) && (migration.getVersion() != version + 1))
+                throw new IllegalStateException(String.format("No migration from version %d to %d", version, version + 1));
+
+            migration.apply(db);
+            version = migration.getVersion();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package se.danielkonsult.www.kvadratab.helpers.db.migrations;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import se.danielkonsult.www.kvadratab.helpers.db.DbSpec;
+
+/**
+ * Version 5, adds the full-text search table of consultants. The consultants
+ * that are already stored are indexed by ConsultantDetailsMigration, since the
+ * index reads their details from the table that it creates.
+ */
+class SearchIndexMigration implements Migration {
+
+    @Override
+    public int getVersion() {
+        return 5;
+    }
+
+    @Override
+    public void apply(SQLiteDatabase db) {
+        db.execSQL(DbSpec.ConsultantSearchEntry.SQL_CREATE);
+    }
+}
@@ -0,0 +1,84 @@
+package se.danielkonsult.www.kvadratab.helpers.http;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stops requests to a host after a number of consecutive failures. When the open
+ * time has passed a single trial request is let through, and depending on how it
+ * goes the host is either closed again or kept open for another period.
+ */
+public class CircuitBreaker {
+
+    // Private variables
+
+    private final int _failureThreshold;
+    private final long _openTimeMs;
+    private final Clock _clock;
+    private final Map<String, HostState> _hosts = new HashMap<>();
+
+    // Private methods
+
+    private HostState getHostState(String host) {
+        HostState state = _hosts.get(host);
+        if (state == null) {
+            state = new HostState();
+            _hosts.put(host, state);
+        }
+        return state;
+    }
+
+    // Constructor
+
+    public CircuitBreaker(int failureThreshold, long openTimeMs) {
+        this(failureThreshold, openTimeMs, new DefaultClock());
+    }
+
+    CircuitBreaker(int failureThreshold, long openTimeMs, Clock clock) {
+        _failureThreshold = failureThreshold;
+        _openTimeMs = openTimeMs;
+        _clock = clock;
+    }
+
+    // Public methods
+
+    /**
+     * Throws if requests to the host aren't allowed at the moment.
+     */
+    public synchronized void checkAllowed(String host) throws CircuitOpenException {
+        HostState state = getHostState(host);
+        if (state.OpenUntilMillis == 0)
+            return;
+
+        if ((_clock.currentTimeMillis() < state.OpenUntilMillis) || state.IsTrialInProgress)
+            throw new CircuitOpenException(host);
+
+        // Let a single request through to see if the host has recovered
+        state.IsTrialInProgress = true;
+    }
+
+    public synchronized void recordSuccess(String host) {
+        HostState state = getHostState(host);
+        state.ConsecutiveFailures = 0;
+        state.OpenUntilMillis = 0;
+        state.IsTrialInProgress = false;
+    }
+
+    public synchronized void recordFailure(String host) {
+        HostState state = getHostState(host);
+        state.ConsecutiveFailures++;
+        if (state.IsTrialInProgress || (state.ConsecutiveFailures >= _failureThreshold)) {
+            state.OpenUntilMillis = _clock.currentTimeMillis() + _openTimeMs;
+            state.IsTrialInProgress = false;
+        }
+    }
+
+    /**
+     * The failure state of a single host.
+     */
+    private static class HostState {
+        int ConsecutiveFailures;
+        long OpenUntilMillis;
+        boolean IsTrialInProgress;
+    }
+}
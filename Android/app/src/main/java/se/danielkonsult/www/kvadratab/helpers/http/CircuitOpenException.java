@@ -0,0 +1,14 @@
+package se.danielkonsult.www.kvadratab.helpers.http;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request to a host that has failed repeatedly and
+ * is given some time to recover.
+ */
+public class CircuitOpenException extends IOException {
+
+    public CircuitOpenException(String host) {
+        super("Too many failed requests, not contacting " + host + " for now");
+    }
+}
@@ -0,0 +1,16 @@
+package se.danielkonsult.www.kvadratab.helpers.http;
+
+/**
+ * The time source used when requests are limited, retried and held back, so that
+ * tests can control time.
+ */
+public interface Clock {
+    long currentTimeMillis();
+
+    /**
+     * A monotonic time for measuring intervals, not related to the wall clock.
+     */
+    long nanoTime();
+
+    void sleep(long ms) throws InterruptedException;
+}
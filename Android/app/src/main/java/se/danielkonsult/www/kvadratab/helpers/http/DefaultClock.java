@@ -0,0 +1,22 @@
+package se.danielkonsult.www.kvadratab.helpers.http;
+
+/**
+ * Clock based on the system time.
+ */
+public class DefaultClock implements Clock {
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public void sleep(long ms) throws InterruptedException {
+        Thread.sleep(ms);
+    }
+}
@@ -0,0 +1,312 @@
+package se.danielkonsult.www.kvadratab.helpers.http;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+
+import se.danielkonsult.www.kvadratab.helpers.Constants;
+
+/**
+ * WebClient based on HttpURLConnection. Connections are never disconnected
+ * explicitly, instead every response is read to the end and closed which
+ * returns the connection to the keep-alive pool. All requests pass through
+ * a RequestScheduler that limits the rate and the number of concurrent
+ * requests to each host, and that backs off when the server asks for it.
+ * Transient failures are retried, and a CircuitBreaker stops requests to a
+ * host that keeps failing.
+ */
+public class DefaultWebClient implements WebClient {
+
+    // Private variables
+
+    private static final String TAG = "DefaultWebClient";
+    private static final String USER_AGENT = "KvadratApp/1.0";
+
+    private final RequestScheduler _scheduler;
+    private final CircuitBreaker _circuitBreaker;
+    private final Random _random;
+    private final Clock _clock;
+
+    // Private methods
+
+    /**
+     * Parses a Retry-After header, given either as seconds or as an HTTP date.
+     * Returns 0 if the header is missing or can't be parsed.
+     */
+    static long parseRetryAfter(String value) {
+        if (value == null)
+            return 0;
+
+        value = value.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            // Not a number, it should be a date then
+        }
+
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return Math.max(0, format.parse(value).getTime() - System.currentTimeMillis());
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+
+    private static void closeQuietly(InputStream is) {
+        if (is == null)
+            return;
+        try {
+            is.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to close response stream", e);
+        }
+    }
+
+    /**
+     * Gets how long to hold back requests to a host after a failed status, capped so
+     * that a server can't stop us for too long. Returns 0 if it didn't ask for it.
+     */
+    static long getRetryAfterMs(int statusCode, String retryAfter) {
+        if ((statusCode != 429) && (statusCode != 503))
+            return 0;
+
+        long retryAfterMs = parseRetryAfter(retryAfter);
+        if ((retryAfterMs == 0) && (statusCode == 429))
+            retryAfterMs = Constants.WEBCLIENT_DEFAULT_RETRY_AFTER_MS;
+        return Math.min(retryAfterMs, Constants.WEBCLIENT_MAX_RETRY_AFTER_MS);
+    }
+
+    /**
+     * Returns true if a failed request might succeed if it's sent again.
+     */
+    static boolean isTransient(IOException e) {
+        if (e instanceof CircuitOpenException)
+            return false;
+        // Timeouts are worth another try, but not being interrupted
+        if ((e instanceof InterruptedIOException) && !(e instanceof SocketTimeoutException))
+            return false;
+        if (e instanceof HttpStatusException) {
+            int statusCode = ((HttpStatusException) e).getStatusCode();
+            return (statusCode == 408) || (statusCode == 429) || (statusCode >= 500);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the time to wait before the given retry, growing exponentially with
+     * random jitter so that parallel requests don't retry in lockstep.
+     */
+    long getBackoffMs(int retry) {
+        long maxDelay = Math.min(Constants.WEBCLIENT_RETRY_MAX_DELAY_MS, Constants.WEBCLIENT_RETRY_BASE_DELAY_MS << (retry - 1));
+        return (maxDelay / 2) + (long) (_random.nextDouble() * (maxDelay / 2));
+    }
+
+    /**
+     * Sends a request a single time.
+     */
+    WebResponse executeOnce(WebRequest request, String host) throws IOException {
+        try {
+            _scheduler.acquire(host);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection to " + host);
+        }
+
+        InputStream is = null;
+        boolean isReturned = false;
+        try {
+            HttpURLConnection httpCon = (HttpURLConnection) new URL(request.Url).openConnection();
+            httpCon.setConnectTimeout(Constants.WEBCLIENT_CONNECT_TIMEOUT_MS);
+            httpCon.setReadTimeout(Constants.WEBCLIENT_READ_TIMEOUT_MS);
+            httpCon.setRequestMethod(request.Method);
+            httpCon.setRequestProperty("User-Agent", USER_AGENT);
+            if (request.Accept != null)
+                httpCon.setRequestProperty("Accept", request.Accept);
+            for (Map.Entry<String, String> header : request.Headers.entrySet())
+                httpCon.setRequestProperty(header.getKey(), header.getValue());
+
+            // Write the body, if any
+            if (request.Body != null) {
+                httpCon.setDoOutput(true);
+                httpCon.setFixedLengthStreamingMode(request.Body.length);
+                if (request.ContentType != null)
+                    httpCon.setRequestProperty("Content-Type", request.ContentType);
+                OutputStream os = httpCon.getOutputStream();
+                try {
+                    os.write(request.Body);
+                } finally {
+                    os.close();
+                }
+            }
+
+            int statusCode = httpCon.getResponseCode();
+            is = (statusCode >= 400) ? httpCon.getErrorStream() : httpCon.getInputStream();
+
+            if (((statusCode < 200) || (statusCode >= 300)) && (statusCode != 304)) {
+                // Read the error body so that the connection can still be reused
+                if (is != null)
+                    WebResponse.drain(is);
+
+                // Hold back all requests to the host if the server asks us to
+                long retryAfterMs = getRetryAfterMs(statusCode, httpCon.getHeaderField("Retry-After"));
+                if (retryAfterMs > 0)
+                    _scheduler.retryAfter(host, retryAfterMs);
+
+                throw new HttpStatusException(statusCode, request.Url, retryAfterMs);
+            }
+
+            WebResponse response = new ConnectionResponse(httpCon, statusCode, is, _scheduler, host);
+            isReturned = true;
+            return response;
+        }
+        finally {
+            if (!isReturned) {
+                closeQuietly(is);
+                _scheduler.release(host);
+            }
+        }
+    }
+
+    // Constructor
+
+    public DefaultWebClient() {
+        this(new RequestScheduler(
+                        Constants.WEBCLIENT_REQUESTS_PER_SECOND,
+                        Constants.WEBCLIENT_REQUEST_BURST,
+                        Constants.WEBCLIENT_MAX_CONNECTIONS_PER_HOST),
+                new CircuitBreaker(
+                        Constants.WEBCLIENT_CIRCUIT_FAILURE_THRESHOLD,
+                        Constants.WEBCLIENT_CIRCUIT_OPEN_MS),
+                new Random(),
+                new DefaultClock());
+    }
+
+    DefaultWebClient(RequestScheduler scheduler, CircuitBreaker circuitBreaker, Random random, Clock clock) {
+        _scheduler = scheduler;
+        _circuitBreaker = circuitBreaker;
+        _random = random;
+        _clock = clock;
+
+        // Make sure the connection pool is used and large enough for our requests
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", Integer.toString(Constants.WEBCLIENT_MAX_CONNECTIONS_PER_HOST));
+    }
+
+    // Public methods
+
+    /**
+     * Executes a request, retrying transient failures with backoff. Only failures that
+     * happen before the response is returned are retried, since the caller may already
+     * have acted on part of the body otherwise.
+     */
+    @Override
+    public WebResponse execute(WebRequest request) throws IOException {
+        String host = request.getHost();
+        int attempt = 1;
+        while (true) {
+            _circuitBreaker.checkAllowed(host);
+            try {
+                WebResponse response = executeOnce(request, host);
+                _circuitBreaker.recordSuccess(host);
+                return response;
+            } catch (IOException e) {
+                if (!isTransient(e)) {
+                    // A status means that the host did respond and that it's the request
+                    // that failed, otherwise nothing is known about the host
+                    if (e instanceof HttpStatusException)
+                        _circuitBreaker.recordSuccess(host);
+                    throw e;
+                }
+
+                _circuitBreaker.recordFailure(host);
+                if (attempt >= Constants.WEBCLIENT_MAX_ATTEMPTS)
+                    throw e;
+
+                long backoffMs = getBackoffMs(attempt);
+                Log.w(TAG, String.format("Attempt %d for %s failed, retrying in %d ms: %s", attempt, request.Url, backoffMs, e.getMessage()));
+                try {
+                    _clock.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting to retry " + request.Url);
+                }
+                attempt++;
+            }
+        }
+    }
+
+    /**
+     * Response that releases its connection and scheduler slot when closed.
+     */
+    private static class ConnectionResponse extends WebResponse {
+
+        // Private variables
+
+        private final HttpURLConnection _httpCon;
+        private final int _statusCode;
+        private final InputStream _is;
+        private final RequestScheduler _scheduler;
+        private final String _host;
+        private boolean _isClosed;
+
+        // Constructor
+
+        ConnectionResponse(HttpURLConnection httpCon, int statusCode, InputStream is, RequestScheduler scheduler, String host) {
+            _httpCon = httpCon;
+            _statusCode = statusCode;
+            _is = is;
+            _scheduler = scheduler;
+            _host = host;
+        }
+
+        // Public methods
+
+        @Override
+        public int getStatusCode() {
+            return _statusCode;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return _httpCon.getHeaderField(name);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            if (_is == null)
+                throw new IOException("The response has no body");
+            return _is;
+        }
+
+        @Override
+        public void close() {
+            if (_isClosed)
+                return;
+            _isClosed = true;
+
+            try {
+                if (_is != null)
+                    drain(_is);
+            } catch (IOException e) {
+                // The connection can't be reused, but there's nothing more to do about it
+                Log.w(TAG, "Failed to read remaining response data", e);
+            } finally {
+                closeQuietly(_is);
+                _scheduler.release(_host);
+            }
+        }
+    }
+}
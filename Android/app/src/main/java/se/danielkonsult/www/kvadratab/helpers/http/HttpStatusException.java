@@ -0,0 +1,35 @@
+package se.danielkonsult.www.kvadratab.helpers.http;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the server responds with an unexpected status code.
+ */
+public class HttpStatusException extends IOException {
+
+    // Private variables
+
+    private final int _statusCode;
+    private final long _retryAfterMs;
+
+    // Constructor
+
+    public HttpStatusException(int statusCode, String url, long retryAfterMs) {
+        super(String.format("HTTP %d for %s", statusCode, url));
+        _statusCode = statusCode;
+        _retryAfterMs = retryAfterMs;
+    }
+
+    // Public methods
+
+    public int getStatusCode() {
+        return _statusCode;
+    }
+
+    /**
+     * The time the server asked us to wait before trying again, or 0 if it didn't say.
+     */
+    public long getRetryAfterMs() {
+        return _retryAfterMs;
+    }
+}
@@ -0,0 +1,128 @@
+package se.danielkonsult.www.kvadratab.helpers.http;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Decides when requests may be sent to a host. Each host has a token bucket that
+ * limits the request rate, a limit on the number of requests in flight, and can be
+ * blocked for a while when the server asks us to back off with Retry-After.
+ */
+public class RequestScheduler {
+
+    // Private variables
+
+    private final double _requestsPerSecond;
+    private final int _burst;
+    private final int _maxInFlight;
+    private final Clock _clock;
+    private final Map<String, HostState> _hosts = new HashMap<>();
+
+    // Private methods
+
+    private HostState getHostState(String host) {
+        synchronized (_hosts) {
+            HostState state = _hosts.get(host);
+            if (state == null) {
+                state = new HostState(_maxInFlight, _burst, _clock);
+                _hosts.put(host, state);
+            }
+            return state;
+        }
+    }
+
+    // Constructor
+
+    public RequestScheduler(double requestsPerSecond, int burst, int maxInFlight) {
+        this(requestsPerSecond, burst, maxInFlight, new DefaultClock());
+    }
+
+    RequestScheduler(double requestsPerSecond, int burst, int maxInFlight, Clock clock) {
+        _requestsPerSecond = requestsPerSecond;
+        _burst = burst;
+        _maxInFlight = maxInFlight;
+        _clock = clock;
+    }
+
+    // Public methods
+
+    /**
+     * Waits until a request may be sent to the host. Every successful call must be
+     * followed by a call to release when the request is done.
+     */
+    public void acquire(String host) throws InterruptedException {
+        HostState state = getHostState(host);
+        state.InFlight.acquire();
+        try {
+            state.takeToken(_requestsPerSecond, _burst);
+        } catch (InterruptedException e) {
+            state.InFlight.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Marks a request to the host as done.
+     */
+    public void release(String host) {
+        getHostState(host).InFlight.release();
+    }
+
+    /**
+     * Blocks new requests to the host for the given time, as asked for by the server.
+     */
+    public void retryAfter(String host, long delayMs) {
+        getHostState(host).blockUntil(_clock.currentTimeMillis() + delayMs);
+    }
+
+    /**
+     * The scheduling state of a single host.
+     */
+    private static class HostState {
+
+        final Semaphore InFlight;
+        private final Clock _clock;
+        private double _tokens;
+        private long _lastRefillNanos;
+        private long _blockedUntilMillis;
+
+        HostState(int maxInFlight, int burst, Clock clock) {
+            InFlight = new Semaphore(maxInFlight, true);
+            _clock = clock;
+            _tokens = burst;
+            _lastRefillNanos = clock.nanoTime();
+        }
+
+        synchronized void blockUntil(long timeMillis) {
+            if (timeMillis > _blockedUntilMillis)
+                _blockedUntilMillis = timeMillis;
+        }
+
+        /**
+         * Waits until the host isn't blocked and there is a token, then takes it. The
+         * wait is done without holding the lock, so that the host can be blocked meanwhile.
+         */
+        void takeToken(double requestsPerSecond, int burst) throws InterruptedException {
+            while (true) {
+                long waitMs;
+                synchronized (this) {
+                    long now = _clock.nanoTime();
+                    _tokens = Math.min(burst, _tokens + ((now - _lastRefillNanos) / 1e9) * requestsPerSecond);
+                    _lastRefillNanos = now;
+
+                    waitMs = _blockedUntilMillis - _clock.currentTimeMillis();
+                    if ((waitMs <= 0) && (_tokens < 1))
+                        waitMs = (long) Math.ceil(((1 - _tokens) / requestsPerSecond) * 1000);
+
+                    if (waitMs <= 0) {
+                        _tokens -= 1;
+                        return;
+                    }
+                }
+
+                _clock.sleep(waitMs);
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package se.danielkonsult.www.kvadratab.helpers.http;
+
+import java.io.IOException;
+
+/**
+ * Shared HTTP client used for all requests to the Kvadrat web page.
+ */
+public interface WebClient {
+
+    /**
+     * Executes a request and returns the response, which must always be closed by the
+     * caller so that the connection can be reused. Responses with status codes other
+     * than 2xx and 304 are reported as an IOException.
+     */
+    WebResponse execute(WebRequest request) throws IOException;
+}
@@ -0,0 +1,50 @@
+package se.danielkonsult.www.kvadratab.helpers.http;
+
+import java.io.UnsupportedEncodingException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Describes an HTTP request to be executed by a WebClient.
+ */
+public class WebRequest {
+
+    public String Url;
+    public String Method = "GET";
+    public String Accept;
+    public byte[] Body;
+    public String ContentType;
+    public Map<String, String> Headers = new LinkedHashMap<>();
+
+    // Constructor
+
+    public WebRequest(String url, String accept) {
+        Url = url;
+        Accept = accept;
+    }
+
+    // Public methods
+
+    /**
+     * Creates a form POST request with the given url-encoded body.
+     */
+    public static WebRequest post(String url, String accept, String formBody) throws UnsupportedEncodingException {
+        WebRequest request = new WebRequest(url, accept);
+        request.Method = "POST";
+        request.ContentType = "application/x-www-form-urlencoded";
+        request.Body = formBody.getBytes("UTF-8");
+        return request;
+    }
+
+    /**
+     * Returns the host name of the request's URL, used to apply per-host limits.
+     */
+    public String getHost() {
+        int start = Url.indexOf("://");
+        start = (start < 0) ? 0 : start + 3;
+        int end = start;
+        while ((end < Url.length()) && (Url.charAt(end) != '/') && (Url.charAt(end) != '?') && (Url.charAt(end) != ':'))
+            end++;
+        return Url.substring(start, end).toLowerCase();
+    }
+}
@@ -0,0 +1,93 @@
+package se.danielkonsult.www.kvadratab.helpers.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * The response of a request executed by a WebClient. The response owns the
+ * connection until it's closed, and closing it reads any remaining data so
+ * that the connection can be kept alive and reused.
+ */
+public abstract class WebResponse implements Closeable {
+
+    // Private variables
+
+    private static final int BUFFER_SIZE = 16384;
+
+    // Read buffers are reused by all requests made from the same thread
+    private static final ThreadLocal<byte[]> _byteBuffers = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+    private static final ThreadLocal<char[]> _charBuffers = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[BUFFER_SIZE / 2];
+        }
+    };
+
+    // Protected methods
+
+    /**
+     * Reads and discards anything left in the stream.
+     */
+    protected static void drain(InputStream is) throws IOException {
+        byte[] buffer = _byteBuffers.get();
+        while (is.read(buffer, 0, buffer.length) != -1) {
+            // Discard
+        }
+    }
+
+    // Public methods
+
+    public abstract int getStatusCode();
+
+    /**
+     * Gets the value of a response header, or null if it's missing.
+     */
+    public abstract String getHeader(String name);
+
+    /**
+     * Gets the stream with the response body.
+     */
+    public abstract InputStream getInputStream() throws IOException;
+
+    /**
+     * Returns true if the server responded with 304 Not Modified.
+     */
+    public boolean isNotModified() {
+        return getStatusCode() == 304;
+    }
+
+    /**
+     * Reads the complete body as a string, using UTF-8 encoding.
+     */
+    public String readString() throws IOException {
+        char[] buffer = _charBuffers.get();
+        StringBuilder out = new StringBuilder();
+        Reader in = new InputStreamReader(getInputStream(), "UTF-8");
+        int read;
+        while ((read = in.read(buffer, 0, buffer.length)) != -1)
+            out.append(buffer, 0, read);
+        return out.toString();
+    }
+
+    /**
+     * Reads the complete body as a byte array.
+     */
+    public byte[] readBytes() throws IOException {
+        byte[] buffer = _byteBuffers.get();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InputStream in = getInputStream();
+        int read;
+        while ((read = in.read(buffer, 0, buffer.length)) != -1)
+            out.write(buffer, 0, read);
+        return out.toByteArray();
+    }
+}
@@ -1,18 +1,36 @@
 package se.danielkonsult.www.kvadratab.helpers.scraper;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import se.danielkonsult.www.kvadratab.entities.ConsultantData;
+import se.danielkonsult.www.kvadratab.helpers.KvadratAppException;
 
 /**
- * Parses the contents of the main web page (where all consultants are listed)
- * and returns it as an array of ConsultantData.
+ * Parses the contents of the main web page (where all consultants are listed).
+ * The page is read in a single pass and each consultant is handed to a listener
+ * as soon as it has been parsed, so memory use doesn't grow with the page size.
  */
 public class ConsultantDataParser {
 
+    // Private variables
+
+    private static final String ID_MARKER = "/konsult/";
+    private static final String NAME_MARKER = "<div class='full-name'>";
+
+    private static final int BUFFER_SIZE = 4096;
+    private static final int MAX_ID_DIGITS = 9;
+    private static final int MAX_NAME_LENGTH = 256;
+
+    // Parser states
+    private static final int STATE_SEEK_ID = 0;
+    private static final int STATE_READ_ID = 1;
+    private static final int STATE_SEEK_NAME = 2;
+    private static final int STATE_READ_NAME = 3;
+
     // Private methods
 
     private static void splitAndStoreName(ConsultantData consultantData, String fullName) {
@@ -34,23 +52,93 @@ public class ConsultantDataParser {
 
     // Public methods
 
-    public static ConsultantData[] parse(String urlContents){
-        // final Pattern pattern = Pattern.compile("<a.*?/profil/\\?id=(\\d*).*?<div class='full-name'>(.*?)<.*?<");
-        final Pattern pattern = Pattern.compile("<a.*?/konsult/(\\d*).*?<div class='full-name'>(.*?)<.*?<");
+    /**
+     * Reads consultants from a listing and passes each one to the listener
+     * as soon as its id and name have been read.
+     */
+    public static void parse(Reader reader, ConsultantScrapeListener listener) throws IOException, KvadratAppException {
+        final StreamMatcher idMatcher = new StreamMatcher(ID_MARKER);
+        final StreamMatcher nameMatcher = new StreamMatcher(NAME_MARKER);
+        final StringBuilder name = new StringBuilder();
+        final char[] buffer = new char[BUFFER_SIZE];
+
+        int state = STATE_SEEK_ID;
+        int id = 0;
+        int idDigits = 0;
+
+        int count;
+        while ((count = reader.read(buffer, 0, buffer.length)) >= 0) {
+            for (int i = 0; i < count; i++) {
+                char c = buffer[i];
 
-        List<ConsultantData> result = new ArrayList<>();
+                switch (state) {
+                    case STATE_SEEK_ID:
+                        if (idMatcher.next(c)) {
+                            state = STATE_READ_ID;
+                            id = 0;
+                            idDigits = 0;
+                        }
+                        break;
 
-        Matcher matcher = pattern.matcher(urlContents);
-        while (matcher.find()){
-            String id = matcher.group(1);
-            String name = matcher.group(2);
+                    case STATE_READ_ID:
+                        if ((c >= '0') && (c <= '9') && (idDigits < MAX_ID_DIGITS)) {
+                            id = id * 10 + (c - '0');
+                            idDigits++;
+                        }
+                        else if (idDigits > 0) {
+                            state = STATE_SEEK_NAME;
+                            nameMatcher.reset();
+                            nameMatcher.next(c);
+                        }
+                        else {
+                            // A link without an id, keep looking
+                            state = STATE_SEEK_ID;
+                            idMatcher.next(c);
+                        }
+                        break;
 
-            ConsultantData consultantData = new ConsultantData();
+                    case STATE_SEEK_NAME:
+                        if (nameMatcher.next(c)) {
+                            state = STATE_READ_NAME;
+                            name.setLength(0);
+                        }
+                        break;
 
-            consultantData.Id = Integer.parseInt(id);
-            splitAndStoreName(consultantData, name);
+                    case STATE_READ_NAME:
+                        if (c == '<') {
+                            ConsultantData consultantData = new ConsultantData();
+                            consultantData.Id = id;
+                            splitAndStoreName(consultantData, name.toString());
+
+                            listener.onConsultantScraped(consultantData);
+
+                            state = STATE_SEEK_ID;
+                            idMatcher.reset();
+                        }
+                        else if (name.length() < MAX_NAME_LENGTH)
+                            name.append(c);
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses a complete listing that has already been read into a string.
+     */
+    public static ConsultantData[] parse(String urlContents){
+        final List<ConsultantData> result = new ArrayList<>();
 
-            result.add(consultantData);
+        try {
+            parse(new StringReader(urlContents), new ConsultantScrapeListener() {
+                @Override
+                public void onConsultantScraped(ConsultantData consultant) {
+                    result.add(consultant);
+                }
+            });
+        } catch (IOException | KvadratAppException e) {
+            // Can't happen when reading from a string into a list
+            throw new IllegalStateException(e);
         }
 
         // Convert the list to an array
@@ -2,57 +2,65 @@ package se.danielkonsult.www.kvadratab.helpers.scraper;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-import se.danielkonsult.www.kvadratab.entities.ConsultantData;
 import se.danielkonsult.www.kvadratab.entities.ConsultantDetails;
 import se.danielkonsult.www.kvadratab.helpers.Utils;
 
 public class ConsultantDetailsParser {
 
+    // Private variables
+
+    private static final String DESCRIPTION_HEADING = "Översikt";
+    private static final String OVERVIEW_HEADING = "Egenskaper";
+
     // Methods
 
     /**
-     * Parses the contents of a consultant details web page.
+     * Parses the contents of a consultant details web page in a single pass.
      */
     public static ConsultantDetails parse(String urlContents) {
         ConsultantDetails result = new ConsultantDetails();
-
-        // Locate the competence areas
         List<String> competences = new ArrayList<>();
-        final Pattern competenceAreasPattern = Pattern.compile("<ul id=['|\"]competence-areas['|\"]>(.*?)/ul>");
-        Matcher areasMatcher = competenceAreasPattern.matcher(urlContents);
-        if (areasMatcher.find()) {
-            String competenceData = areasMatcher.group(1);
-
-            final Pattern itemPattern = Pattern.compile("li>(.*?)<");
-            Matcher itemMatcher = itemPattern.matcher(competenceData);
-
-            while (itemMatcher.find()){
-                String competence = itemMatcher.group(1);
-                if (!Utils.isStringNullOrEmpty(competence)) {
-                    competences.add(competence);
+
+        HtmlTokenizer tokenizer = new HtmlTokenizer(urlContents);
+        boolean isInCompetenceAreas = false;
+        String heading = null;
+
+        int token = tokenizer.next();
+        while (token != HtmlTokenizer.EOF) {
+            if (token == HtmlTokenizer.START_TAG) {
+                if (tokenizer.isTag("ul") && tokenizer.hasAttribute("id", "competence-areas")) {
+                    isInCompetenceAreas = true;
+                }
+                else if (isInCompetenceAreas && tokenizer.isTag("li")) {
+                    // Locate the competence areas
+                    String competence = tokenizer.readInner();
+                    if (!Utils.isStringNullOrEmpty(competence))
+                        competences.add(competence);
+                }
+                else if (tokenizer.isTag("h2") && tokenizer.hasAttribute("class", "small-heading")) {
+                    // Remember the heading since it tells what the following paragraph contains
+                    heading = tokenizer.readInner();
                 }
+                else if ((heading != null) && tokenizer.isTag("p") && tokenizer.hasAttribute("class", "small-text")) {
+                    String text = tokenizer.readInner().replace("<br>", "\n");
+                    if (heading.equals(DESCRIPTION_HEADING) && (result.Description == null))
+                        result.Description = text;
+                    else if (heading.equals(OVERVIEW_HEADING) && (result.Overview == null))
+                        result.Overview = text;
+                    heading = null;
+                }
+                else
+                    heading = null;
+            }
+            else if ((token == HtmlTokenizer.END_TAG) && isInCompetenceAreas && tokenizer.isTag("ul")) {
+                isInCompetenceAreas = false;
             }
-        }
-        result.CompetenceAreas = competences.toArray(new String[competences.size()]);
 
-        // Description pattern
-        final Pattern descriptionPattern = Pattern.compile("<h2 class='small-heading'>Översikt</h2><p class='small-text'>(.*?)</p>");
-        Matcher descriptionMatcher = descriptionPattern.matcher(urlContents);
-        if (descriptionMatcher.find()){
-            String description = descriptionMatcher.group(1);
-            result.Description = description.replace("<br>", "\n");
+            token = tokenizer.next();
         }
 
-        // Overview pattern
-        final Pattern overviewPattern = Pattern.compile("<h2 class='small-heading'>Egenskaper</h2><p class='small-text'>(.*?)</p>");
-        Matcher overviewMatcher = overviewPattern.matcher(urlContents);
-        if (overviewMatcher.find()){
-            String overview = overviewMatcher.group(1);
-            result.Overview = overview.replace("<br>", "\n");
-        }
+        result.CompetenceAreas = competences.toArray(new String[competences.size()]);
 
         return result;
     }
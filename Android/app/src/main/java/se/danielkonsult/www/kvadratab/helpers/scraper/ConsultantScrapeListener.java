@@ -0,0 +1,18 @@
+package se.danielkonsult.www.kvadratab.helpers.scraper;
+
+import java.io.IOException;
+
+import se.danielkonsult.www.kvadratab.entities.ConsultantData;
+import se.danielkonsult.www.kvadratab.helpers.KvadratAppException;
+
+/**
+ * Listener that receives consultants one at a time while a consultant listing
+ * is being scraped, so they can be handled before the whole page has arrived.
+ */
+public interface ConsultantScrapeListener {
+
+    /**
+     * Called for each consultant as soon as it has been parsed from the listing.
+     */
+    void onConsultantScraped(ConsultantData consultant) throws IOException, KvadratAppException;
+}
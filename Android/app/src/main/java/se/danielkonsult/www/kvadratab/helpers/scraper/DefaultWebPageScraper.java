@@ -1,15 +1,22 @@
 package se.danielkonsult.www.kvadratab.helpers.scraper;
 
-import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-
+import java.io.InputStreamReader;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import se.danielkonsult.www.kvadratab.AppCtrl;
 import se.danielkonsult.www.kvadratab.entities.ConsultantData;
 import se.danielkonsult.www.kvadratab.entities.ConsultantDetails;
-import se.danielkonsult.www.kvadratab.helpers.Utils;
+import se.danielkonsult.www.kvadratab.entities.HttpValidatorData;
+import se.danielkonsult.www.kvadratab.helpers.Constants;
+import se.danielkonsult.www.kvadratab.helpers.KvadratAppException;
 import se.danielkonsult.www.kvadratab.entities.SummaryData;
+import se.danielkonsult.www.kvadratab.helpers.http.WebRequest;
+import se.danielkonsult.www.kvadratab.helpers.http.WebResponse;
 
 /**
  * Performs scraping operations of the Kvadrat AB web page.
@@ -23,119 +30,214 @@ public class DefaultWebPageScraper implements WebPageScraper {
     private static final String SCRAPE_SUMMARYDATA_URL = "http://www.kvadrat.se/konsulter/konsulter/";
     private static final String SCRAPE_CONSULTANTDETAILS_URL = "http://www.kvadrat.se/profil/?id=%d";
 
-    private static final int STD_TIMEOUT = 10000;
-    private static final String USER_AGENT = "KvadratApp/1.0";
     private static final String ACCEPT = "text/html";
 
+    // Private methods
+
+    /**
+     * Creates a GET request that carries the validators that were stored for the URL, if any.
+     */
+    private static WebRequest createConditionalRequest(String url) {
+        WebRequest request = new WebRequest(url, ACCEPT);
+
+        HttpValidatorData validator = AppCtrl.getDb().getHttpValidatorRepository().getByUrl(url);
+        if (validator != null) {
+            if (validator.ETag != null)
+                request.Headers.put("If-None-Match", validator.ETag);
+            if (validator.LastModified != null)
+                request.Headers.put("If-Modified-Since", validator.LastModified);
+        }
+
+        return request;
+    }
+
+    /**
+     * Gets the validators of a response, which the caller saves once it has stored
+     * what was parsed from it.
+     */
+    private static HttpValidatorData getValidator(String url, WebResponse response) {
+        return new HttpValidatorData(url, response.getHeader("ETag"), response.getHeader("Last-Modified"));
+    }
+
+    /**
+     * Scrapes a single page of a consultant listing. The offset is the 1-based position
+     * of the first consultant on the page.
+     */
+    private static void scrapeConsultantPage(int officeId, int tagId, int offset, int count, ConsultantScrapeListener listener) throws IOException, KvadratAppException {
+        String body = String.format("action=get_consult_data&consultantsearch=&offices=%d&tags=%d&offset=%d&count=%d", officeId, tagId, offset, count);
+        WebResponse response = AppCtrl.getWebClient().execute(WebRequest.post(SCRAPE_ALLCONSULTANTS_URL, ACCEPT, body));
+        try {
+            // Parse the consultants straight from the stream as it arrives
+            ConsultantDataParser.parse(new InputStreamReader(response.getInputStream(), "UTF-8"), listener);
+        }
+        finally {
+            response.close();
+        }
+    }
+
     // Public methods
 
     @Override
     public ConsultantData[] scrapeConsultants(int officeId, int tagId) throws IOException {
-        HttpURLConnection httpCon = null;
-        InputStream is = null;
+        final List<ConsultantData> result = new ArrayList<>();
+
         try {
-            URL url = new URL(SCRAPE_ALLCONSULTANTS_URL);
-            httpCon = (HttpURLConnection) url.openConnection();
-            httpCon.setConnectTimeout(STD_TIMEOUT);
-            httpCon.setRequestProperty("User-Agent", USER_AGENT);
-            httpCon.setRequestProperty("Accept", ACCEPT);
-            httpCon.setDoOutput(true);
-            httpCon.setDoInput(true);
-            httpCon.setRequestMethod("POST");
-
-            // Set body
-            String str = String.format("action=get_consult_data&consultantsearch=&offices=%d&tags=%d&offset=1&count=1000", officeId, tagId);
-            byte[] outputBytes = str.getBytes("UTF-8");
-            BufferedOutputStream outStream = null;
-            try {
-                outStream = new BufferedOutputStream(httpCon.getOutputStream());
-                outStream.write(outputBytes);
-                outStream.flush();
-            } finally {
-                if (outStream != null)
-                    outStream.close();
-            }
-            is = httpCon.getInputStream();
+            scrapeConsultants(officeId, tagId, new ConsultantScrapeListener() {
+                @Override
+                public void onConsultantScraped(ConsultantData consultant) {
+                    result.add(consultant);
+                }
+            });
+        } catch (KvadratAppException e) {
+            // Can't happen since the listener only collects the consultants
+            throw new IllegalStateException(e);
+        }
 
-            // Try to read the contents of the URL as a string
-            String urlContents = Utils.getStringFromStream(is);
-            if (urlContents == null)
-                return null;
+        return result.toArray(new ConsultantData[result.size()]);
+    }
 
-            return ConsultantDataParser.parse(urlContents);
-        }
-        finally {
+    @Override
+    public void scrapeConsultants(int officeId, int tagId, ConsultantScrapeListener listener) throws IOException, KvadratAppException {
+        PageListener pageListener = new PageListener(listener);
+        int offset = 1;
+        int pageSize = Constants.SCRAPER_LISTING_INITIAL_PAGE_SIZE;
+
+        while (true) {
+            pageListener.startPage();
             try {
-                if (httpCon != null)
-                    httpCon.disconnect();
-                if (is != null)
-                    is.close();
-            } catch (Exception e) {
-                e.printStackTrace();
+                scrapeConsultantPage(officeId, tagId, offset, pageSize, pageListener);
+            } catch (SocketTimeoutException e) {
+                if (pageSize <= Constants.SCRAPER_LISTING_MIN_PAGE_SIZE)
+                    throw e;
+
+                // Retry the same offset with a smaller page, consultants that were
+                // already passed on are skipped the next time
+                pageSize = Math.max(Constants.SCRAPER_LISTING_MIN_PAGE_SIZE, pageSize / 2);
+                continue;
             }
+
+            // A short page is the last one. A page without new consultants means
+            // that the offset wasn't honored, so stop rather than loop forever.
+            if ((pageListener.getPageCount() < pageSize) || (pageListener.getPageNewCount() == 0))
+                break;
+
+            offset += pageListener.getPageCount();
+            pageSize = Math.min(Constants.SCRAPER_LISTING_MAX_PAGE_SIZE, pageSize * 2);
         }
     }
 
     @Override
     public SummaryData scrapeSummaryData() throws IOException {
-        HttpURLConnection httpCon = null;
-        InputStream is = null;
+        WebResponse response = AppCtrl.getWebClient().execute(new WebRequest(SCRAPE_SUMMARYDATA_URL, ACCEPT));
         try {
-            URL url = new URL(SCRAPE_SUMMARYDATA_URL);
-            httpCon = (HttpURLConnection) url.openConnection();
-            httpCon.setConnectTimeout(STD_TIMEOUT);
-            httpCon.setRequestProperty("User-Agent", USER_AGENT);
-            httpCon.setRequestProperty("Accept", ACCEPT);
-
-            is = httpCon.getInputStream();
+            SummaryData result = SummaryDataParser.parse(response.readString());
+            result.Validator = getValidator(SCRAPE_SUMMARYDATA_URL, response);
+            return result;
+        }
+        finally {
+            response.close();
+        }
+    }
 
-            // Try to read the contents of the URL as a string
-            String urlContents = Utils.getStringFromStream(is);
-            if (urlContents == null)
+    @Override
+    public SummaryData scrapeSummaryDataIfModified() throws IOException {
+        WebResponse response = AppCtrl.getWebClient().execute(createConditionalRequest(SCRAPE_SUMMARYDATA_URL));
+        try {
+            if (response.isNotModified())
                 return null;
 
-            return SummaryDataParser.parse(urlContents);
+            SummaryData result = SummaryDataParser.parse(response.readString());
+            result.Validator = getValidator(SCRAPE_SUMMARYDATA_URL, response);
+            return result;
         }
         finally {
-            try {
-                if (httpCon != null)
-                    httpCon.disconnect();
-                if (is != null)
-                    is.close();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+            response.close();
         }
     }
 
     @Override
     public ConsultantDetails scrapeConsultantDetails(int consultantId) throws IOException {
-        HttpURLConnection httpCon = null;
-        InputStream is = null;
+        String url = String.format(SCRAPE_CONSULTANTDETAILS_URL, consultantId);
+        WebResponse response = AppCtrl.getWebClient().execute(new WebRequest(url, ACCEPT));
         try {
-            URL url = new URL(String.format(SCRAPE_CONSULTANTDETAILS_URL, consultantId));
-            httpCon = (HttpURLConnection) url.openConnection();
-            httpCon.setConnectTimeout(STD_TIMEOUT);
-            httpCon.setRequestProperty("User-Agent", USER_AGENT);
-            httpCon.setRequestProperty("Accept", ACCEPT);
-
-            is = httpCon.getInputStream();
+            ConsultantDetails result = ConsultantDetailsParser.parse(response.readString());
+            result.Validator = getValidator(url, response);
+            return result;
+        }
+        finally {
+            response.close();
+        }
+    }
 
-            // Try to read the contents of the URL as a string
-            String urlContents = Utils.getStringFromStream(is);
-            if (urlContents == null)
+    @Override
+    public ConsultantDetails scrapeConsultantDetailsIfModified(int consultantId) throws IOException {
+        String url = String.format(SCRAPE_CONSULTANTDETAILS_URL, consultantId);
+        WebResponse response = AppCtrl.getWebClient().execute(createConditionalRequest(url));
+        try {
+            if (response.isNotModified())
                 return null;
 
-            return ConsultantDetailsParser.parse(urlContents);
+            ConsultantDetails result = ConsultantDetailsParser.parse(response.readString());
+            result.Validator = getValidator(url, response);
+            return result;
         }
         finally {
-            try {
-                if (httpCon != null)
-                    httpCon.disconnect();
-                if (is != null)
-                    is.close();
-            } catch (Exception e) {
-                e.printStackTrace();
+            response.close();
+        }
+    }
+
+    @Override
+    public void saveValidator(HttpValidatorData validator) {
+        if (validator == null)
+            return;
+
+        // Stale validators are removed if the page no longer sends any
+        if ((validator.ETag == null) && (validator.LastModified == null))
+            AppCtrl.getDb().getHttpValidatorRepository().delete(validator.Url);
+        else
+            AppCtrl.getDb().getHttpValidatorRepository().save(validator);
+    }
+
+    /**
+     * Counts the consultants of each listing page and passes on the ones that
+     * haven't been seen on an earlier page.
+     */
+    private static class PageListener implements ConsultantScrapeListener {
+
+        // Private variables
+
+        private final ConsultantScrapeListener _listener;
+        private final Set<Integer> _seenIds = new HashSet<>();
+        private int _pageCount;
+        private int _pageNewCount;
+
+        // Constructor
+
+        PageListener(ConsultantScrapeListener listener) {
+            _listener = listener;
+        }
+
+        // Public methods
+
+        void startPage() {
+            _pageCount = 0;
+            _pageNewCount = 0;
+        }
+
+        int getPageCount() {
+            return _pageCount;
+        }
+
+        int getPageNewCount() {
+            return _pageNewCount;
+        }
+
+        @Override
+        public void onConsultantScraped(ConsultantData consultant) throws IOException, KvadratAppException {
+            _pageCount++;
+            if (_seenIds.add(consultant.Id)) {
+                _pageNewCount++;
+                _listener.onConsultantScraped(consultant);
             }
         }
     }
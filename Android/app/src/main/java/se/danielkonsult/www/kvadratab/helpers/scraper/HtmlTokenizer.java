@@ -0,0 +1,295 @@
+package se.danielkonsult.www.kvadratab.helpers.scraper;
+
+/**
+ * Lightweight pull tokenizer for the HTML on the Kvadrat web page. It walks the
+ * page once and reports start tags, end tags and text as positions in the
+ * original string, so nothing is copied until a parser asks for a value.
+ * Comments, doctypes and the contents of script and style elements are skipped.
+ */
+public class HtmlTokenizer {
+
+    // Token types
+
+    public static final int EOF = 0;
+    public static final int START_TAG = 1;
+    public static final int END_TAG = 2;
+    public static final int TEXT = 3;
+
+    // Private variables
+
+    private final String _input;
+    private final int _length;
+
+    private int _pos;
+    private int _type = EOF;
+    private int _tokenStart;
+    private int _tokenEnd;
+    private int _nameStart;
+    private int _nameEnd;
+
+    // Attribute value span found by the last call to findAttribute
+    private int _valueStart;
+    private int _valueEnd;
+
+    // Private methods
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || (c == '-') || (c == '_') || (c == ':');
+    }
+
+    private static boolean isWhitespace(char c) {
+        return (c == ' ') || (c == '\t') || (c == '\n') || (c == '\r') || (c == '\f');
+    }
+
+    private static boolean isNameEnd(char c) {
+        return (c == '>') || (c == '/') || isWhitespace(c);
+    }
+
+    /**
+     * Returns the position of the '>' that ends the tag starting at the given position,
+     * ignoring any '>' inside quoted attribute values.
+     */
+    private int findTagEnd(int from) {
+        char quote = 0;
+        for (int i = from; i < _length; i++) {
+            char c = _input.charAt(i);
+            if (quote != 0) {
+                if (c == quote)
+                    quote = 0;
+            }
+            else if ((c == '"') || (c == '\''))
+                quote = c;
+            else if (c == '>')
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the position of the end tag with the given name, or the end of the
+     * input if there is none. The name must be followed by the end of the tag, so
+     * that an end tag whose name only starts with it isn't matched.
+     */
+    private int findEndTag(String name, int from) {
+        int i = from;
+        while ((i = _input.indexOf("</", i)) >= 0) {
+            int nameEnd = i + 2 + name.length();
+            if (_input.regionMatches(true, i + 2, name, 0, name.length()) &&
+                    ((nameEnd >= _length) || isNameEnd(_input.charAt(nameEnd))))
+                return i;
+            i += 2;
+        }
+        return _length;
+    }
+
+    /**
+     * Looks up an attribute of the current tag and stores the span of its value.
+     */
+    private boolean findAttribute(String name) {
+        if ((_type != START_TAG) && (_type != END_TAG))
+            return false;
+
+        int end = _tokenEnd - 1;
+        int i = _nameEnd;
+        while (i < end) {
+            // Skip whitespace and stray slashes
+            char c = _input.charAt(i);
+            if (isWhitespace(c) || (c == '/')) {
+                i++;
+                continue;
+            }
+
+            // Attribute name
+            int attrStart = i;
+            while ((i < end) && isNameChar(_input.charAt(i)))
+                i++;
+            int attrEnd = i;
+            if (attrEnd == attrStart) {
+                i++;
+                continue;
+            }
+
+            while ((i < end) && isWhitespace(_input.charAt(i)))
+                i++;
+
+            // Attribute value, quoted, unquoted or missing
+            int valueStart = i;
+            int valueEnd = i;
+            if ((i < end) && (_input.charAt(i) == '=')) {
+                i++;
+                while ((i < end) && isWhitespace(_input.charAt(i)))
+                    i++;
+                if ((i < end) && ((_input.charAt(i) == '"') || (_input.charAt(i) == '\''))) {
+                    char quote = _input.charAt(i);
+                    valueStart = i + 1;
+                    i = _input.indexOf(quote, valueStart);
+                    if ((i < 0) || (i > end))
+                        i = end;
+                    valueEnd = i;
+                    i++;
+                }
+                else {
+                    valueStart = i;
+                    while ((i < end) && !isWhitespace(_input.charAt(i)))
+                        i++;
+                    valueEnd = i;
+                }
+            }
+
+            if (((attrEnd - attrStart) == name.length()) &&
+                    _input.regionMatches(true, attrStart, name, 0, name.length())) {
+                _valueStart = valueStart;
+                _valueEnd = valueEnd;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Constructor
+
+    public HtmlTokenizer(String input) {
+        _input = input;
+        _length = input.length();
+    }
+
+    // Public methods
+
+    /**
+     * Moves to the next token and returns its type.
+     */
+    public int next() {
+        // The contents of script and style elements are not HTML, skip them
+        if ((_type == START_TAG) && (isTag("script") || isTag("style")))
+            _pos = findEndTag(isTag("script") ? "script" : "style", _pos);
+
+        while (_pos < _length) {
+            int start = _pos;
+            if (_input.charAt(start) != '<') {
+                // Text up to the next tag
+                int end = _input.indexOf('<', start + 1);
+                if (end < 0)
+                    end = _length;
+                _pos = end;
+                return setToken(TEXT, start, end, start, start);
+            }
+
+            if (_input.startsWith("<!--", start)) {
+                int end = _input.indexOf("-->", start + 4);
+                _pos = (end < 0) ? _length : end + 3;
+                continue;
+            }
+
+            int nameStart = start + 1;
+            boolean isEndTag = (nameStart < _length) && (_input.charAt(nameStart) == '/');
+            if (isEndTag)
+                nameStart++;
+
+            if ((nameStart < _length) && ((_input.charAt(nameStart) == '!') || (_input.charAt(nameStart) == '?'))) {
+                // Doctype or processing instruction
+                int end = _input.indexOf('>', nameStart);
+                _pos = (end < 0) ? _length : end + 1;
+                continue;
+            }
+
+            int nameEnd = nameStart;
+            while ((nameEnd < _length) && isNameChar(_input.charAt(nameEnd)))
+                nameEnd++;
+            int tagEnd = (nameEnd > nameStart) ? findTagEnd(nameEnd) : -1;
+            if (tagEnd < 0) {
+                // Not a tag after all, treat the '<' as text
+                int end = _input.indexOf('<', start + 1);
+                if (end < 0)
+                    end = _length;
+                _pos = end;
+                return setToken(TEXT, start, end, start, start);
+            }
+
+            _pos = tagEnd + 1;
+            return setToken(isEndTag ? END_TAG : START_TAG, start, _pos, nameStart, nameEnd);
+        }
+
+        return setToken(EOF, _length, _length, _length, _length);
+    }
+
+    private int setToken(int type, int start, int end, int nameStart, int nameEnd) {
+        _type = type;
+        _tokenStart = start;
+        _tokenEnd = end;
+        _nameStart = nameStart;
+        _nameEnd = nameEnd;
+        return type;
+    }
+
+    /**
+     * Returns true if the current token is a start or end tag with the given name.
+     */
+    public boolean isTag(String name) {
+        return ((_type == START_TAG) || (_type == END_TAG)) &&
+                ((_nameEnd - _nameStart) == name.length()) &&
+                _input.regionMatches(true, _nameStart, name, 0, name.length());
+    }
+
+    /**
+     * Returns true if the current tag has an attribute with exactly the given value.
+     */
+    public boolean hasAttribute(String name, String value) {
+        return findAttribute(name) &&
+                ((_valueEnd - _valueStart) == value.length()) &&
+                _input.regionMatches(_valueStart, value, 0, value.length());
+    }
+
+    /**
+     * Gets the value of an attribute of the current tag, or null if it's missing.
+     */
+    public String getAttribute(String name) {
+        if (!findAttribute(name))
+            return null;
+        return _input.substring(_valueStart, _valueEnd);
+    }
+
+    /**
+     * Returns true if the current token is text that equals the given value,
+     * ignoring surrounding whitespace.
+     */
+    public boolean isText(String value) {
+        if (_type != TEXT)
+            return false;
+
+        int start = _tokenStart;
+        int end = _tokenEnd;
+        while ((start < end) && isWhitespace(_input.charAt(start)))
+            start++;
+        while ((end > start) && isWhitespace(_input.charAt(end - 1)))
+            end--;
+
+        return ((end - start) == value.length()) && _input.regionMatches(start, value, 0, value.length());
+    }
+
+    /**
+     * Reads everything between the current start tag and its end tag, markup included.
+     * Afterwards the end tag is the current token. Nested elements with the same name
+     * are not supported.
+     */
+    public String readInner() {
+        if (_type != START_TAG)
+            return null;
+
+        int nameLength = _nameEnd - _nameStart;
+        String name = _input.substring(_nameStart, _nameEnd);
+        int start = _tokenEnd;
+        int end = findEndTag(name, start);
+        int tagEnd = (end < _length) ? findTagEnd(end + 2 + nameLength) : -1;
+
+        if (tagEnd < 0) {
+            _pos = _length;
+            setToken(EOF, _length, _length, _length, _length);
+        }
+        else {
+            _pos = tagEnd + 1;
+            setToken(END_TAG, end, _pos, end + 2, end + 2 + nameLength);
+        }
+
+        return _input.substring(start, end).trim();
+    }
+}
@@ -0,0 +1,57 @@
+package se.danielkonsult.www.kvadratab.helpers.scraper;
+
+/**
+ * Finds a fixed string in a stream of characters that is fed one character
+ * at a time, without buffering the stream (Knuth-Morris-Pratt).
+ */
+class StreamMatcher {
+
+    // Private variables
+
+    private final char[] _pattern;
+    private final int[] _fallback;
+    private int _matched;
+
+    // Constructor
+
+    StreamMatcher(String pattern) {
+        _pattern = pattern.toCharArray();
+        _fallback = new int[_pattern.length];
+
+        // For each prefix length, store the length of the longest proper prefix
+        // that is also a suffix, so a mismatch never needs to re-read characters
+        int k = 0;
+        for (int i = 1; i < _pattern.length; i++) {
+            while ((k > 0) && (_pattern[i] != _pattern[k]))
+                k = _fallback[k - 1];
+            if (_pattern[i] == _pattern[k])
+                k++;
+            _fallback[i] = k;
+        }
+    }
+
+    // Methods
+
+    /**
+     * Feeds the next character and returns true if it completed the pattern.
+     */
+    boolean next(char c) {
+        while ((_matched > 0) && (c != _pattern[_matched]))
+            _matched = _fallback[_matched - 1];
+        if (c == _pattern[_matched])
+            _matched++;
+
+        if (_matched == _pattern.length) {
+            _matched = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Forgets any partial match.
+     */
+    void reset() {
+        _matched = 0;
+    }
+}
@@ -2,8 +2,6 @@ package se.danielkonsult.www.kvadratab.helpers.scraper;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import se.danielkonsult.www.kvadratab.entities.OfficeData;
 import se.danielkonsult.www.kvadratab.entities.SummaryData;
@@ -15,86 +13,78 @@ import se.danielkonsult.www.kvadratab.entities.TagData;
  */
 public class SummaryDataParser {
 
-    // Private fields
+    // Private variables
 
-    static final Pattern itemPattern = Pattern.compile("data-id=[\"|'](\\d*?)[\"|'].*?>(.*?)</a>");
+    private static final int SECTION_NONE = 0;
+    private static final int SECTION_OFFICES = 1;
+    private static final int SECTION_TAGS = 2;
 
     // Private methods
 
-    private static OfficeData[] getOfficeDatas(SummaryData summaryPageData, String text) {
-        final Pattern officeDivPattern = Pattern.compile("<div class=[\"|']filter-section[\"|'] id=[\"|']office-filter[\"|']>(.*?)</div>");
-
-        List<OfficeData> officeDatas = new ArrayList<>();
-
-        // Look up office data
-        Matcher matcher = officeDivPattern.matcher(text);
-        if (matcher.find()){
-            String officeDiv = matcher.group(1);
-
-            matcher = itemPattern.matcher(officeDiv);
-            while (matcher.find()){
-                int id = Integer.parseInt(matcher.group(1));
-                String name = matcher.group(2);
-
-                if (id > 0){
-                    OfficeData od = new OfficeData();
-                    od.Id = id;
-                    od.Name = name;
-
-                    officeDatas.add(od);
-                }
-            }
-
-            return officeDatas.toArray(new OfficeData[officeDatas.size()]);
+    private static int parseId(String value) {
+        if (value == null)
+            return -1;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
         }
-        else
-            return new OfficeData[0];
     }
 
-    private static TagData[] getTagDatas(SummaryData summaryPageData, String text) {
-        final Pattern tagDivPattern = Pattern.compile("<div class=[\"|']filter-section[\"|'] id=[\"|']tag-filter[\"|']>(.*?)</div>");
+    // Public methods
 
+    /**
+     * Locates office and tag data from web page data, reading the page once.
+     */
+    public static SummaryData parse(String text){
+        List<OfficeData> officeDatas = new ArrayList<>();
         List<TagData> tagDatas = new ArrayList<>();
 
-        // Look up tag data
-        Matcher matcher = tagDivPattern.matcher(text);
-        if (matcher.find()){
-            String tagDiv = matcher.group(1);
-
-            matcher = itemPattern.matcher(tagDiv);
-            while (matcher.find()){
-                int id = Integer.parseInt(matcher.group(1));
-                String name = matcher.group(2);
-
-                if (id > 0){
-                    TagData td = new TagData();
-                    td.Id = id;
-                    td.Name = name;
-
-                    tagDatas.add(td);
+        HtmlTokenizer tokenizer = new HtmlTokenizer(text);
+        int section = SECTION_NONE;
+        int nestedDivs = 0;
+
+        int token = tokenizer.next();
+        while (token != HtmlTokenizer.EOF) {
+            if (token == HtmlTokenizer.START_TAG) {
+                if (tokenizer.isTag("div")) {
+                    if (section != SECTION_NONE)
+                        nestedDivs++;
+                    else if (tokenizer.hasAttribute("id", "office-filter"))
+                        section = SECTION_OFFICES;
+                    else if (tokenizer.hasAttribute("id", "tag-filter"))
+                        section = SECTION_TAGS;
+                }
+                else if ((section != SECTION_NONE) && tokenizer.isTag("a")) {
+                    int id = parseId(tokenizer.getAttribute("data-id"));
+                    String name = tokenizer.readInner();
+
+                    // Id 0 is the "all" choice
+                    if (id > 0) {
+                        if (section == SECTION_OFFICES)
+                            officeDatas.add(new OfficeData(id, name));
+                        else {
+                            TagData td = new TagData();
+                            td.Id = id;
+                            td.Name = name;
+                            tagDatas.add(td);
+                        }
+                    }
                 }
             }
+            else if ((token == HtmlTokenizer.END_TAG) && (section != SECTION_NONE) && tokenizer.isTag("div")) {
+                if (nestedDivs > 0)
+                    nestedDivs--;
+                else
+                    section = SECTION_NONE;
+            }
 
-            return tagDatas.toArray(new TagData[tagDatas.size()]);
+            token = tokenizer.next();
         }
-        else
-            return new TagData[0];
-    }
-
-    /**
-     * Locates office and tag data from web page data.
-     * @param text
-     * @return
-     */
-    public static SummaryData parse(String text){
-
-        // Remove all newlines from the input
-        text = text.replaceAll("\\r\\n|\\r|\\n", " ");
-        text = text.replaceAll("\t", "");
 
         SummaryData result = new SummaryData();
-        result.OfficeDatas = getOfficeDatas(result, text);
-        result.TagDatas = getTagDatas(result, text);
+        result.OfficeDatas = officeDatas.toArray(new OfficeData[officeDatas.size()]);
+        result.TagDatas = tagDatas.toArray(new TagData[tagDatas.size()]);
 
         return result;
     }
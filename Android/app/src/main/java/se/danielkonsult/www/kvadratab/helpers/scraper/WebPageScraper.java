@@ -4,7 +4,9 @@ import java.io.IOException;
 
 import se.danielkonsult.www.kvadratab.entities.ConsultantData;
 import se.danielkonsult.www.kvadratab.entities.ConsultantDetails;
+import se.danielkonsult.www.kvadratab.entities.HttpValidatorData;
 import se.danielkonsult.www.kvadratab.entities.SummaryData;
+import se.danielkonsult.www.kvadratab.helpers.KvadratAppException;
 
 /**
  * Created by Daniel on 2016-10-09.
@@ -12,7 +14,33 @@ import se.danielkonsult.www.kvadratab.entities.SummaryData;
 public interface WebPageScraper {
     ConsultantData[] scrapeConsultants(int officeId, int tagId) throws IOException;
 
+    /**
+     * Scrapes the consultant listing and passes each consultant to the listener
+     * while the page is still being downloaded. The listing is fetched in pages,
+     * so there is no limit on the number of consultants.
+     */
+    void scrapeConsultants(int officeId, int tagId, ConsultantScrapeListener listener) throws IOException, KvadratAppException;
+
     SummaryData scrapeSummaryData() throws IOException;
 
+    /**
+     * Scrapes the summary page using a conditional request. Returns null if the page
+     * hasn't changed since its validators were last saved.
+     */
+    SummaryData scrapeSummaryDataIfModified() throws IOException;
+
     ConsultantDetails scrapeConsultantDetails(int consultantId) throws IOException;
+
+    /**
+     * Scrapes the details page of a consultant using a conditional request. Returns null
+     * if the page hasn't changed since its validators were last saved.
+     */
+    ConsultantDetails scrapeConsultantDetailsIfModified(int consultantId) throws IOException;
+
+    /**
+     * Saves the validators that were returned with scraped data, so that the next
+     * conditional request for the same page can be answered with Not Modified. Must
+     * only be called once the data has been stored. Does nothing for null.
+     */
+    void saveValidator(HttpValidatorData validator);
 }
@@ -1,5 +1,7 @@
 package se.danielkonsult.www.kvadratab.repositories.consultant;
 
+import java.util.Map;
+
 /**
  * Created by Daniel on 2016-10-06.
  */
@@ -10,13 +12,28 @@ public interface ConsultantCompetenceRepository {
      */
     String[] getById(int consultantId);
 
+    /**
+     * Gets the competences of all consultants with one query, keyed by consultant id.
+     */
+    Map<Integer, String[]> getAll();
+
     /**
      * Updates the competences of a consultant.
      */
     void update(int consultantId, String[] competences);
 
+    /**
+     * Replaces the competences of many consultants, keyed by consultant id, in a single transaction.
+     */
+    void replaceCompetences(Map<Integer, String[]> competencesByConsultantId);
+
     /**
      * Deletes the competences of a consultant.
      */
     void delete(int consultantId);
+
+    /**
+     * Deletes the competences of many consultants in a single transaction.
+     */
+    void deleteAll(int[] consultantIds);
 }
@@ -1,5 +1,7 @@
 package se.danielkonsult.www.kvadratab.repositories.consultant;
 
+import java.util.Map;
+
 import se.danielkonsult.www.kvadratab.entities.ConsultantData;
 import se.danielkonsult.www.kvadratab.entities.ConsultantDetails;
 
@@ -10,10 +12,29 @@ public interface ConsultantDataRepository {
 
     // Methods
 
+    /**
+     * Gets a consultant with its details and competences, or null if there is none.
+     */
     ConsultantData getById(int id, boolean joinOffice);
 
+    /**
+     * Gets all consultants sorted by name, without their details and competences.
+     */
     ConsultantData[] getAll(boolean joinOffices);
 
+    /**
+     * Gets the ids of the consultants that a matcher accepts, sorted by name. The
+     * consultants are only read one at a time, without their details.
+     * @param matcher The matcher, or null to get the ids of all consultants.
+     */
+    int[] getSortedIds(ConsultantMatcher matcher);
+
+    /**
+     * Gets the consultants with the given ids in the same order, with only the id, names
+     * and office set. Consultants that don't exist are returned as null.
+     */
+    ConsultantData[] getListItems(int[] ids);
+
     /**
      * Gets the total number of consultants in the database.
      */
@@ -24,23 +45,57 @@ public interface ConsultantDataRepository {
      */
     void insert(ConsultantData consultant);
 
+    /**
+     * Inserts many consultants, including their competences, in a single transaction.
+     */
+    void insertAll(ConsultantData[] consultants);
+
     /**
      * Updates the office id of a specific consultant.
      */
     void updateOffice(int consultantId, int officeId);
 
+    /**
+     * Updates the office ids of many consultants, keyed by consultant id, in a single transaction.
+     */
+    void updateOffices(Map<Integer, Integer> officeIdsByConsultantId);
+
     /**
      * Updates the name of a consultant.
      */
     void updateName(int consultantId, String firstName, String lastName);
 
     /**
-     * Updated the details of the consultant.
+     * Updates the names of many consultants in a single transaction, using the
+     * id and names of each given consultant.
+     */
+    void updateNames(ConsultantData[] consultants);
+
+    /**
+     * Updates the details of the consultant, unless they are the same as the stored
+     * ones. The details timestamp is updated either way.
+     * @return True if the details had changed and were written.
+     */
+    boolean updateDetails(int consultantId, ConsultantDetails details);
+
+    /**
+     * Marks the details of a consultant as up to date without changing them.
      */
-    void updateDetails(int consultantId, ConsultantDetails details);
+    void updateDetailsTimestamp(int consultantId);
 
     /**
      * Deletes a consultant by its id.
      */
     void delete(int id);
+
+    /**
+     * Deletes many consultants, including their competences, in a single transaction.
+     */
+    void deleteAll(int[] ids);
+
+    /**
+     * Searches names, job roles, offices, competences, descriptions and overviews for
+     * any word of a free text, by prefix. Returns the ids of the hits, best match first.
+     */
+    int[] search(String text);
 }
@@ -0,0 +1,15 @@
+package se.danielkonsult.www.kvadratab.repositories.consultant;
+
+import se.danielkonsult.www.kvadratab.entities.ConsultantData;
+
+/**
+ * Decides which consultants to include when the ids of consultants are listed.
+ */
+public interface ConsultantMatcher {
+
+    /**
+     * Returns true if the consultant should be included. Only the id, names and
+     * office id are set, and the instance is reused for the next consultant.
+     */
+    boolean matches(ConsultantData listItem);
+}
@@ -1,15 +1,22 @@
 package se.danielkonsult.www.kvadratab.repositories.consultant;
 
-import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import se.danielkonsult.www.kvadratab.entities.ConsultantData;
+import se.danielkonsult.www.kvadratab.helpers.db.ConsultantSearchIndex;
 import se.danielkonsult.www.kvadratab.helpers.db.DbSpec;
 import se.danielkonsult.www.kvadratab.helpers.db.KvadratDb;
+import se.danielkonsult.www.kvadratab.helpers.db.RowMapper;
 import se.danielkonsult.www.kvadratab.services.prefs.DefaultPrefsService;
 
 /**
@@ -26,17 +33,92 @@ public class DefaultConsultantCompetenceRepository implements ConsultantCompeten
     };
     private final String orderBy = DbSpec.ConsultantCompetenceEntry.COLUMN_NAME_INDEX;
 
+    /**
+     * Reads the competence of each row from a db cursor.
+     */
+    private final RowMapper<String> rowMapper = new RowMapper<String>(queryProjection) {
+        @Override
+        protected String map(Cursor c, int[] columns) {
+            return c.getString(columns[2]);
+        }
+    };
+
     private KvadratDb _db;
 
-    // Private methods
+    // Package private methods
+
+    /**
+     * Replaces the competences of many consultants, without a transaction or updating the search index.
+     */
+    static void writeCompetences(SQLiteDatabase db, Map<Integer, String[]> competencesByConsultantId) {
+        SQLiteStatement deleteStatement = db.compileStatement(DbSpec.ConsultantCompetenceEntry.SQL_DELETE);
+        SQLiteStatement insertStatement = db.compileStatement(DbSpec.ConsultantCompetenceEntry.SQL_INSERT);
+        try {
+            for (Map.Entry<Integer, String[]> entry : competencesByConsultantId.entrySet()) {
+                int consultantId = entry.getKey();
+
+                deleteStatement.bindLong(1, consultantId);
+                deleteStatement.executeUpdateDelete();
+
+                // Add new ones
+                if (entry.getValue() == null)
+                    continue;
+                int index = 0;
+                for (String competence : entry.getValue()) {
+                    insertStatement.bindLong(1, consultantId);
+                    insertStatement.bindLong(2, index);
+                    insertStatement.bindString(3, competence);
+                    insertStatement.executeInsert();
+                    index++;
+                }
+            }
+        } finally {
+            deleteStatement.close();
+            insertStatement.close();
+        }
+    }
+
+    /**
+     * Deletes the competences of many consultants, without a transaction or updating the search index.
+     */
+    static void deleteCompetences(SQLiteDatabase db, int[] consultantIds) {
+        SQLiteStatement deleteStatement = db.compileStatement(DbSpec.ConsultantCompetenceEntry.SQL_DELETE);
+        try {
+            for (int consultantId : consultantIds) {
+                deleteStatement.bindLong(1, consultantId);
+                deleteStatement.executeUpdateDelete();
+            }
+        } finally {
+            deleteStatement.close();
+        }
+    }
 
     /**
-     * Deletes the competences of a specific consultant.
+     * Splits competences that have been concatenated by DbSpec.ConsultantCompetenceEntry.SQL_CONCAT_FOR_CONSULTANT
+     * and puts them in index order.
      */
-    private void delete(SQLiteDatabase db, int consultantId) {
-        String whereClause = DbSpec.ConsultantCompetenceEntry.COLUMN_NAME_CONSULTANT_ID + "=?";
-        String[] whereArgs = new String[] { Integer.toString(consultantId) };
-        db.delete(DbSpec.ConsultantCompetenceEntry.TABLE_NAME, whereClause, whereArgs);
+    static String[] parseConcatenated(String concatenated) {
+        if (concatenated == null)
+            return new String[0];
+
+        String[] items = concatenated.split(DbSpec.ConsultantCompetenceEntry.CONCAT_SEPARATOR, -1);
+        String[][] indexedItems = new String[items.length][];
+        for (int i = 0; i < items.length; i++)
+            indexedItems[i] = items[i].split(DbSpec.ConsultantCompetenceEntry.CONCAT_INDEX_SEPARATOR, 2);
+
+        // group_concat doesn't promise any order
+        Arrays.sort(indexedItems, new Comparator<String[]>() {
+            @Override
+            public int compare(String[] lhs, String[] rhs) {
+                return Integer.valueOf(lhs[0]).compareTo(Integer.valueOf(rhs[0]));
+            }
+        });
+
+        String[] result = new String[indexedItems.length];
+        for (int i = 0; i < indexedItems.length; i++)
+            result[i] = indexedItems[i][1];
+
+        return result;
     }
 
     // Constructor
@@ -52,38 +134,100 @@ public class DefaultConsultantCompetenceRepository implements ConsultantCompeten
                 Integer.toString(consultantId)
         };
 
-        List<String> result = new ArrayList<>();
         SQLiteDatabase db = _db.getReadableDatabase();
         Cursor c = db.query(DbSpec.ConsultantCompetenceEntry.TABLE_NAME, queryProjection, selection, selectionArgs, null, null, orderBy);
-        while (c.moveToNext()) {
-            result.add(c.getString(c.getColumnIndex(DbSpec.ConsultantCompetenceEntry.COLUMN_NAME_COMPETENCE)));
-        }
+        List<String> result = rowMapper.readAll(c);
 
         return result.toArray(new String[result.size()]);
     }
 
     @Override
-    public void update(int consultantId, String[] competences) {
-        SQLiteDatabase db = _db.getWritableDatabase();
+    public Map<Integer, String[]> getAll() {
+        String orderByConsultant = DbSpec.ConsultantCompetenceEntry.COLUMN_NAME_CONSULTANT_ID + "," + orderBy;
 
-        delete(db, consultantId);
+        SQLiteDatabase db = _db.getReadableDatabase();
+        Cursor c = db.query(DbSpec.ConsultantCompetenceEntry.TABLE_NAME, queryProjection, null, null, null, null, orderByConsultant);
+
+        // The rows come grouped by consultant
+        Map<Integer, String[]> result = new HashMap<>();
+        try {
+            int consultantIdColumn = c.getColumnIndexOrThrow(DbSpec.ConsultantCompetenceEntry.COLUMN_NAME_CONSULTANT_ID);
+            int competenceColumn = c.getColumnIndexOrThrow(DbSpec.ConsultantCompetenceEntry.COLUMN_NAME_COMPETENCE);
+            int currentId = 0;
+            List<String> competences = new ArrayList<>();
+            while (c.moveToNext()) {
+                int consultantId = c.getInt(consultantIdColumn);
+                if ((consultantId != currentId) && !competences.isEmpty()) {
+                    result.put(currentId, competences.toArray(new String[competences.size()]));
+                    competences.clear();
+                }
+                currentId = consultantId;
+                competences.add(c.getString(competenceColumn));
+            }
+            if (!competences.isEmpty())
+                result.put(currentId, competences.toArray(new String[competences.size()]));
+        } finally {
+            c.close();
+        }
 
-        // Add new ones
-        int index = 0;
-        for (String competence : competences){
-            ContentValues values = new ContentValues();
-            values.put(DbSpec.ConsultantCompetenceEntry.COLUMN_NAME_CONSULTANT_ID, consultantId);
-            values.put(DbSpec.ConsultantCompetenceEntry.COLUMN_NAME_INDEX, index);
-            values.put(DbSpec.ConsultantCompetenceEntry.COLUMN_NAME_COMPETENCE, competence);
+        return result;
+    }
 
-            db.insertOrThrow(DbSpec.ConsultantCompetenceEntry.TABLE_NAME, null, values);
-            index++;
+    @Override
+    public void update(int consultantId, String[] competences) {
+        replaceCompetences(Collections.singletonMap(consultantId, competences));
+    }
+
+    @Override
+    public void replaceCompetences(Map<Integer, String[]> competencesByConsultantId) {
+        SQLiteDatabase db = _db.getWritableDatabase();
+        SQLiteStatement clearHashStatement = db.compileStatement(DbSpec.ConsultantDetailsEntry.SQL_CLEAR_CONTENTHASH);
+        ConsultantSearchIndex searchIndex = new ConsultantSearchIndex(db);
+
+        db.beginTransactionNonExclusive();
+        try {
+            writeCompetences(db, competencesByConsultantId);
+            for (int consultantId : competencesByConsultantId.keySet()) {
+                // The details no longer match their hash
+                clearHashStatement.bindLong(1, consultantId);
+                clearHashStatement.executeUpdateDelete();
+                searchIndex.reindex(consultantId);
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            clearHashStatement.close();
+            searchIndex.close();
         }
     }
 
     @Override
     public void delete(int consultantId) {
+        deleteAll(new int[] { consultantId });
+    }
+
+    @Override
+    public void deleteAll(int[] consultantIds) {
         SQLiteDatabase db = _db.getWritableDatabase();
-        delete(db, consultantId);
+        SQLiteStatement clearHashStatement = db.compileStatement(DbSpec.ConsultantDetailsEntry.SQL_CLEAR_CONTENTHASH);
+        ConsultantSearchIndex searchIndex = new ConsultantSearchIndex(db);
+
+        db.beginTransactionNonExclusive();
+        try {
+            deleteCompetences(db, consultantIds);
+            for (int consultantId : consultantIds) {
+                // The details no longer match their hash
+                clearHashStatement.bindLong(1, consultantId);
+                clearHashStatement.executeUpdateDelete();
+                searchIndex.reindex(consultantId);
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            clearHashStatement.close();
+            searchIndex.close();
+        }
     }
 }
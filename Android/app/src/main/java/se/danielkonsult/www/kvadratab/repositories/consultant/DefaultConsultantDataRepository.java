@@ -3,18 +3,25 @@ package se.danielkonsult.www.kvadratab.repositories.consultant;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import se.danielkonsult.www.kvadratab.entities.ConsultantData;
 import se.danielkonsult.www.kvadratab.entities.ConsultantDetails;
 import se.danielkonsult.www.kvadratab.entities.OfficeData;
+import se.danielkonsult.www.kvadratab.helpers.ContentHash;
 import se.danielkonsult.www.kvadratab.helpers.Utils;
+import se.danielkonsult.www.kvadratab.helpers.db.ConsultantSearchIndex;
 import se.danielkonsult.www.kvadratab.helpers.db.DbSpec;
 import se.danielkonsult.www.kvadratab.helpers.db.KvadratDb;
-import se.danielkonsult.www.kvadratab.repositories.office.DefaultOfficeDataRepository;
+import se.danielkonsult.www.kvadratab.helpers.db.RowMapper;
 import se.danielkonsult.www.kvadratab.repositories.office.OfficeDataRepository;
 
 /**
@@ -24,56 +31,168 @@ public class DefaultConsultantDataRepository implements ConsultantDataRepository
 
     // Private variables
 
+    /**
+     * The columns of the consultant table, without the details.
+     */
     private final String[] queryProjection = {
             DbSpec.ConsultantEntry.COLUMN_NAME_ID,
             DbSpec.ConsultantEntry.COLUMN_NAME_FIRSTNAME,
             DbSpec.ConsultantEntry.COLUMN_NAME_LASTNAME,
             DbSpec.ConsultantEntry.COLUMN_NAME_JOBROLE,
-            DbSpec.ConsultantEntry.COLUMN_NAME_DESCRIPTION,
             DbSpec.ConsultantEntry.COLUMN_NAME_OFFICEID,
-            DbSpec.ConsultantEntry.COLUMN_NAME_OVERVIEW,
             DbSpec.ConsultantEntry.COLUMN_NAME_DETAILSTIMESTAMP
     };
     private final String orderBy = DbSpec.ConsultantEntry.COLUMN_NAME_LASTNAME + "," + DbSpec.ConsultantEntry.COLUMN_NAME_FIRSTNAME;
 
+    /**
+     * The query projection followed by the details and the concatenated competences.
+     */
+    private static final String COLUMN_NAME_COMPETENCES = "competences";
+    private final String[] detailsProjection = concat(queryProjection,
+            DbSpec.ConsultantDetailsEntry.COLUMN_NAME_DESCRIPTION,
+            DbSpec.ConsultantDetailsEntry.COLUMN_NAME_OVERVIEW,
+            COLUMN_NAME_COMPETENCES);
+
+    /**
+     * Reads a consultant, its details and its competences, with one query.
+     */
+    private final String selectWithDetailsById = String.format("SELECT %s,%s,%s,%s AS %s FROM %s%s WHERE %s.%s = ?",
+            TextUtils.join(",", queryProjection),
+            DbSpec.ConsultantDetailsEntry.COLUMN_NAME_DESCRIPTION, DbSpec.ConsultantDetailsEntry.COLUMN_NAME_OVERVIEW,
+            DbSpec.ConsultantCompetenceEntry.SQL_CONCAT_FOR_CONSULTANT, COLUMN_NAME_COMPETENCES,
+            DbSpec.ConsultantEntry.TABLE_NAME, DbSpec.ConsultantDetailsEntry.SQL_LEFT_JOIN,
+            DbSpec.ConsultantEntry.TABLE_NAME, DbSpec.ConsultantEntry.COLUMN_NAME_ID);
+
+    /**
+     * The columns that are shown in consultant lists.
+     */
+    private final String[] listProjection = {
+            DbSpec.ConsultantEntry.COLUMN_NAME_ID,
+            DbSpec.ConsultantEntry.COLUMN_NAME_FIRSTNAME,
+            DbSpec.ConsultantEntry.COLUMN_NAME_LASTNAME,
+            DbSpec.ConsultantEntry.COLUMN_NAME_OFFICEID
+    };
+
+    // The number of ids that are bound in each query of list items
+    private static final int LIST_ITEMS_BATCH_SIZE = 100;
+
+    /**
+     * Reads ConsultantData objects from a db cursor.
+     */
+    private final RowMapper<ConsultantData> rowMapper = new RowMapper<ConsultantData>(queryProjection) {
+        @Override
+        protected ConsultantData map(Cursor c, int[] columns) {
+            return readConsultant(c, columns);
+        }
+    };
+
+    /**
+     * Reads list items from a db cursor.
+     */
+    private final RowMapper<ConsultantData> listRowMapper = new RowMapper<ConsultantData>(listProjection) {
+        @Override
+        protected ConsultantData map(Cursor c, int[] columns) {
+            ConsultantData consultantData = new ConsultantData();
+            readListItem(c, columns, consultantData);
+
+            return consultantData;
+        }
+    };
+
+    /**
+     * Reads ConsultantData objects with details and competences from a db cursor.
+     */
+    private final RowMapper<ConsultantData> detailsRowMapper = new RowMapper<ConsultantData>(detailsProjection) {
+        @Override
+        protected ConsultantData map(Cursor c, int[] columns) {
+            ConsultantData consultantData = readConsultant(c, columns);
+            consultantData.Description = c.getString(columns[6]);
+            consultantData.Overview = c.getString(columns[7]);
+            consultantData.CompetenceAreas = DefaultConsultantCompetenceRepository.parseConcatenated(c.getString(columns[8]));
+
+            return consultantData;
+        }
+    };
+
     private KvadratDb _db;
 
     // Private methods
 
+    private static String[] concat(String[] columns, String... moreColumns) {
+        String[] result = Arrays.copyOf(columns, columns.length + moreColumns.length);
+        System.arraycopy(moreColumns, 0, result, columns.length, moreColumns.length);
+        return result;
+    }
+
     /**
-     * Reads a ConsultantData object from a db cursor.
+     * Reads the columns of the list projection into a consultant.
      */
-    private ConsultantData getFromCursor(Cursor c) {
+    private static void readListItem(Cursor c, int[] columns, ConsultantData consultantData) {
+        consultantData.Id = c.getInt(columns[0]);
+        consultantData.FirstName = c.getString(columns[1]);
+        consultantData.LastName = c.getString(columns[2]);
+        consultantData.OfficeId = c.getInt(columns[3]);
+    }
+
+    /**
+     * Reads the columns of the query projection.
+     */
+    private static ConsultantData readConsultant(Cursor c, int[] columns) {
         ConsultantData consultantData = new ConsultantData();
-        consultantData.Id = c.getInt(c.getColumnIndex(DbSpec.ConsultantEntry.COLUMN_NAME_ID));
-        consultantData.FirstName = c.getString(c.getColumnIndex(DbSpec.ConsultantEntry.COLUMN_NAME_FIRSTNAME));
-        consultantData.LastName = c.getString(c.getColumnIndex(DbSpec.ConsultantEntry.COLUMN_NAME_LASTNAME));
-        consultantData.JobRole = c.getString(c.getColumnIndex(DbSpec.ConsultantEntry.COLUMN_NAME_JOBROLE));
-        consultantData.Description = c.getString(c.getColumnIndex(DbSpec.ConsultantEntry.COLUMN_NAME_DESCRIPTION));
-        consultantData.OfficeId = c.getInt(c.getColumnIndex(DbSpec.ConsultantEntry.COLUMN_NAME_OFFICEID));
-        consultantData.Overview = c.getString(c.getColumnIndex(DbSpec.ConsultantEntry.COLUMN_NAME_OVERVIEW));
-        consultantData.DetailsTimstamp = c.getLong(c.getColumnIndex(DbSpec.ConsultantEntry.COLUMN_NAME_DETAILSTIMESTAMP));
+        consultantData.Id = c.getInt(columns[0]);
+        consultantData.FirstName = c.getString(columns[1]);
+        consultantData.LastName = c.getString(columns[2]);
+        consultantData.JobRole = c.getString(columns[3]);
+        consultantData.OfficeId = c.getInt(columns[4]);
+        consultantData.DetailsTimstamp = c.getLong(columns[5]);
 
         return consultantData;
     }
 
     /**
-     * Loads offices and links them to the consultants
+     * Links the cached offices to the consultants
      */
     private void performOfficeJoin(List<ConsultantData> consultantDatas) {
-        // Load offices and create a hashmap for quick lookup
-        OfficeDataRepository officeDataRepository = new DefaultOfficeDataRepository(_db);
-        OfficeData[] officeDatas = officeDataRepository.getAll();
-        HashMap<Integer, OfficeData> officeDataHash = new HashMap<>();
-        for (OfficeData officeData : officeDatas)
-            officeDataHash.put(officeData.Id, officeData);
-
+        OfficeDataRepository officeDataRepository = _db.getOfficeDataRepository();
         for (ConsultantData cd : consultantDatas){
             if (cd.OfficeId > 0)
-                cd.Office = officeDataHash.get(cd.OfficeId);
+                cd.Office = officeDataRepository.getById(cd.OfficeId);
+        }
+    }
+
+    /**
+     * Gets the fingerprint of everything in the details that is stored.
+     */
+    private static String getContentHash(ConsultantDetails details) {
+        return new ContentHash()
+                .add(details.Description)
+                .add(details.Overview)
+                .add(details.CompetenceAreas)
+                .toHex();
+    }
+
+    /**
+     * Reads the stored content hash of the details of a consultant, null if there is none.
+     */
+    private static String readContentHash(SQLiteDatabase db, int consultantId) {
+        Cursor c = db.rawQuery(DbSpec.ConsultantDetailsEntry.SQL_SELECT_CONTENTHASH, new String[] { Integer.toString(consultantId) });
+        try {
+            return c.moveToFirst() ? c.getString(0) : null;
+        } finally {
+            c.close();
         }
     }
 
+    /**
+     * Binds a string to a compiled statement, which may be null.
+     */
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value == null)
+            statement.bindNull(index);
+        else
+            statement.bindString(index, value);
+    }
+
     // Constructor
 
     public DefaultConsultantDataRepository(KvadratDb _db) {
@@ -82,18 +201,17 @@ public class DefaultConsultantDataRepository implements ConsultantDataRepository
 
     @Override
     public ConsultantData getById(int id, boolean joinOffice) {
-        String selection = DbSpec.ConsultantEntry.COLUMN_NAME_ID + " = ?";
         String[] selectionArgs = {
                 Integer.toString(id)
         };
 
-        // Put the single hit in a result list if we need to join the office
+        // Read the consultant, its details and its competences in one go, and put the
+        // single hit in a result list if we need to join the office from the cache
         List<ConsultantData> result = new ArrayList<>();
         SQLiteDatabase db = _db.getReadableDatabase();
-        Cursor c = db.query(DbSpec.ConsultantEntry.TABLE_NAME, queryProjection, selection, selectionArgs, null, null, null, null);
-        if (c.moveToFirst()){
-            ConsultantData cd = getFromCursor(c);
-            cd.CompetenceAreas = _db.getConsultantCompetenceRepository().getById(cd.Id);
+        Cursor c = db.rawQuery(selectWithDetailsById, selectionArgs);
+        ConsultantData cd = detailsRowMapper.readFirst(c);
+        if (cd != null){
             result.add(cd);
         }
 
@@ -109,13 +227,9 @@ public class DefaultConsultantDataRepository implements ConsultantDataRepository
 
     @Override
     public ConsultantData[] getAll(boolean joinOffices) {
-        List<ConsultantData> result = new ArrayList<>();
-
         SQLiteDatabase db = _db.getReadableDatabase();
         Cursor c = db.query(DbSpec.ConsultantEntry.TABLE_NAME, queryProjection, null, null, null, null, orderBy);
-        while (c.moveToNext()){
-            result.add(getFromCursor(c));
-        }
+        List<ConsultantData> result = rowMapper.readAll(c);
 
         if (joinOffices){
             performOfficeJoin(result);
@@ -124,79 +238,243 @@ public class DefaultConsultantDataRepository implements ConsultantDataRepository
         return result.toArray(new ConsultantData[result.size()]);
     }
 
+    @Override
+    public int[] getSortedIds(ConsultantMatcher matcher) {
+        SQLiteDatabase db = _db.getReadableDatabase();
+        Cursor c = db.query(DbSpec.ConsultantEntry.TABLE_NAME, listProjection, null, null, null, null, orderBy);
+
+        int[] result = new int[Math.max(c.getCount(), 0)];
+        int count = 0;
+        try {
+            int[] columns = new int[listProjection.length];
+            for (int i = 0; i < listProjection.length; i++)
+                columns[i] = c.getColumnIndexOrThrow(listProjection[i]);
+
+            // Reuse one instance since only the ids are kept
+            ConsultantData listItem = new ConsultantData();
+            while (c.moveToNext()) {
+                readListItem(c, columns, listItem);
+                if ((matcher == null) || matcher.matches(listItem))
+                    result[count++] = listItem.Id;
+            }
+        } finally {
+            c.close();
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    @Override
+    public ConsultantData[] getListItems(int[] ids) {
+        ConsultantData[] result = new ConsultantData[ids.length];
+        SQLiteDatabase db = _db.getReadableDatabase();
+        OfficeDataRepository officeDataRepository = _db.getOfficeDataRepository();
+
+        for (int start = 0; start < ids.length; start += LIST_ITEMS_BATCH_SIZE) {
+            int end = Math.min(start + LIST_ITEMS_BATCH_SIZE, ids.length);
+
+            // Read the batch and put the consultants in the requested order
+            StringBuilder selection = new StringBuilder(DbSpec.ConsultantEntry.COLUMN_NAME_ID + " IN (");
+            String[] selectionArgs = new String[end - start];
+            Map<Integer, Integer> positions = new HashMap<>();
+            for (int i = start; i < end; i++) {
+                selection.append((i == start) ? "?" : ",?");
+                selectionArgs[i - start] = Integer.toString(ids[i]);
+                positions.put(ids[i], i);
+            }
+            selection.append(")");
+
+            Cursor c = db.query(DbSpec.ConsultantEntry.TABLE_NAME, listProjection, selection.toString(), selectionArgs, null, null, null);
+            for (ConsultantData cd : listRowMapper.readAll(c)) {
+                if (cd.OfficeId > 0)
+                    cd.Office = officeDataRepository.getById(cd.OfficeId);
+                result[positions.get(cd.Id)] = cd;
+            }
+        }
+
+        return result;
+    }
+
     @Override
     public int getCount() {
         SQLiteDatabase db = _db.getReadableDatabase();
         Cursor c = db.rawQuery(DbSpec.ConsultantEntry.SQL_COUNT_ALL, null);
-        if (c.moveToFirst()){
-            return c.getInt(0);
+        try {
+            if (c.moveToFirst()){
+                return c.getInt(0);
+            }
+            return -1;
+        } finally {
+            c.close();
         }
-        return -1;
     }
 
     @Override
     public void insert(ConsultantData consultant) {
-        SQLiteDatabase db = _db.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(DbSpec.ConsultantEntry.COLUMN_NAME_ID, consultant.Id);
-        values.put(DbSpec.ConsultantEntry.COLUMN_NAME_FIRSTNAME, consultant.FirstName);
-        values.put(DbSpec.ConsultantEntry.COLUMN_NAME_LASTNAME, consultant.LastName);
-        if (!Utils.isStringNullOrEmpty(consultant.JobRole))
-            values.put(DbSpec.ConsultantEntry.COLUMN_NAME_JOBROLE, consultant.JobRole);
-        if (!Utils.isStringNullOrEmpty(consultant.Description))
-            values.put(DbSpec.ConsultantEntry.COLUMN_NAME_DESCRIPTION, consultant.Description);
-
-        // Insert office data
-        if (consultant.OfficeId != 0)
-            values.put(DbSpec.ConsultantEntry.COLUMN_NAME_OFFICEID, consultant.OfficeId);
-        else if ((consultant.Office != null) && (consultant.Office.Id != 0))
-            values.put(DbSpec.ConsultantEntry.COLUMN_NAME_OFFICEID, consultant.Office.Id);
+        insertAll(new ConsultantData[] { consultant });
+    }
 
-        db.insertOrThrow(DbSpec.ConsultantEntry.TABLE_NAME, null, values);
+    @Override
+    public void insertAll(ConsultantData[] consultants) {
+        // The office names are needed by the search index
+        OfficeDataRepository officeDataRepository = _db.getOfficeDataRepository();
 
-        // Does the consultant have competence data as well+
-        if ((consultant.CompetenceAreas != null) && (consultant.CompetenceAreas.length > 0)) {
-            _db.getConsultantCompetenceRepository().update(consultant.Id, consultant.CompetenceAreas);
+        SQLiteDatabase db = _db.getWritableDatabase();
+        SQLiteStatement insertStatement = db.compileStatement(DbSpec.ConsultantEntry.SQL_INSERT);
+        SQLiteStatement insertDetailsStatement = db.compileStatement(DbSpec.ConsultantDetailsEntry.SQL_INSERT_OR_REPLACE);
+        ConsultantSearchIndex searchIndex = new ConsultantSearchIndex(db);
+        Map<Integer, String[]> competences = new HashMap<>();
+
+        db.beginTransactionNonExclusive();
+        try {
+            for (ConsultantData consultant : consultants) {
+                insertStatement.bindLong(1, consultant.Id);
+                bindStringOrNull(insertStatement, 2, consultant.FirstName);
+                bindStringOrNull(insertStatement, 3, consultant.LastName);
+                bindStringOrNull(insertStatement, 4, Utils.isStringNullOrEmpty(consultant.JobRole) ? null : consultant.JobRole);
+
+                // Insert office data
+                int officeId = 0;
+                if (consultant.OfficeId != 0)
+                    officeId = consultant.OfficeId;
+                else if ((consultant.Office != null) && (consultant.Office.Id != 0))
+                    officeId = consultant.Office.Id;
+                if (officeId != 0)
+                    insertStatement.bindLong(5, officeId);
+                else
+                    insertStatement.bindNull(5);
+
+                insertStatement.executeInsert();
+
+                // Only consultants with a description get a details row
+                if (!Utils.isStringNullOrEmpty(consultant.Description)) {
+                    insertDetailsStatement.bindLong(1, consultant.Id);
+                    insertDetailsStatement.bindString(2, consultant.Description);
+                    insertDetailsStatement.bindNull(3);
+                    insertDetailsStatement.executeInsert();
+                }
+
+                // Does the consultant have competence data as well?
+                if ((consultant.CompetenceAreas != null) && (consultant.CompetenceAreas.length > 0))
+                    competences.put(consultant.Id, consultant.CompetenceAreas);
+
+                OfficeData office = officeDataRepository.getById(officeId);
+                searchIndex.add(consultant.Id, consultant.FirstName, consultant.LastName, consultant.JobRole,
+                        (office == null) ? null : office.Name, consultant.Description, null, consultant.CompetenceAreas);
+            }
+
+            if (!competences.isEmpty())
+                DefaultConsultantCompetenceRepository.writeCompetences(db, competences);
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insertStatement.close();
+            insertDetailsStatement.close();
+            searchIndex.close();
         }
     }
 
     @Override
     public void updateOffice(int consultantId, int officeId) {
-        SQLiteDatabase db = _db.getWritableDatabase();
-
-        ContentValues updatedValues = new ContentValues();
-        updatedValues.put(DbSpec.ConsultantEntry.COLUMN_NAME_OFFICEID, officeId);
-
-        String filter = String.format("%s = %d", DbSpec.ConsultantEntry.COLUMN_NAME_ID, consultantId);
-
-        db.update(DbSpec.ConsultantEntry.TABLE_NAME, updatedValues, filter, null);
+        updateOffices(Collections.singletonMap(consultantId, officeId));
     }
 
     @Override
-    public void updateName(int consultantId, String firstName, String lastName) {
+    public void updateOffices(Map<Integer, Integer> officeIdsByConsultantId) {
         SQLiteDatabase db = _db.getWritableDatabase();
+        SQLiteStatement updateStatement = db.compileStatement(DbSpec.ConsultantEntry.SQL_UPDATE_OFFICE);
+        ConsultantSearchIndex searchIndex = new ConsultantSearchIndex(db);
+
+        db.beginTransactionNonExclusive();
+        try {
+            for (Map.Entry<Integer, Integer> entry : officeIdsByConsultantId.entrySet()) {
+                updateStatement.bindLong(1, entry.getValue());
+                updateStatement.bindLong(2, entry.getKey());
+                updateStatement.executeUpdateDelete();
+                searchIndex.reindex(entry.getKey());
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            updateStatement.close();
+            searchIndex.close();
+        }
+    }
 
-        ContentValues updatedValues = new ContentValues();
-        updatedValues.put(DbSpec.ConsultantEntry.COLUMN_NAME_FIRSTNAME, firstName);
-        updatedValues.put(DbSpec.ConsultantEntry.COLUMN_NAME_LASTNAME, lastName);
-
-        String filter = String.format("%s = %d", DbSpec.ConsultantEntry.COLUMN_NAME_ID, consultantId);
-
-        db.update(DbSpec.ConsultantEntry.TABLE_NAME, updatedValues, filter, null);
+    @Override
+    public void updateName(int consultantId, String firstName, String lastName) {
+        updateNames(new ConsultantData[] { new ConsultantData(consultantId, firstName, lastName, 0) });
     }
 
     @Override
-    public void updateDetails(int consultantId, ConsultantDetails details) {
+    public void updateNames(ConsultantData[] consultants) {
         SQLiteDatabase db = _db.getWritableDatabase();
+        SQLiteStatement updateStatement = db.compileStatement(DbSpec.ConsultantEntry.SQL_UPDATE_NAME);
+        ConsultantSearchIndex searchIndex = new ConsultantSearchIndex(db);
+
+        db.beginTransactionNonExclusive();
+        try {
+            for (ConsultantData consultant : consultants) {
+                bindStringOrNull(updateStatement, 1, consultant.FirstName);
+                bindStringOrNull(updateStatement, 2, consultant.LastName);
+                updateStatement.bindLong(3, consultant.Id);
+                updateStatement.executeUpdateDelete();
+                searchIndex.reindex(consultant.Id);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            updateStatement.close();
+            searchIndex.close();
+        }
+    }
 
-        _db.getConsultantCompetenceRepository().update(consultantId, details.CompetenceAreas);
+    @Override
+    public boolean updateDetails(int consultantId, ConsultantDetails details) {
+        String contentHash = getContentHash(details);
+        SQLiteDatabase db = _db.getWritableDatabase();
+        ConsultantSearchIndex searchIndex = new ConsultantSearchIndex(db);
+
+        db.beginTransactionNonExclusive();
+        try {
+            // Only the timestamp is written if the details are the same as the stored ones
+            boolean changed = !contentHash.equals(readContentHash(db, consultantId));
+            if (changed) {
+                DefaultConsultantCompetenceRepository.writeCompetences(db, Collections.singletonMap(consultantId, details.CompetenceAreas));
+
+                ContentValues detailsValues = new ContentValues();
+                detailsValues.put(DbSpec.ConsultantDetailsEntry.COLUMN_NAME_CONSULTANT_ID, consultantId);
+                detailsValues.put(DbSpec.ConsultantDetailsEntry.COLUMN_NAME_DESCRIPTION, details.Description);
+                detailsValues.put(DbSpec.ConsultantDetailsEntry.COLUMN_NAME_OVERVIEW, details.Overview);
+                detailsValues.put(DbSpec.ConsultantDetailsEntry.COLUMN_NAME_CONTENTHASH, contentHash);
+                db.insertWithOnConflict(DbSpec.ConsultantDetailsEntry.TABLE_NAME, null, detailsValues, SQLiteDatabase.CONFLICT_REPLACE);
+
+                searchIndex.reindex(consultantId);
+            }
+
+            long currentTimestamp = System.currentTimeMillis();
+
+            ContentValues updatedValues = new ContentValues();
+            updatedValues.put(DbSpec.ConsultantEntry.COLUMN_NAME_DETAILSTIMESTAMP, currentTimestamp);
+
+            String filter = String.format("%s = %d", DbSpec.ConsultantEntry.COLUMN_NAME_ID, consultantId);
+            db.update(DbSpec.ConsultantEntry.TABLE_NAME, updatedValues, filter, null);
+
+            db.setTransactionSuccessful();
+            return changed;
+        } finally {
+            db.endTransaction();
+            searchIndex.close();
+        }
+    }
 
-        long currentTimestamp = System.currentTimeMillis();
+    @Override
+    public void updateDetailsTimestamp(int consultantId) {
+        SQLiteDatabase db = _db.getWritableDatabase();
 
         ContentValues updatedValues = new ContentValues();
-        updatedValues.put(DbSpec.ConsultantEntry.COLUMN_NAME_DESCRIPTION, details.Description);
-        updatedValues.put(DbSpec.ConsultantEntry.COLUMN_NAME_OVERVIEW, details.Overview);
-        updatedValues.put(DbSpec.ConsultantEntry.COLUMN_NAME_DETAILSTIMESTAMP, currentTimestamp);
+        updatedValues.put(DbSpec.ConsultantEntry.COLUMN_NAME_DETAILSTIMESTAMP, System.currentTimeMillis());
 
         String filter = String.format("%s = %d", DbSpec.ConsultantEntry.COLUMN_NAME_ID, consultantId);
         db.update(DbSpec.ConsultantEntry.TABLE_NAME, updatedValues, filter, null);
@@ -204,13 +482,38 @@ public class DefaultConsultantDataRepository implements ConsultantDataRepository
 
     @Override
     public void delete(int id) {
-        SQLiteDatabase db = _db.getWritableDatabase();
-
-        _db.getConsultantCompetenceRepository().delete(id);
+        deleteAll(new int[] { id });
+    }
 
-        String whereClause = DbSpec.ConsultantEntry.COLUMN_NAME_ID + "=?";
-        String[] whereArgs = new String[] { Integer.toString(id) };
+    @Override
+    public void deleteAll(int[] ids) {
+        SQLiteDatabase db = _db.getWritableDatabase();
+        SQLiteStatement deleteStatement = db.compileStatement(DbSpec.ConsultantEntry.SQL_DELETE);
+        SQLiteStatement deleteDetailsStatement = db.compileStatement(DbSpec.ConsultantDetailsEntry.SQL_DELETE);
+        ConsultantSearchIndex searchIndex = new ConsultantSearchIndex(db);
+
+        db.beginTransactionNonExclusive();
+        try {
+            DefaultConsultantCompetenceRepository.deleteCompetences(db, ids);
+
+            for (int id : ids) {
+                deleteDetailsStatement.bindLong(1, id);
+                deleteDetailsStatement.executeUpdateDelete();
+                deleteStatement.bindLong(1, id);
+                deleteStatement.executeUpdateDelete();
+                searchIndex.remove(id);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            deleteStatement.close();
+            deleteDetailsStatement.close();
+            searchIndex.close();
+        }
+    }
 
-        db.delete(DbSpec.ConsultantEntry.TABLE_NAME, whereClause, whereArgs);
+    @Override
+    public int[] search(String text) {
+        return ConsultantSearchIndex.search(_db.getReadableDatabase(), text);
     }
 }
@@ -0,0 +1,81 @@
+package se.danielkonsult.www.kvadratab.repositories.httpvalidator;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import se.danielkonsult.www.kvadratab.entities.HttpValidatorData;
+import se.danielkonsult.www.kvadratab.helpers.db.DbSpec;
+import se.danielkonsult.www.kvadratab.helpers.db.KvadratDb;
+import se.danielkonsult.www.kvadratab.helpers.db.RowMapper;
+
+/**
+ * Handles database reading and writing of HTTP cache validators.
+ */
+public class DefaultHttpValidatorRepository implements HttpValidatorRepository {
+
+    // Private variables
+
+    private final String[] queryProjection = {
+            DbSpec.HttpValidatorEntry.COLUMN_NAME_URL,
+            DbSpec.HttpValidatorEntry.COLUMN_NAME_ETAG,
+            DbSpec.HttpValidatorEntry.COLUMN_NAME_LASTMODIFIED
+    };
+
+    /**
+     * Reads HttpValidatorData objects from a db cursor.
+     */
+    private final RowMapper<HttpValidatorData> rowMapper = new RowMapper<HttpValidatorData>(queryProjection) {
+        @Override
+        protected HttpValidatorData map(Cursor c, int[] columns) {
+            HttpValidatorData validator = new HttpValidatorData();
+            validator.Url = c.getString(columns[0]);
+            validator.ETag = c.getString(columns[1]);
+            validator.LastModified = c.getString(columns[2]);
+
+            return validator;
+        }
+    };
+
+    private KvadratDb _db;
+
+    // Constructor
+
+    public DefaultHttpValidatorRepository(KvadratDb db) {
+        _db = db;
+    }
+
+    // Public methods
+
+    @Override
+    public HttpValidatorData getByUrl(String url) {
+        String selection = DbSpec.HttpValidatorEntry.COLUMN_NAME_URL + " = ?";
+        String[] selectionArgs = { url };
+
+        SQLiteDatabase db = _db.getReadableDatabase();
+        Cursor c = db.query(DbSpec.HttpValidatorEntry.TABLE_NAME, queryProjection, selection, selectionArgs, null, null, null, null);
+
+        return rowMapper.readFirst(c);
+    }
+
+    @Override
+    public void save(HttpValidatorData validator) {
+        SQLiteDatabase db = _db.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(DbSpec.HttpValidatorEntry.COLUMN_NAME_URL, validator.Url);
+        values.put(DbSpec.HttpValidatorEntry.COLUMN_NAME_ETAG, validator.ETag);
+        values.put(DbSpec.HttpValidatorEntry.COLUMN_NAME_LASTMODIFIED, validator.LastModified);
+
+        db.insertWithOnConflict(DbSpec.HttpValidatorEntry.TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    @Override
+    public void delete(String url) {
+        SQLiteDatabase db = _db.getWritableDatabase();
+
+        String whereClause = DbSpec.HttpValidatorEntry.COLUMN_NAME_URL + "=?";
+        String[] whereArgs = new String[] { url };
+
+        db.delete(DbSpec.HttpValidatorEntry.TABLE_NAME, whereClause, whereArgs);
+    }
+}
@@ -0,0 +1,18 @@
+package se.danielkonsult.www.kvadratab.repositories.httpvalidator;
+
+import se.danielkonsult.www.kvadratab.entities.HttpValidatorData;
+
+/**
+ * Reads and writes the HTTP cache validators (ETag and Last-Modified)
+ * that were last received for a URL.
+ */
+public interface HttpValidatorRepository {
+    HttpValidatorData getByUrl(String url);
+
+    /**
+     * Inserts or replaces the validators of a URL.
+     */
+    void save(HttpValidatorData validator);
+
+    void delete(String url);
+}
@@ -3,6 +3,7 @@ package se.danielkonsult.www.kvadratab.repositories.notification;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -11,6 +12,7 @@ import se.danielkonsult.www.kvadratab.entities.NotificationData;
 import se.danielkonsult.www.kvadratab.helpers.Utils;
 import se.danielkonsult.www.kvadratab.helpers.db.DbSpec;
 import se.danielkonsult.www.kvadratab.helpers.db.KvadratDb;
+import se.danielkonsult.www.kvadratab.helpers.db.RowMapper;
 import se.danielkonsult.www.kvadratab.services.notification.Notification;
 import se.danielkonsult.www.kvadratab.services.notification.NotificationDataConverter;
 
@@ -27,20 +29,50 @@ public class DefaultNotificationRepository implements NotificationRepository {
             DbSpec.NotificationEntry.COLUMN_NAME_TYPE,
             DbSpec.NotificationEntry.COLUMN_NAME_DATA
     };
-    private final String orderBy = DbSpec.NotificationEntry.COLUMN_NAME_TIMESTAMP + " DESC";
+    private final String orderBy = DbSpec.NotificationEntry.COLUMN_NAME_TIMESTAMP + " DESC," +
+            DbSpec.NotificationEntry.COLUMN_NAME_ID + " DESC";
+
+    /**
+     * Selects the notifications that come after a given one in the sort order. The first
+     * term lets the timestamp index be used for a range scan.
+     */
+    private final String beforeSelection = DbSpec.NotificationEntry.COLUMN_NAME_TIMESTAMP + " <= ? AND (" +
+            DbSpec.NotificationEntry.COLUMN_NAME_TIMESTAMP + " < ? OR " +
+            DbSpec.NotificationEntry.COLUMN_NAME_ID + " < ?)";
+
+    /**
+     * Reads NotificationData objects from a db cursor.
+     */
+    private final RowMapper<NotificationData> rowMapper = new RowMapper<NotificationData>(queryProjection) {
+        @Override
+        protected NotificationData map(Cursor c, int[] columns) {
+            NotificationData notification = new NotificationData();
+            notification.Id = c.getInt(columns[0]);
+            notification.Timestamp = c.getLong(columns[1]);
+            notification.Type = c.getString(columns[2]);
+            notification.Data = c.getString(columns[3]);
+
+            return notification;
+        }
+    };
 
     private KvadratDb _db;
 
     // Private methods
 
-    private NotificationData getFromCursor(Cursor c) {
-        NotificationData notification = new NotificationData();
-        notification.Id = c.getInt(c.getColumnIndex(DbSpec.NotificationEntry.COLUMN_NAME_ID));
-        notification.Timestamp = c.getLong(c.getColumnIndex(DbSpec.NotificationEntry.COLUMN_NAME_TIMESTAMP));
-        notification.Type = c.getString(c.getColumnIndex(DbSpec.NotificationEntry.COLUMN_NAME_TYPE));
-        notification.Data = c.getString(c.getColumnIndex(DbSpec.NotificationEntry.COLUMN_NAME_DATA));
+    /**
+     * Converts read notification data to notifications.
+     */
+    private static Notification[] toNotifications(List<NotificationData> notificationDatas) {
+        List<Notification> result = new ArrayList<>();
+        for (NotificationData nd : notificationDatas) {
+            // Skip notifications of unknown types
+            Notification notification = NotificationDataConverter.toNotification(nd);
+            if (notification != null)
+                result.add(notification);
+        }
 
-        return notification;
+        return result.toArray(new Notification[result.size()]);
     }
 
     // Constructor
@@ -49,21 +81,40 @@ public class DefaultNotificationRepository implements NotificationRepository {
         this._db = db;
     }
 
+    // Public methods
+
     @Override
-    public Notification[] getNotifications(int maxCount) {
+    public NotificationPage getNotifications(int pageSize, NotificationPage previous) {
+        String selection = null;
+        String[] selectionArgs = null;
+        if (previous != null) {
+            String timestamp = Long.toString(previous.LastTimestamp);
+            selection = beforeSelection;
+            selectionArgs = new String[] { timestamp, timestamp, Integer.toString(previous.LastRowId) };
+        }
 
-        // Read out the relevant NotificationData instances
-        List<Notification> result = new ArrayList<>();
         SQLiteDatabase db = _db.getReadableDatabase();
-        Cursor c = db.query(DbSpec.NotificationEntry.TABLE_NAME, queryProjection, null, null, null, null, orderBy);
-        while (c.moveToNext() && ((maxCount == 0) || (result.size() < maxCount))) {
-            NotificationData nd = getFromCursor(c);
-            Notification notification = NotificationDataConverter.toNotification(nd);
+        Cursor c = db.query(DbSpec.NotificationEntry.TABLE_NAME, queryProjection, selection, selectionArgs, null, null, orderBy,
+                Integer.toString(pageSize));
+        List<NotificationData> notificationDatas = rowMapper.readAll(c);
 
-            result.add(notification);
-        }
+        // Page on the rows that were read, since some of them may not become notifications
+        if (notificationDatas.isEmpty())
+            return new NotificationPage(new Notification[0], 0, 0, false);
 
-        return result.toArray(new Notification[result.size()]);
+        NotificationData last = notificationDatas.get(notificationDatas.size() - 1);
+        return new NotificationPage(toNotifications(notificationDatas), last.Timestamp, last.Id,
+                notificationDatas.size() == pageSize);
+    }
+
+    @Override
+    public Notification[] getNotificationsSince(long timestamp) {
+        SQLiteDatabase db = _db.getReadableDatabase();
+        Cursor c = db.query(DbSpec.NotificationEntry.TABLE_NAME, queryProjection,
+                DbSpec.NotificationEntry.COLUMN_NAME_TIMESTAMP + " >= ?", new String[] { Long.toString(timestamp) },
+                null, null, orderBy);
+
+        return toNotifications(rowMapper.readAll(c));
     }
 
     @Override
@@ -80,6 +131,58 @@ public class DefaultNotificationRepository implements NotificationRepository {
         db.insertOrThrow(DbSpec.NotificationEntry.TABLE_NAME, null, values);
     }
 
+    @Override
+    public void replace(Notification[] notifications, int[] deletedRowIds) {
+        SQLiteDatabase db = _db.getWritableDatabase();
+        SQLiteStatement updateStatement = db.compileStatement(DbSpec.NotificationEntry.SQL_UPDATE);
+        SQLiteStatement deleteStatement = db.compileStatement(DbSpec.NotificationEntry.SQL_DELETE);
+
+        db.beginTransactionNonExclusive();
+        try {
+            for (Notification notification : notifications) {
+                NotificationData nd = NotificationDataConverter.toNotificationData(notification);
+                updateStatement.bindLong(1, nd.Timestamp);
+                updateStatement.bindString(2, nd.Type);
+                updateStatement.bindString(3, nd.Data);
+                updateStatement.bindLong(4, notification.RowId);
+                updateStatement.executeUpdateDelete();
+            }
+            for (int rowId : deletedRowIds) {
+                deleteStatement.bindLong(1, rowId);
+                deleteStatement.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            updateStatement.close();
+            deleteStatement.close();
+        }
+    }
+
+    @Override
+    public int deleteOlderThan(long timestamp, int batchSize) {
+        String batch = String.format("SELECT %s FROM %s WHERE %s < ? LIMIT %d",
+                DbSpec.NotificationEntry.COLUMN_NAME_ID, DbSpec.NotificationEntry.TABLE_NAME,
+                DbSpec.NotificationEntry.COLUMN_NAME_TIMESTAMP, batchSize);
+
+        SQLiteDatabase db = _db.getWritableDatabase();
+        return db.delete(DbSpec.NotificationEntry.TABLE_NAME, DbSpec.NotificationEntry.COLUMN_NAME_ID + " IN (" + batch + ")",
+                new String[] { Long.toString(timestamp) });
+    }
+
+    @Override
+    public int deleteAllButNewest(String type, int keepCount, int batchSize) {
+        // Select the batch right after the ones to keep, in the same order as they are read
+        String where = (type == null) ? "" : String.format(" WHERE %s = ?", DbSpec.NotificationEntry.COLUMN_NAME_TYPE);
+        String batch = String.format("SELECT %s FROM %s%s ORDER BY %s LIMIT %d OFFSET %d",
+                DbSpec.NotificationEntry.COLUMN_NAME_ID, DbSpec.NotificationEntry.TABLE_NAME, where, orderBy,
+                batchSize, keepCount);
+
+        SQLiteDatabase db = _db.getWritableDatabase();
+        return db.delete(DbSpec.NotificationEntry.TABLE_NAME, DbSpec.NotificationEntry.COLUMN_NAME_ID + " IN (" + batch + ")",
+                (type == null) ? null : new String[] { type });
+    }
+
     @Override
     public void clear() {
         SQLiteDatabase db = _db.getWritableDatabase();
@@ -0,0 +1,35 @@
+package se.danielkonsult.www.kvadratab.repositories.notification;
+
+import se.danielkonsult.www.kvadratab.services.notification.Notification;
+
+/**
+ * A page of notifications, which also remembers where the reading stopped. Rows
+ * that can't be converted to notifications are left out of the page, but are
+ * still counted when paging so that the next page continues after them.
+ */
+public class NotificationPage {
+
+    // Constructor
+
+    public NotificationPage(Notification[] notifications, long lastTimestamp, int lastRowId, boolean hasMore) {
+        Notifications = notifications;
+        LastTimestamp = lastTimestamp;
+        LastRowId = lastRowId;
+        HasMore = hasMore;
+    }
+
+    // Fields
+
+    public final Notification[] Notifications;
+
+    /**
+     * The timestamp and row id of the last row that was read.
+     */
+    public final long LastTimestamp;
+    public final int LastRowId;
+
+    /**
+     * Whether a full page of rows was read, in which case there may be more.
+     */
+    public final boolean HasMore;
+}
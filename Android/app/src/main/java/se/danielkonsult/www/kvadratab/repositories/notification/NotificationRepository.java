@@ -9,10 +9,16 @@ import se.danielkonsult.www.kvadratab.services.notification.Notification;
 public interface NotificationRepository {
 
     /**
-     * Gets all or a specified maximum count of notification data entities from the database.
-     * @param maxCount The maximum number of notifications to return. 0 = return all.
+     * Gets a page of notifications, newest first.
+     * @param pageSize The maximum number of rows to read.
+     * @param previous The previous page, or null to get the first page.
      */
-    Notification[] getNotifications(int maxCount);
+    NotificationPage getNotifications(int pageSize, NotificationPage previous);
+
+    /**
+     * Gets the notifications from a point in time and onwards, newest first.
+     */
+    Notification[] getNotificationsSince(long timestamp);
 
     /**
      * Inserts a new notification in the database.
@@ -20,6 +26,25 @@ public interface NotificationRepository {
      */
     void insert(Notification notification);
 
+    /**
+     * Writes notifications over the rows of their row ids and deletes other rows, in one transaction.
+     */
+    void replace(Notification[] notifications, int[] deletedRowIds);
+
+    /**
+     * Deletes at most a batch of the notifications that are older than a timestamp.
+     * @return The number of deleted notifications.
+     */
+    int deleteOlderThan(long timestamp, int batchSize);
+
+    /**
+     * Deletes at most a batch of the notifications that come after the newest ones.
+     * @param type The type tag of the notifications, or null for all of them.
+     * @param keepCount The number of newest notifications to keep.
+     * @return The number of deleted notifications.
+     */
+    int deleteAllButNewest(String type, int keepCount, int batchSize);
+
     /**
      * Deletes all notifications.
      */
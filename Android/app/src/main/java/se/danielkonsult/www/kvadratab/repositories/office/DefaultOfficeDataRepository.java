@@ -3,15 +3,20 @@ package se.danielkonsult.www.kvadratab.repositories.office;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 import android.support.annotation.StringDef;
 
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import se.danielkonsult.www.kvadratab.entities.OfficeData;
+import se.danielkonsult.www.kvadratab.helpers.db.ConsultantSearchIndex;
+import se.danielkonsult.www.kvadratab.helpers.db.IdentityCache;
 import se.danielkonsult.www.kvadratab.helpers.db.KvadratDb;
 import se.danielkonsult.www.kvadratab.helpers.db.DbSpec;
+import se.danielkonsult.www.kvadratab.helpers.db.RowMapper;
 
 /**
  * Created by Daniel on 2016-09-11.
@@ -25,19 +30,37 @@ public class DefaultOfficeDataRepository implements OfficeDataRepository {
             DbSpec.OfficeEntry.COLUMN_NAME_NAME,
     };
 
+    /**
+     * Reads OfficeData objects from a db cursor.
+     */
+    private final RowMapper<OfficeData> rowMapper = new RowMapper<OfficeData>(queryProjection) {
+        @Override
+        protected OfficeData map(Cursor c, int[] columns) {
+            OfficeData oData = new OfficeData();
+            oData.Id = c.getInt(columns[0]);
+            oData.Name = c.getString(columns[1]);
+
+            return oData;
+        }
+    };
+
     private KvadratDb _db;
 
     // Private methods
 
     /**
-     * Reads an OfficeData object from a db cursor.
+     * Gets the office cache, loading it from the database the first time.
      */
-    private OfficeData getFromCursor(Cursor c) {
-        OfficeData oData = new OfficeData();
-        oData.Id = c.getInt(c.getColumnIndex(DbSpec.OfficeEntry.COLUMN_NAME_ID));
-        oData.Name = c.getString(c.getColumnIndex(DbSpec.OfficeEntry.COLUMN_NAME_NAME));
+    private IdentityCache<OfficeData> getCache() {
+        IdentityCache<OfficeData> cache = _db.getOfficeCache();
+        while (!cache.isLoaded()) {
+            int version = cache.getVersion();
+            SQLiteDatabase db = _db.getReadableDatabase();
+            Cursor c = db.query(DbSpec.OfficeEntry.TABLE_NAME, queryProjection, null, null, null, null, null);
+            cache.load(rowMapper.readAll(c), version);
+        }
 
-        return oData;
+        return cache;
     }
 
     // Constructor
@@ -50,29 +73,12 @@ public class DefaultOfficeDataRepository implements OfficeDataRepository {
 
     @Override
     public OfficeData getById(final int id) {
-        String selection = DbSpec.OfficeEntry.COLUMN_NAME_ID + " = ?";
-        String[] selectionArgs = {
-                Integer.toString(id)
-        };
-
-        SQLiteDatabase db = _db.getReadableDatabase();
-        Cursor c = db.query(DbSpec.OfficeEntry.TABLE_NAME, queryProjection, selection, selectionArgs, null, null, null, null);
-        if (c.moveToFirst()){
-            return getFromCursor(c);
-        }
-
-        return null;
+        return getCache().get(id);
     }
 
     @Override
     public OfficeData[] getAll() {
-        List<OfficeData> result = new ArrayList<>();
-
-        SQLiteDatabase db = _db.getReadableDatabase();
-        Cursor c = db.query(DbSpec.OfficeEntry.TABLE_NAME, queryProjection, null, null, null, null, null);
-        while (c.moveToNext()){
-            result.add(getFromCursor(c));
-        }
+        List<OfficeData> result = getCache().getAll();
 
         return result.toArray(new OfficeData[result.size()]);
     }
@@ -85,17 +91,33 @@ public class DefaultOfficeDataRepository implements OfficeDataRepository {
         values.put(DbSpec.OfficeEntry.COLUMN_NAME_NAME, office.Name);
 
         db.insertOrThrow(DbSpec.OfficeEntry.TABLE_NAME, null, values);
+        _db.getOfficeCache().put(new OfficeData(office.Id, office.Name));
     }
 
     @Override
     public void update(int officeId, String name) {
         SQLiteDatabase db = _db.getWritableDatabase();
-        ContentValues updatedValues = new ContentValues();
-        updatedValues.put(DbSpec.OfficeEntry.COLUMN_NAME_NAME, name);
+        ConsultantSearchIndex searchIndex = new ConsultantSearchIndex(db);
+
+        db.beginTransactionNonExclusive();
+        try {
+            ContentValues updatedValues = new ContentValues();
+            updatedValues.put(DbSpec.OfficeEntry.COLUMN_NAME_NAME, name);
+
+            String filter = String.format("%s = %d", DbSpec.OfficeEntry.COLUMN_NAME_ID, officeId);
 
-        String filter = String.format("%s = %d", DbSpec.OfficeEntry.COLUMN_NAME_ID, officeId);
+            db.update(DbSpec.OfficeEntry.TABLE_NAME, updatedValues, filter, null);
 
-        db.update(DbSpec.OfficeEntry.TABLE_NAME, updatedValues, filter, null);
+            // The consultants are searchable by office name
+            searchIndex.reindexOffice(officeId);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            searchIndex.close();
+        }
+
+        // Replace the cached office, since the old one is shared by its readers
+        _db.getOfficeCache().put(new OfficeData(officeId, name));
     }
 
     @Override
@@ -105,5 +127,44 @@ public class DefaultOfficeDataRepository implements OfficeDataRepository {
         String[] whereArgs = new String[] { Integer.toString(officeId) };
 
         db.delete(DbSpec.OfficeEntry.TABLE_NAME, whereClause, whereArgs);
+        _db.getOfficeCache().remove(officeId);
+    }
+
+    @Override
+    public Map<Integer, String> getListingFingerprints() {
+        Map<Integer, String> result = new HashMap<>();
+
+        // Read past the cache, the fingerprints are only needed once per refresh
+        SQLiteDatabase db = _db.getReadableDatabase();
+        String[] projection = { DbSpec.OfficeEntry.COLUMN_NAME_ID, DbSpec.OfficeEntry.COLUMN_NAME_LISTINGFINGERPRINT };
+        Cursor c = db.query(DbSpec.OfficeEntry.TABLE_NAME, projection,
+                DbSpec.OfficeEntry.COLUMN_NAME_LISTINGFINGERPRINT + " IS NOT NULL", null, null, null, null);
+        try {
+            while (c.moveToNext())
+                result.put(c.getInt(0), c.getString(1));
+        } finally {
+            c.close();
+        }
+
+        return result;
+    }
+
+    @Override
+    public void updateListingFingerprints(Map<Integer, String> fingerprintsByOfficeId) {
+        SQLiteDatabase db = _db.getWritableDatabase();
+        SQLiteStatement updateStatement = db.compileStatement(DbSpec.OfficeEntry.SQL_UPDATE_LISTINGFINGERPRINT);
+
+        db.beginTransactionNonExclusive();
+        try {
+            for (Map.Entry<Integer, String> entry : fingerprintsByOfficeId.entrySet()) {
+                updateStatement.bindString(1, entry.getValue());
+                updateStatement.bindLong(2, entry.getKey());
+                updateStatement.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            updateStatement.close();
+        }
     }
 }
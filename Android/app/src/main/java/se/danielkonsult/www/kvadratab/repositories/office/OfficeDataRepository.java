@@ -1,5 +1,7 @@
 package se.danielkonsult.www.kvadratab.repositories.office;
 
+import java.util.Map;
+
 import se.danielkonsult.www.kvadratab.entities.OfficeData;
 
 /**
@@ -22,4 +24,16 @@ public interface OfficeDataRepository {
      * Deletes an office by its id.
      */
     void delete(int officeId);
+
+    /**
+     * Gets the fingerprints of the consultant listings that were stored by the last
+     * refresh, keyed by office id. Offices without one are left out.
+     */
+    Map<Integer, String> getListingFingerprints();
+
+    /**
+     * Stores the fingerprints of the consultant listings of many offices, keyed by
+     * office id, in a single transaction.
+     */
+    void updateListingFingerprints(Map<Integer, String> fingerprintsByOfficeId);
 }
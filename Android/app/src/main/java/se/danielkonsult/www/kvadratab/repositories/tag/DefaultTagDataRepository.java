@@ -4,12 +4,13 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import se.danielkonsult.www.kvadratab.entities.TagData;
 import se.danielkonsult.www.kvadratab.helpers.db.DbSpec;
+import se.danielkonsult.www.kvadratab.helpers.db.IdentityCache;
 import se.danielkonsult.www.kvadratab.helpers.db.KvadratDb;
+import se.danielkonsult.www.kvadratab.helpers.db.RowMapper;
 
 /**
  * Created by Daniel on 2016-09-11.
@@ -23,8 +24,39 @@ public class DefaultTagDataRepository implements TagDataRepository {
             DbSpec.TagEntry.COLUMN_NAME_NAME,
     };
 
+    /**
+     * Reads TagData objects from a db cursor.
+     */
+    private final RowMapper<TagData> rowMapper = new RowMapper<TagData>(queryProjection) {
+        @Override
+        protected TagData map(Cursor c, int[] columns) {
+            TagData oData = new TagData();
+            oData.Id = c.getInt(columns[0]);
+            oData.Name = c.getString(columns[1]);
+
+            return oData;
+        }
+    };
+
     private KvadratDb _db;
 
+    // Private methods
+
+    /**
+     * Gets the tag cache, loading it from the database the first time.
+     */
+    private IdentityCache<TagData> getCache() {
+        IdentityCache<TagData> cache = _db.getTagCache();
+        while (!cache.isLoaded()) {
+            int version = cache.getVersion();
+            SQLiteDatabase db = _db.getReadableDatabase();
+            Cursor c = db.query(DbSpec.TagEntry.TABLE_NAME, queryProjection, null, null, null, null, null);
+            cache.load(rowMapper.readAll(c), version);
+        }
+
+        return cache;
+    }
+
     // Constructor
 
     public DefaultTagDataRepository(KvadratDb db) {
@@ -35,40 +67,12 @@ public class DefaultTagDataRepository implements TagDataRepository {
 
     @Override
     public TagData getById(int id) {
-        String selection = DbSpec.TagEntry.COLUMN_NAME_ID + " = ?";
-        String[] selectionArgs = {
-                Integer.toString(id)
-        };
-
-        SQLiteDatabase db = _db.getReadableDatabase();
-        Cursor c = db.query(DbSpec.TagEntry.TABLE_NAME, queryProjection, selection, selectionArgs, null, null, null, null);
-        if (c.moveToFirst()){
-            return getFromCursor(c);
-        }
-
-        return null;
-    }
-
-    /**
-     * Reads a TagData object from a db cursor.
-     */
-    private TagData getFromCursor(Cursor c) {
-        TagData oData = new TagData();
-        oData.Id = c.getInt(c.getColumnIndex(DbSpec.TagEntry.COLUMN_NAME_ID));
-        oData.Name = c.getString(c.getColumnIndex(DbSpec.TagEntry.COLUMN_NAME_NAME));
-
-        return oData;
+        return getCache().get(id);
     }
 
     @Override
     public TagData[] getAll() {
-        List<TagData> result = new ArrayList<>();
-
-        SQLiteDatabase db = _db.getReadableDatabase();
-        Cursor c = db.query(DbSpec.TagEntry.TABLE_NAME, queryProjection, null, null, null, null, null);
-        while (c.moveToNext()){
-            result.add(getFromCursor(c));
-        }
+        List<TagData> result = getCache().getAll();
 
         return result.toArray(new TagData[result.size()]);
     }
@@ -81,5 +85,10 @@ public class DefaultTagDataRepository implements TagDataRepository {
         values.put(DbSpec.TagEntry.COLUMN_NAME_NAME, tag.Name);
 
         db.insertOrThrow(DbSpec.TagEntry.TABLE_NAME, null, values);
+
+        TagData cached = new TagData();
+        cached.Id = tag.Id;
+        cached.Name = tag.Name;
+        _db.getTagCache().put(cached);
     }
 }
@@ -0,0 +1,206 @@
+package se.danielkonsult.www.kvadratab.services.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index from competence to the consultants that have it.
+ * Competences are compared case insensitively and looked up by prefix, so
+ * that a filter can be applied while the user is typing.
+ *
+ * The index is safe to use from several threads. Lookups may run at the same time,
+ * while an update has the index to itself.
+ */
+public class CompetenceIndex {
+
+    // Private variables
+
+    private static final Locale SWEDISH = new Locale("sv", "SE");
+
+    /**
+     * The consultants of each normalized competence, sorted to allow prefix lookups.
+     */
+    private final TreeMap<String, Entry> _entries = new TreeMap<>();
+
+    /**
+     * The normalized competences of each consultant, used when they are replaced.
+     */
+    private final HashMap<Integer, Set<String>> _consultantCompetences = new HashMap<>();
+
+    private final ReadWriteLock _lock = new ReentrantReadWriteLock();
+
+    // Constructor
+
+    /**
+     * Creates an index from the competences of each consultant, keyed by consultant id.
+     */
+    public CompetenceIndex(Map<Integer, String[]> competencesByConsultantId) {
+        for (Map.Entry<Integer, String[]> entry : competencesByConsultantId.entrySet())
+            add(entry.getKey(), entry.getValue());
+    }
+
+    // Private methods
+
+    /**
+     * Trims and lowercases a competence, returns null if nothing is left.
+     */
+    private static String normalize(String competence) {
+        if (competence == null)
+            return null;
+
+        String result = competence.trim().toLowerCase(SWEDISH);
+        return result.isEmpty() ? null : result;
+    }
+
+    /**
+     * Gets the entries of all competences that start with a prefix.
+     */
+    private Collection<Entry> getEntries(String prefix) {
+        return _entries.subMap(prefix, prefix + Character.MAX_VALUE).values();
+    }
+
+    /**
+     * Gets the ids of the consultants that have a competence starting with a normalized
+     * prefix. Must be called while holding the lock.
+     */
+    private Set<Integer> getConsultantIdsByKey(String key) {
+        Set<Integer> result = new HashSet<>();
+        for (Entry entry : getEntries(key))
+            result.addAll(entry.ConsultantIds);
+        return result;
+    }
+
+    private void add(int consultantId, String[] competences) {
+        if (competences == null)
+            return;
+
+        Set<String> keys = new HashSet<>();
+        for (String competence : competences) {
+            String key = normalize(competence);
+            if ((key == null) || !keys.add(key))
+                continue;
+
+            Entry entry = _entries.get(key);
+            if (entry == null) {
+                entry = new Entry(competence.trim());
+                _entries.put(key, entry);
+            }
+            entry.ConsultantIds.add(consultantId);
+        }
+        _consultantCompetences.put(consultantId, keys);
+    }
+
+    private void remove(int consultantId) {
+        Set<String> keys = _consultantCompetences.remove(consultantId);
+        if (keys == null)
+            return;
+
+        for (String key : keys) {
+            Entry entry = _entries.get(key);
+            entry.ConsultantIds.remove(consultantId);
+            if (entry.ConsultantIds.isEmpty())
+                _entries.remove(key);
+        }
+    }
+
+    // Public methods
+
+    /**
+     * Replaces the competences of a consultant, e.g. after its details have been refreshed.
+     */
+    public void update(int consultantId, String[] competences) {
+        _lock.writeLock().lock();
+        try {
+            remove(consultantId);
+            add(consultantId, competences);
+        } finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the ids of the consultants that have a competence starting with a prefix.
+     */
+    public Set<Integer> getConsultantIds(String prefix) {
+        String key = normalize(prefix);
+        if (key == null)
+            return new HashSet<>();
+
+        _lock.readLock().lock();
+        try {
+            return getConsultantIdsByKey(key);
+        } finally {
+            _lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the ids of the consultants that have all competences, each one matched
+     * by prefix. Returns null if no competences are given, meaning no constraint.
+     */
+    public Set<Integer> getConsultantIds(List<String> prefixes) {
+        Set<Integer> result = null;
+
+        // All competences are looked up in the same state of the index
+        _lock.readLock().lock();
+        try {
+            for (String prefix : prefixes) {
+                String key = normalize(prefix);
+                if (key == null)
+                    continue;
+
+                Set<Integer> ids = getConsultantIdsByKey(key);
+                if (result == null)
+                    result = ids;
+                else
+                    result.retainAll(ids);
+
+                // No need to look further if nobody is left
+                if (result.isEmpty())
+                    break;
+            }
+        } finally {
+            _lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Gets the competences that start with a prefix, in alphabetical order.
+     */
+    public String[] findCompetences(String prefix) {
+        String key = normalize(prefix);
+        List<String> result = new ArrayList<>();
+
+        _lock.readLock().lock();
+        try {
+            Collection<Entry> entries = (key == null) ? _entries.values() : getEntries(key);
+            for (Entry entry : entries)
+                result.add(entry.Name);
+        } finally {
+            _lock.readLock().unlock();
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    /**
+     * A competence as first seen, and the consultants that have it.
+     */
+    private static class Entry {
+        final String Name;
+        final Set<Integer> ConsultantIds = new HashSet<>();
+
+        Entry(String name) {
+            Name = name;
+        }
+    }
+}
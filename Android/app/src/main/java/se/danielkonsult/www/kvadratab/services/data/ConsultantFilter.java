@@ -12,6 +12,7 @@ public class ConsultantFilter {
 
     private List<Integer> _officeIds;
     private String _name = "";
+    private List<String> _competences = new ArrayList<>();
 
     // Constructor
 
@@ -24,6 +25,11 @@ public class ConsultantFilter {
         this._name = name;
     }
 
+    public ConsultantFilter(List<Integer> officeIds, String name, List<String> competences) {
+        this(officeIds, name);
+        this._competences = new ArrayList<>(competences);
+    }
+
     // Getters and setters
 
     public List<Integer> getOfficeIds() {
@@ -41,4 +47,18 @@ public class ConsultantFilter {
     public void setName(String name) {
         this._name = name;
     }
+
+    /**
+     * Gets the competences that consultants must have, each one matched by prefix.
+     */
+    public List<String> getCompetences() {
+        // Filters saved before competences existed have none
+        if (_competences == null)
+            _competences = new ArrayList<>();
+        return _competences;
+    }
+
+    public void setCompetences(List<String> competences) {
+        this._competences = competences;
+    }
 }
@@ -1,6 +1,5 @@
 package se.danielkonsult.www.kvadratab.services.data;
 
-import se.danielkonsult.www.kvadratab.entities.ConsultantData;
 import se.danielkonsult.www.kvadratab.entities.OfficeData;
 
 /**
@@ -21,12 +20,26 @@ public interface DataService {
      */
     OfficeData[] getOffices();
 
-    ConsultantData[] getAllConsultants();
+    /**
+     * Gets a list of all consultants, sorted by name.
+     */
+    LazyConsultantList getAllConsultants();
+
+    /**
+     * Gets a list of the consultants that match the current filter, sorted by name.
+     */
+    LazyConsultantList getFilteredConsultants();
+
+    /**
+     * Searches all consultants for any word of a free text, e.g. names, competences
+     * or office, and returns the hits with the best match first.
+     */
+    LazyConsultantList searchConsultants(String text);
 
     /**
-     * Gets a list of all consultants that is cached in the data service.
+     * Gets the known competences that start with a prefix, for use in a competence filter.
      */
-    ConsultantData[] getFilteredConsultants();
+    String[] findCompetences(String prefix);
 
     /**
      * Gets the data for a consultant, making sure that the details are included
@@ -1,7 +1,8 @@
 package se.danielkonsult.www.kvadratab.services.data;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 import se.danielkonsult.www.kvadratab.AppCtrl;
 import se.danielkonsult.www.kvadratab.entities.ConsultantData;
@@ -11,6 +12,7 @@ import se.danielkonsult.www.kvadratab.helpers.Constants;
 import se.danielkonsult.www.kvadratab.helpers.KvadratAppException;
 import se.danielkonsult.www.kvadratab.helpers.Utils;
 import se.danielkonsult.www.kvadratab.helpers.scraper.WebPageScraper;
+import se.danielkonsult.www.kvadratab.repositories.consultant.ConsultantMatcher;
 
 /**
  * Created by Daniel on 2016-09-14.
@@ -22,83 +24,172 @@ public class DefaultDataService implements DataService {
 
     // Private variables
 
-    private static ConsultantData[] _allConsultants;
-    private static ConsultantData[] _filteredConsultants;
-    private static ConsultantData[] _triedFilterConsultants;
+    private static LazyConsultantList _allConsultants;
+    private static LazyConsultantList _filteredConsultants;
+    private static LazyConsultantList _triedFilterConsultants;
 
     private ConsultantFilter _filter;
     private ConsultantFilter _triedFilter;
 
+    // The last filter that was applied and the ids that it selected
+    private ConsultantFilter _lastAppliedFilter;
+    private int[] _lastAppliedIds;
+
     private static OfficeData[] _offices;
+    private static final Object COMPETENCE_INDEX_LOCK = new Object();
+    private static CompetenceIndex _competenceIndex; // Guarded by COMPETENCE_INDEX_LOCK
     private DataServiceListener _listener;
 
     // Private methods
 
-    private void setFilteredConsultants(ConsultantData[] consultantDatas) {
+    private void saveFilter(ConsultantFilter filter) {
+        _filter = filter;
+        // Save to prefs as well
+        AppCtrl.getPrefsService().setConsultantFilter(_filter);
+    }
+
+    private void setFilteredConsultants(LazyConsultantList consultantDatas) {
         _filteredConsultants = consultantDatas;
         if (_listener != null)
             _listener.onFilteredConsultantsUpdated();
     }
 
     /**
-     * Tries a filter on all consultants and returns the ones that match.
+     * Gets the competence index, building it from the database the first time.
+     */
+    private static CompetenceIndex getCompetenceIndex() {
+        synchronized (COMPETENCE_INDEX_LOCK) {
+            if (_competenceIndex == null)
+                _competenceIndex = new CompetenceIndex(AppCtrl.getDb().getConsultantCompetenceRepository().getAll());
+            return _competenceIndex;
+        }
+    }
+
+    /**
+     * Updates the competences of a consultant in the index, unless it hasn't been built
+     * yet. It then reads the stored competences when it is built.
+     */
+    private static void updateCompetenceIndex(int consultantId, String[] competences) {
+        synchronized (COMPETENCE_INDEX_LOCK) {
+            if (_competenceIndex != null)
+                _competenceIndex.update(consultantId, competences);
+        }
+    }
+
+    /**
+     * Creates a list of consultants with the given ids.
+     */
+    private static LazyConsultantList createList(int[] ids) {
+        return new LazyConsultantList(AppCtrl.getDb().getConsultantDataRepository(), ids,
+                Constants.CONSULTANT_LIST_PAGE_SIZE, Constants.CONSULTANT_LIST_CACHED_PAGES, Constants.CONSULTANT_LIST_PREFETCH_MARGIN);
+    }
+
+    /**
+     * Returns true if a filter can only select consultants that the previous one
+     * selected as well, which is when the name has only been typed further. Competences
+     * are added to the index as details are read, so filters on them never narrow.
+     */
+    private static boolean isNarrowing(ConsultantFilter filter, ConsultantFilter previous) {
+        return filter.getCompetences().isEmpty() && previous.getCompetences().isEmpty() &&
+                new HashSet<>(filter.getOfficeIds()).equals(new HashSet<>(previous.getOfficeIds())) &&
+                filter.getName().toLowerCase().startsWith(previous.getName().toLowerCase());
+    }
+
+    /**
+     * Gets the ids of the consultants among the given ones that match, in the same order.
      */
-    private ConsultantData[] applyFilter(ConsultantFilter filter) {
-        List<ConsultantData> result = new ArrayList<>();
+    private static int[] matchIds(int[] ids, ConsultantMatcher matcher) {
+        int[] result = new int[ids.length];
+        int count = 0;
+        for (ConsultantData cd : AppCtrl.getDb().getConsultantDataRepository().getListItems(ids)) {
+            if ((cd != null) && matcher.matches(cd))
+                result[count++] = cd.Id;
+        }
 
-        // Is the filter empty? Then copy all consultants and exit the function
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Tries a filter on all consultants and returns the ones that match. A filter that
+     * narrows the last one is only tried on the consultants that the last one selected.
+     */
+    private LazyConsultantList applyFilter(ConsultantFilter filter) {
+        // Is the filter empty? Then use all consultants and exit the function
         if (Utils.isStringNullOrEmpty(filter.getName().trim()) &&
-                filter.getOfficeIds().size() == 0) {
-            for (ConsultantData cd: getAllConsultants())
-                result.add(cd);
-            return result.toArray(new ConsultantData[result.size()]);
+                filter.getOfficeIds().size() == 0 &&
+                filter.getCompetences().size() == 0) {
+            return getAllConsultants();
         }
 
-        String namePiece1 = "";
-        String namePiece2 = "";
-        boolean shouldFilterByName = false;
-        // Is there any name filter? Then split it into first and last name
-        if (!Utils.isStringNullOrEmpty(filter.getName().trim())){
-            shouldFilterByName = true;
-            int spaceIndex = filter.getName().indexOf(" ");
-            if (spaceIndex < 0)
-                namePiece1 = filter.getName().toLowerCase().trim();
-            else {
-                namePiece1 = filter.getName().toLowerCase().substring(0,spaceIndex).trim();
-                namePiece2 = filter.getName().toLowerCase().substring(spaceIndex).trim();
+        // The consultants that have all the competences of the filter, null if there is no such constraint
+        Set<Integer> competenceIds = null;
+        if (filter.getCompetences().size() > 0)
+            competenceIds = getCompetenceIndex().getConsultantIds(filter.getCompetences());
+
+        FilterMatcher matcher = new FilterMatcher(filter, competenceIds);
+        int[] ids = ((_lastAppliedFilter != null) && isNarrowing(filter, _lastAppliedFilter)) ?
+                matchIds(_lastAppliedIds, matcher) :
+                AppCtrl.getDb().getConsultantDataRepository().getSortedIds(matcher);
+
+        // Copied, since the caller may change the filter afterwards
+        _lastAppliedFilter = new ConsultantFilter(filter.getOfficeIds(), filter.getName(), filter.getCompetences());
+        _lastAppliedIds = ids;
+
+        return createList(ids);
+    }
+
+    /**
+     * Selects the consultants that match a filter.
+     */
+    private static class FilterMatcher implements ConsultantMatcher {
+
+        private final ConsultantFilter _filter;
+        private final Set<Integer> _competenceIds;
+        private String _namePiece1 = "";
+        private String _namePiece2 = "";
+        private boolean _shouldFilterByName = false;
+
+        FilterMatcher(ConsultantFilter filter, Set<Integer> competenceIds) {
+            _filter = filter;
+            _competenceIds = competenceIds;
+
+            // Is there any name filter? Then split it into first and last name
+            if (!Utils.isStringNullOrEmpty(filter.getName().trim())){
+                _shouldFilterByName = true;
+                int spaceIndex = filter.getName().indexOf(" ");
+                if (spaceIndex < 0)
+                    _namePiece1 = filter.getName().toLowerCase().trim();
+                else {
+                    _namePiece1 = filter.getName().toLowerCase().substring(0,spaceIndex).trim();
+                    _namePiece2 = filter.getName().toLowerCase().substring(spaceIndex).trim();
+                }
             }
         }
 
-        for (ConsultantData cd : getAllConsultants()) {
-            boolean isSelected = true;
+        @Override
+        public boolean matches(ConsultantData cd) {
+            // Does the consultant have the competences?
+            if ((_competenceIds != null) && !_competenceIds.contains(cd.Id))
+                return false;
 
             // Are there any specific offices in the filter?
-            if (filter.getOfficeIds().size() > 0){
-                if (!filter.getOfficeIds().contains(cd.OfficeId))
-                    isSelected = false;
+            if (_filter.getOfficeIds().size() > 0){
+                if (!_filter.getOfficeIds().contains(cd.OfficeId))
+                    return false;
             }
-            // Should we filter by name?
-            if (isSelected && shouldFilterByName) {
-                isSelected = false;
 
+            // Should we filter by name?
+            if (_shouldFilterByName) {
                 // Is there only one name piece?
-                if (Utils.isStringNullOrEmpty(namePiece2) &&
-                        (cd.FirstName.toLowerCase().startsWith(namePiece1) || cd.LastName.toLowerCase().startsWith(namePiece1))){
-                    isSelected = true;
-                }
+                if (Utils.isStringNullOrEmpty(_namePiece2))
+                    return cd.FirstName.toLowerCase().startsWith(_namePiece1) || cd.LastName.toLowerCase().startsWith(_namePiece1);
+
                 // Filter by both first and last name
-                else if (!Utils.isStringNullOrEmpty(namePiece2) &&
-                        cd.FirstName.toLowerCase().startsWith(namePiece1) && cd.LastName.toLowerCase().startsWith(namePiece2)) {
-                    isSelected = true;
-                }
+                return cd.FirstName.toLowerCase().startsWith(_namePiece1) && cd.LastName.toLowerCase().startsWith(_namePiece2);
             }
 
-            // Is the consultant still selected?
-            if (isSelected)
-                result.add(cd);
+            return true;
         }
-
-        return result.toArray(new ConsultantData[result.size()]);
     }
 
     @Override
@@ -109,7 +200,13 @@ public class DefaultDataService implements DataService {
     @Override
     public void reset() {
         _allConsultants = null;
+        _filteredConsultants = null;
+        _lastAppliedFilter = null;
+        _lastAppliedIds = null;
         _offices = null;
+        synchronized (COMPETENCE_INDEX_LOCK) {
+            _competenceIndex = null;
+        }
     }
 
     @Override
@@ -120,20 +217,30 @@ public class DefaultDataService implements DataService {
     }
 
     @Override
-    public ConsultantData[] getAllConsultants() {
+    public LazyConsultantList getAllConsultants() {
         if (_allConsultants == null)
-            _allConsultants = AppCtrl.getDb().getConsultantDataRepository().getAll(true);
+            _allConsultants = createList(AppCtrl.getDb().getConsultantDataRepository().getSortedIds(null));
         return _allConsultants;
     }
 
     @Override
-    public ConsultantData[] getFilteredConsultants() {
+    public LazyConsultantList getFilteredConsultants() {
         if (_filteredConsultants == null)
             _filteredConsultants = applyFilter(getFilter());
 
         return _filteredConsultants;
     }
 
+    @Override
+    public LazyConsultantList searchConsultants(String text) {
+        return createList(AppCtrl.getDb().getConsultantDataRepository().search(text));
+    }
+
+    @Override
+    public String[] findCompetences(String prefix) {
+        return getCompetenceIndex().findCompetences(prefix);
+    }
+
     @Override
     public void getConsultantDetails(int consultantId, ConsultantDataListener listener) {
         // Get the consultant
@@ -145,14 +252,30 @@ public class DefaultDataService implements DataService {
             // Are the details missing or are they too old?
             long detailsAgeHours = (System.currentTimeMillis() - consultant.DetailsTimstamp) / (1000 * 3600);
             if (detailsAgeHours > Constants.CONSULTANT_DETAILS_EXPIRY_HOURS) {
-                // Time to reload the details
-                ConsultantDetails details = AppCtrl.getWebPageScraper().scrapeConsultantDetails(consultantId);
-                AppCtrl.getDb().getConsultantDataRepository().updateDetails(consultantId, details);
-
-                // Transfer the data to the consultant
-                consultant.CompetenceAreas = details.CompetenceAreas;
-                consultant.Description = details.Description;
-                consultant.Overview = details.Overview;
+                // Time to reload the details. If they have been loaded before, only download
+                // them again if the page has changed.
+                boolean hasDetails = consultant.DetailsTimstamp > 0;
+                ConsultantDetails details = hasDetails ?
+                        AppCtrl.getWebPageScraper().scrapeConsultantDetailsIfModified(consultantId) :
+                        AppCtrl.getWebPageScraper().scrapeConsultantDetails(consultantId);
+
+                if (details == null) {
+                    // Unchanged, the stored details are still valid
+                    AppCtrl.getDb().getConsultantDataRepository().updateDetailsTimestamp(consultantId);
+                }
+                else {
+                    boolean changed = AppCtrl.getDb().getConsultantDataRepository().updateDetails(consultantId, details);
+                    if (changed)
+                        updateCompetenceIndex(consultantId, details.CompetenceAreas);
+
+                    // The page is only treated as unchanged once the details are stored
+                    AppCtrl.getWebPageScraper().saveValidator(details.Validator);
+
+                    // Transfer the data to the consultant
+                    consultant.CompetenceAreas = details.CompetenceAreas;
+                    consultant.Description = details.Description;
+                    consultant.Overview = details.Overview;
+                }
             }
 
             listener.onResult(consultant);
@@ -166,13 +289,13 @@ public class DefaultDataService implements DataService {
     public int tryFilter(ConsultantFilter filter) {
         _triedFilter = filter;
         _triedFilterConsultants = applyFilter(filter);
-        return _triedFilterConsultants.length;
+        return _triedFilterConsultants.size();
     }
 
     @Override
     public void useTriedFilter() {
         if (_triedFilterConsultants != null){
-            setFilter(_triedFilter);
+            saveFilter(_triedFilter);
             setFilteredConsultants(_triedFilterConsultants);
 
             _triedFilterConsultants = null;
@@ -181,10 +304,8 @@ public class DefaultDataService implements DataService {
 
     @Override
     public void setFilter(ConsultantFilter filter) {
-        _filter = filter;
-        applyFilter(_filter);
-        // Save to prefs as well
-        AppCtrl.getPrefsService().setConsultantFilter(_filter);
+        saveFilter(filter);
+        setFilteredConsultants(applyFilter(filter));
     }
 
     @Override
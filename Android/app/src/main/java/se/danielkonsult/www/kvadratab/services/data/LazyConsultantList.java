@@ -0,0 +1,184 @@
+package se.danielkonsult.www.kvadratab.services.data;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import se.danielkonsult.www.kvadratab.entities.ConsultantData;
+import se.danielkonsult.www.kvadratab.repositories.consultant.ConsultantDataRepository;
+
+/**
+ * A sorted or filtered list of consultants that only holds their ids. The consultants
+ * are read from the database a page at a time when they are first accessed, and
+ * only the most recently used pages are kept, so that the memory used stays the
+ * same however many consultants there are.
+ *
+ * The consultants only have the id, names and office set, and a consultant that
+ * has been deleted since the list was created is returned as null. All pages are read
+ * on a background thread, so get() never waits for the database. A position whose page
+ * hasn't been read yet is returned as null as well, and the listener is told when the
+ * page is in. Neighbouring pages are read ahead.
+ */
+public class LazyConsultantList {
+
+    // Private variables
+
+    // Shared by all lists, one page is read at a time
+    private static final ExecutorService PAGE_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final ConsultantDataRepository _repository;
+    private final int[] _ids;
+    private final int _pageSize;
+    private final int _prefetchMargin;
+    private final Map<Integer, ConsultantData[]> _pages;
+    private final Set<Integer> _loadingPages = new HashSet<>();
+    private final Set<Integer> _waitingPages = new HashSet<>();
+    private volatile Listener _listener;
+
+    // Public listener interface
+
+    public interface Listener {
+        /**
+         * Called on a background thread when a page that a position was asked for
+         * has been read.
+         */
+        void onPageLoaded();
+    }
+
+    // Constructor
+
+    public LazyConsultantList(ConsultantDataRepository repository, int[] ids, int pageSize, int cachedPageCount, int prefetchMargin) {
+        _repository = repository;
+        _ids = ids;
+        _pageSize = pageSize;
+        _prefetchMargin = prefetchMargin;
+
+        // The least recently used page is dropped when there are too many
+        final int maxPageCount = cachedPageCount;
+        _pages = new LinkedHashMap<Integer, ConsultantData[]>(maxPageCount + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, ConsultantData[]> eldest) {
+                return size() > maxPageCount;
+            }
+        };
+    }
+
+    // Private methods
+
+    private ConsultantData[] readPage(int pageIndex) {
+        int start = pageIndex * _pageSize;
+        int end = Math.min(start + _pageSize, _ids.length);
+        return _repository.getListItems(Arrays.copyOfRange(_ids, start, end));
+    }
+
+    /**
+     * Reads a page in the background unless it's already cached or being read. Must
+     * be called while holding the lock.
+     */
+    private void load(final int pageIndex) {
+        if (_pages.containsKey(pageIndex) || !_loadingPages.add(pageIndex))
+            return;
+
+        PAGE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                ConsultantData[] page = readPage(pageIndex);
+                boolean wasWaitedFor;
+                synchronized (LazyConsultantList.this) {
+                    _loadingPages.remove(pageIndex);
+                    if (!_pages.containsKey(pageIndex))
+                        _pages.put(pageIndex, page);
+                    wasWaitedFor = _waitingPages.remove(pageIndex);
+                }
+
+                Listener listener = _listener;
+                if (wasWaitedFor && (listener != null))
+                    listener.onPageLoaded();
+            }
+        });
+    }
+
+    /**
+     * Reads ahead the neighbouring page when the position is close to it, so that
+     * scrolling doesn't stop at each page. Must be called while holding the lock.
+     */
+    private void loadNeighbour(int pageIndex, int offset) {
+        if ((offset >= _pageSize - _prefetchMargin) && ((pageIndex + 1) * _pageSize < _ids.length))
+            load(pageIndex + 1);
+        else if ((offset < _prefetchMargin) && (pageIndex > 0))
+            load(pageIndex - 1);
+    }
+
+    // Public methods
+
+    public int size() {
+        return _ids.length;
+    }
+
+    public int getId(int position) {
+        return _ids[position];
+    }
+
+    public void setListener(Listener listener) {
+        _listener = listener;
+    }
+
+    /**
+     * Returns true if the page of a position has been read, so that get() returns
+     * the consultant rather than a placeholder.
+     */
+    public synchronized boolean isLoaded(int position) {
+        return _pages.containsKey(position / _pageSize);
+    }
+
+    /**
+     * Gets the consultant at a position without waiting for the database. Returns null
+     * if the page hasn't been read yet, in which case it's read in the background and
+     * the listener is told when it's in.
+     */
+    public synchronized ConsultantData get(int position) {
+        int pageIndex = position / _pageSize;
+        int offset = position % _pageSize;
+
+        loadNeighbour(pageIndex, offset);
+
+        ConsultantData[] page = _pages.get(pageIndex);
+        if (page == null) {
+            _waitingPages.add(pageIndex);
+            load(pageIndex);
+            return null;
+        }
+
+        return page[offset];
+    }
+
+    /**
+     * Gets the consultant at a position, reading its page on the calling thread if
+     * needed. Must not be called on the UI thread.
+     */
+    public ConsultantData read(int position) {
+        int pageIndex = position / _pageSize;
+        int offset = position % _pageSize;
+
+        ConsultantData[] page;
+        synchronized (this) {
+            page = _pages.get(pageIndex);
+            loadNeighbour(pageIndex, offset);
+        }
+
+        // The page is read without holding the lock, so that it and a page that is
+        // being read ahead don't have to wait for each other
+        if (page == null) {
+            page = readPage(pageIndex);
+            synchronized (this) {
+                _pages.put(pageIndex, page);
+            }
+        }
+
+        return page[offset];
+    }
+}
@@ -8,12 +8,11 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 
 import se.danielkonsult.www.kvadratab.AppCtrl;
+import se.danielkonsult.www.kvadratab.helpers.http.WebRequest;
+import se.danielkonsult.www.kvadratab.helpers.http.WebResponse;
 
 /**
  * Downloads images from the Kvadrat home page.
@@ -24,8 +23,6 @@ public class DefaultImageService implements ImageService {
     private static final String CONSULTANT_FILENAME_PREFIX = "img_consultant_";
     private static final int BITMAP_TARGET_SIZE = 600;
 
-    private static final int STD_TIMEOUT = 10000;
-    private static final String USER_AGENT = "KvadratApp/1.0";
     private static final String ACCEPT = "image/*";
 
     /**
@@ -35,22 +32,6 @@ public class DefaultImageService implements ImageService {
         return CONSULTANT_FILENAME_PREFIX + Integer.toString(id);
     }
 
-    /**
-     * Converts an input stream to a byte array.
-     */
-    private byte[] getByteArrayFromStream(InputStream is) throws IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        int nRead;
-        byte[] data = new byte[16384];
-
-        while ((nRead = is.read(data, 0, data.length)) != -1) {
-            buffer.write(data, 0, nRead);
-        }
-        buffer.flush();
-
-        return buffer.toByteArray();
-    }
-
     /**
      * Saves a byte array to file in the application's private directory
      */
@@ -85,31 +66,15 @@ public class DefaultImageService implements ImageService {
      */
     @Override
     public Bitmap downloadConsultantBitmap(int id) throws IOException {
-        HttpURLConnection httpCon = null;
-        InputStream is = null;
+        WebResponse response = AppCtrl.getWebClient().execute(new WebRequest(String.format(CONSULTANT_IMAGE_URL_TEMPLATE, id), ACCEPT));
         try {
-            URL url = new URL(String.format(CONSULTANT_IMAGE_URL_TEMPLATE, id));
-            httpCon = (HttpURLConnection) url.openConnection();
-            httpCon.setConnectTimeout(STD_TIMEOUT);
-            httpCon.setRequestProperty("User-Agent", USER_AGENT);
-            httpCon.setRequestProperty("Accept", ACCEPT);
-
-            is = httpCon.getInputStream();
-
             // Get the bytes and convert it to a bitmap
-            byte[] bytes = getByteArrayFromStream(is);
+            byte[] bytes = response.readBytes();
             Bitmap bitmap = BitmapFactory.decodeByteArray(bytes,0, bytes.length);
 
             return getScaledDownBitmap(bitmap, BITMAP_TARGET_SIZE);
         } finally {
-            try {
-                if (httpCon != null)
-                    httpCon.disconnect();
-                if (is != null)
-                    is.close();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+            response.close();
         }
     }
 
@@ -132,6 +97,12 @@ public class DefaultImageService implements ImageService {
         return bitmap;
     }
 
+    @Override
+    public void deleteConsultantBitmapFile(int id) {
+        File imgFile = new File(AppCtrl.getApplicationContext().getFilesDir(), getFileNameFromId(id));
+        imgFile.delete();
+    }
+
     /*
     Deletes all consultant images that can be found in the application directory,
     based on the file's prefix.
@@ -14,6 +14,11 @@ public interface ImageService {
 
     Bitmap getConsultantBitmapFromFile(int id);
 
+    /**
+     * Deletes the image file of a single consultant, if there is one.
+     */
+    void deleteConsultantBitmapFile(int id);
+
     /*
         Deletes all consultant images that can be found in the application directory,
         based on the file's prefix.
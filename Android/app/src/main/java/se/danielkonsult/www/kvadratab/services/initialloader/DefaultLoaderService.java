@@ -1,14 +1,25 @@
 package se.danielkonsult.www.kvadratab.services.initialloader;
 
-import android.graphics.Bitmap;
-
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import se.danielkonsult.www.kvadratab.AppCtrl;
 import se.danielkonsult.www.kvadratab.entities.ConsultantData;
 import se.danielkonsult.www.kvadratab.entities.OfficeData;
 import se.danielkonsult.www.kvadratab.entities.TagData;
+import se.danielkonsult.www.kvadratab.helpers.Constants;
+import se.danielkonsult.www.kvadratab.helpers.KvadratAppException;
 import se.danielkonsult.www.kvadratab.helpers.db.KvadratDb;
+import se.danielkonsult.www.kvadratab.helpers.scraper.ConsultantScrapeListener;
+import se.danielkonsult.www.kvadratab.helpers.scraper.WebPageScraper;
 import se.danielkonsult.www.kvadratab.entities.SummaryData;
 import se.danielkonsult.www.kvadratab.services.notification.ErrorNotification;
 import se.danielkonsult.www.kvadratab.services.notification.InfoNotification;
@@ -39,15 +50,41 @@ public class DefaultLoaderService implements LoaderService {
     }
 
     /**
-     * Links offices and consultants together by loading one office at a time
-     * and update the office id of the returned consultants.
+     * Starts scraping the consultant listings of all offices in parallel. The
+     * futures are returned in the same order as the offices.
      */
-    private void linkOfficesToConsultants(OfficeData[] offices) throws IOException {
-        for (OfficeData od: offices){
-            ConsultantData[] consultants = AppCtrl.getWebPageScraper().scrapeConsultants(od.Id, 0);
-            for (ConsultantData cd : consultants){
-                AppCtrl.getDb().getConsultantDataRepository().updateOffice(cd.Id, od.Id);
-            }
+    private List<Future<List<ConsultantData>>> scrapeOfficeConsultants(ExecutorService executor, OfficeData[] offices) {
+        final WebPageScraper scraper = AppCtrl.getWebPageScraper();
+        List<Future<List<ConsultantData>>> futures = new ArrayList<>();
+
+        for (final OfficeData od : offices) {
+            futures.add(executor.submit(new Callable<List<ConsultantData>>() {
+                @Override
+                public List<ConsultantData> call() throws Exception {
+                    final List<ConsultantData> result = new ArrayList<>();
+                    scraper.scrapeConsultants(od.Id, 0, new ConsultantScrapeListener() {
+                        @Override
+                        public void onConsultantScraped(ConsultantData cd) {
+                            cd.OfficeId = od.Id;
+                            result.add(cd);
+                        }
+                    });
+                    return result;
+                }
+            }));
+        }
+
+        return futures;
+    }
+
+    /**
+     * Waits for the consultants of an office to be scraped and unwraps any failure.
+     */
+    private static List<ConsultantData> getOfficeConsultants(Future<List<ConsultantData>> future, OfficeData office) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new KvadratAppException(String.format("Kunde inte läsa konsulter för kontor %s!", office.Name), e.getCause());
         }
     }
 
@@ -87,10 +124,10 @@ public class DefaultLoaderService implements LoaderService {
         Thread thread = new Thread(new Runnable() {
             @Override
             public void run() {
-                KvadratDb db = AppCtrl.getDb();
+                final KvadratDb db = AppCtrl.getDb();
 
                 try {
-                    boolean isTest = AppCtrl.getPrefsService().getTestMode();
+                    final boolean isTest = AppCtrl.getPrefsService().getTestMode();
 
                     // Notify listeners that the initial load has started
                     listener.onInitialLoadStarted();
@@ -99,44 +136,74 @@ public class DefaultLoaderService implements LoaderService {
                     // go rather fast
                     SummaryData summaryData = loadSummaryData();
 
-                    int progress = 0;
-                    // Scrape the web page for all consultants and loop them
-                    ConsultantData[] consultants = AppCtrl.getWebPageScraper().scrapeConsultants(0,0);
-                    listener.onInitialLoadProgress(progress, consultants.length);
-                    for (ConsultantData cd : consultants){
-                        if (isTest) {
-                            if (cd.Id == 6985) {
-                                // Skip consultant 6985 (Daniel Persson) and add a fake one that will
-                                // be deleted during the next refresh
-                                ConsultantData fake = new ConsultantData(3333, "Teste", "Testsson", 17);
-                                fake.CompetenceAreas = new String[] { "Frontend", "Mellanend", "Backend" };
-                                db.getConsultantDataRepository().insert(fake);
-
-                                continue;
+                    // Scrape the consultants of all offices in parallel and save them to the database
+                    // in office order with the office already set, one transaction per office. Each saved
+                    // consultant is handed to the pipeline that downloads and saves its image, and
+                    // notifies the listener. The listings are all read before the pipeline is fed, so
+                    // that the progress can be reported against the total from the start.
+                    final Set<Integer> insertedIds = new HashSet<>();
+                    ExecutorService executor = Executors.newFixedThreadPool(Constants.LOADER_PARALLELISM);
+                    LoaderPipeline pipeline = new LoaderPipeline(listener, AppCtrl.getImageService(),
+                            Constants.LOADER_IMAGE_FETCH_THREADS, Constants.LOADER_IMAGE_STORE_THREADS);
+                    try {
+                        List<Future<List<ConsultantData>>> futures = scrapeOfficeConsultants(executor, summaryData.OfficeDatas);
+                        List<List<ConsultantData>> officeConsultantLists = new ArrayList<>();
+                        List<List<ConsultantData>> batches = new ArrayList<>();
+                        int totalCount = 0;
+                        for (int i = 0; i < summaryData.OfficeDatas.length; i++) {
+                            List<ConsultantData> officeConsultants = new ArrayList<>();
+                            List<ConsultantData> batch = new ArrayList<>();
+
+                            for (ConsultantData cd : getOfficeConsultants(futures.get(i), summaryData.OfficeDatas[i])) {
+                                // A consultant listed at several offices belongs to the first one
+                                if (!insertedIds.add(cd.Id))
+                                    continue;
+
+                                if (isTest) {
+                                    if (cd.Id == 6985) {
+                                        // Skip consultant 6985 (Daniel Persson) and add a fake one that will
+                                        // be deleted during the next refresh
+                                        ConsultantData fake = new ConsultantData(3333, "Teste", "Testsson", 17);
+                                        fake.CompetenceAreas = new String[] { "Frontend", "Mellanend", "Backend" };
+                                        batch.add(fake);
+
+                                        continue;
+                                    }
+                                    else if (cd.Id == 7565){
+                                        // Change last name of Roland Heimdahl
+                                        cd.LastName = "von Heimdahl";
+                                    }
+                                }
+
+                                officeConsultants.add(cd);
+                                batch.add(cd);
                             }
-                            else if (cd.Id == 7565){
-                                // Change last name of Roland Heimdahl
-                                cd.LastName = "von Heimdahl";
-                            }
-                        }
 
-                        // Save the consultant to database
-                        db.getConsultantDataRepository().insert(cd);
-                        // Load the consultant image and save it to disk
-                        Bitmap bitmap = AppCtrl.getImageService().downloadConsultantBitmap(cd.Id);
-                        AppCtrl.getImageService().saveConsultantBitmapToFile(cd.Id, bitmap);
-
-                        // Notify listeners of this new glorious consultant
-                        listener.onConsultantAdded(cd, bitmap);
+                            officeConsultantLists.add(officeConsultants);
+                            batches.add(batch);
+                            totalCount += officeConsultants.size();
+                        }
+                        pipeline.setTotalCount(totalCount);
+
+                        for (int i = 0; i < batches.size(); i++) {
+                            // Save the consultants of the office to database
+                            List<ConsultantData> batch = batches.get(i);
+                            db.getConsultantDataRepository().insertAll(batch.toArray(new ConsultantData[batch.size()]));
+                            for (ConsultantData cd : officeConsultantLists.get(i))
+                                pipeline.add(cd);
+                        }
 
-                        progress++;
-                        listener.onInitialLoadProgress(progress, consultants.length);
+                        // Wait for the remaining images and progress
+                        pipeline.finish();
+                    } finally {
+                        executor.shutdownNow();
+                        pipeline.shutdown();
                     }
 
-                    linkOfficesToConsultants(summaryData.OfficeDatas);
-
-                    // Indicate that a complete initial load has been performed
+                    // Indicate that a complete initial load has been performed, after which the
+                    // summary page only has to be compared again if it changes
                     AppCtrl.getPrefsService().setHasInitialLoadingBeenPerformed(true);
+                    AppCtrl.getWebPageScraper().saveValidator(summaryData.Validator);
 
                     // Create a notification about this
                     AppCtrl.getNotificationService().add(new InfoNotification("Första inladdning av konsulter avslutad"), false);
@@ -0,0 +1,282 @@
+package se.danielkonsult.www.kvadratab.services.initialloader;
+
+import android.graphics.Bitmap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import se.danielkonsult.www.kvadratab.entities.ConsultantData;
+import se.danielkonsult.www.kvadratab.helpers.Constants;
+import se.danielkonsult.www.kvadratab.services.image.ImageService;
+
+/**
+ * The image part of the initial load, run as stages connected by bounded queues.
+ * Consultants are added in the order they were saved to the database, their images
+ * are downloaded and decoded by one pool of threads and encoded and saved by another,
+ * and the listener is notified in the original order by a single thread, which is
+ * the listener's only thread while the pipeline runs. At most
+ * Constants.LOADER_PIPELINE_WINDOW consultants are in the pipeline at the same time,
+ * which also limits the number of bitmaps held in memory.
+ */
+class LoaderPipeline {
+
+    // Private variables
+
+    // Markers that are passed through the queues
+    private static final Item END = new Item(-1, null);
+    private static final Item TOTAL_KNOWN = new Item(-2, null);
+    private static final long POLL_INTERVAL_MS = 200;
+
+    private final LoaderServiceListener _listener;
+    private final ImageService _imageService;
+    private final int _fetchThreads;
+    private final int _storeThreads;
+
+    private final BlockingQueue<Item> _fetchQueue = new ArrayBlockingQueue<>(Constants.LOADER_PIPELINE_WINDOW);
+    private final BlockingQueue<Item> _storeQueue = new ArrayBlockingQueue<>(Constants.LOADER_PIPELINE_WINDOW);
+    // Never holds more than the window, the notifier must be able to accept items at all times
+    private final BlockingQueue<Item> _doneQueue = new LinkedBlockingQueue<>();
+    private final Semaphore _window = new Semaphore(Constants.LOADER_PIPELINE_WINDOW);
+    private final AtomicInteger _runningFetchers;
+    private final AtomicInteger _runningStorers;
+    private final ExecutorService _executor;
+    private final Future<Void> _notifier;
+
+    private int _nextSequence;
+    private volatile int _totalCount = -1;
+    private volatile Exception _failure;
+    private volatile boolean _isStopped;
+
+    // Private methods
+
+    /**
+     * Takes the next item from a queue, or returns END if the pipeline has been shut down.
+     * Polls rather than blocks, since an interrupt may be swallowed by the network code.
+     */
+    private Item take(BlockingQueue<Item> queue) throws InterruptedException {
+        while (!_isStopped) {
+            Item item = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            if (item != null)
+                return item;
+        }
+        return END;
+    }
+
+    /**
+     * Downloads and decodes images.
+     */
+    private void runFetcher() throws InterruptedException {
+        while (true) {
+            Item item = take(_fetchQueue);
+            if (item == END)
+                break;
+
+            try {
+                item.Image = _imageService.downloadConsultantBitmap(item.Consultant.Id);
+                _storeQueue.put(item);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                item.Error = e;
+                _doneQueue.put(item);
+            }
+        }
+
+        // The last fetcher to finish tells the storers that there's nothing more coming
+        if (!_isStopped && (_runningFetchers.decrementAndGet() == 0)) {
+            for (int i = 0; i < _storeThreads; i++)
+                _storeQueue.put(END);
+        }
+    }
+
+    /**
+     * Encodes and saves images.
+     */
+    private void runStorer() throws InterruptedException {
+        while (true) {
+            Item item = take(_storeQueue);
+            if (item == END)
+                break;
+
+            try {
+                _imageService.saveConsultantBitmapToFile(item.Consultant.Id, item.Image);
+            } catch (Exception e) {
+                item.Error = e;
+            }
+            _doneQueue.put(item);
+        }
+
+        if (!_isStopped && (_runningStorers.decrementAndGet() == 0))
+            _doneQueue.put(END);
+    }
+
+    /**
+     * Notifies the listener of each consultant in the order they were added.
+     */
+    private void runNotifier() throws Exception {
+        try {
+            Map<Integer, Item> pending = new HashMap<>();
+            int next = 0;
+            boolean isTotalReported = false;
+
+            while (true) {
+                Item item = take(_doneQueue);
+                if (item == END)
+                    break;
+                if (item == TOTAL_KNOWN) {
+                    _listener.onInitialLoadProgress(next, _totalCount);
+                    isTotalReported = true;
+                    continue;
+                }
+                if (item.Error != null)
+                    throw item.Error;
+
+                // Hold back items that are done before the ones added earlier
+                pending.put(item.Sequence, item);
+                while ((item = pending.remove(next)) != null) {
+                    _listener.onConsultantAdded(item.Consultant, item.Image);
+                    next++;
+                    _window.release();
+
+                    if (isTotalReported)
+                        _listener.onInitialLoadProgress(next, _totalCount);
+                }
+            }
+        } catch (Exception e) {
+            // Make sure that the persisting thread doesn't wait for room in the window forever
+            _failure = e;
+            _window.release(Constants.LOADER_PIPELINE_WINDOW);
+            throw e;
+        }
+    }
+
+    // Constructor
+
+    LoaderPipeline(LoaderServiceListener listener, ImageService imageService, int fetchThreads, int storeThreads) {
+        _listener = listener;
+        _imageService = imageService;
+        _fetchThreads = fetchThreads;
+        _storeThreads = storeThreads;
+        _runningFetchers = new AtomicInteger(fetchThreads);
+        _runningStorers = new AtomicInteger(storeThreads);
+
+        _executor = Executors.newFixedThreadPool(fetchThreads + storeThreads + 1);
+        for (int i = 0; i < fetchThreads; i++) {
+            _executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    runFetcher();
+                    return null;
+                }
+            });
+        }
+        for (int i = 0; i < storeThreads; i++) {
+            _executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    runStorer();
+                    return null;
+                }
+            });
+        }
+        _notifier = _executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                runNotifier();
+                return null;
+            }
+        });
+    }
+
+    // Methods
+
+    /**
+     * Adds a consultant that has been saved to the database. Blocks while the
+     * pipeline is full. Must always be called from the same thread.
+     */
+    void add(ConsultantData consultant) throws Exception {
+        _window.acquire();
+        if (_failure != null)
+            throw _failure;
+
+        _fetchQueue.put(new Item(_nextSequence++, consultant));
+    }
+
+    /**
+     * Tells the pipeline how many consultants will be added, so that the listener is
+     * told about the progress from the start. Must be called before any are added.
+     */
+    void setTotalCount(int totalCount) throws InterruptedException {
+        if (_totalCount >= 0)
+            throw new IllegalStateException("The total count has already been set");
+
+        _totalCount = totalCount;
+        _doneQueue.put(TOTAL_KNOWN);
+    }
+
+    /**
+     * Tells the pipeline that all consultants have been added, and waits until
+     * the listener has been notified of all of them.
+     */
+    void finish() throws Exception {
+        if (_totalCount < 0)
+            setTotalCount(_nextSequence);
+        else if (_totalCount != _nextSequence)
+            throw new IllegalStateException(String.format("%d consultants were added, not %d", _nextSequence, _totalCount));
+
+        for (int i = 0; i < _fetchThreads; i++)
+            _fetchQueue.put(END);
+
+        try {
+            _notifier.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Stops all stages. Safe to call after finish. Returns once the listener won't
+     * be notified any more, which the notifier stops doing within a poll interval.
+     */
+    void shutdown() {
+        _isStopped = true;
+        _executor.shutdownNow();
+
+        try {
+            _notifier.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException e) {
+            // Any failure has already been reported through finish or add
+        }
+    }
+
+    /**
+     * A consultant on its way through the pipeline.
+     */
+    private static class Item {
+        final int Sequence;
+        final ConsultantData Consultant;
+        Bitmap Image;
+        Exception Error;
+
+        Item(int sequence, ConsultantData consultant) {
+            Sequence = sequence;
+            Consultant = consultant;
+        }
+    }
+}
@@ -6,6 +6,12 @@ import se.danielkonsult.www.kvadratab.entities.ConsultantData;
 
 /**
  * Listener for events that are triggered by the LoaderService.
+ *
+ * All methods are called on background threads and never on the main thread, so
+ * implementors have to post any UI work to it themselves. The calls are never made
+ * at the same time: onInitialLoadStarted, onInitialLoadingCompleted and onError
+ * come from the loader thread, and the progress and consultant calls in between
+ * come from the thread of the image pipeline.
  */
 public interface LoaderServiceListener {
 
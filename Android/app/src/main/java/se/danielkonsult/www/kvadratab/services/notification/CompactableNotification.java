@@ -0,0 +1,26 @@
+package se.danielkonsult.www.kvadratab.services.notification;
+
+/**
+ * Interface for notifications that can be merged with later notifications
+ * about the same thing, e.g. two name changes of a consultant.
+ */
+public interface CompactableNotification {
+
+    /**
+     * Gets a key for what the notification is about. Only notifications with
+     * the same key are compacted.
+     */
+    String getCompactionKey();
+
+    /**
+     * Returns a single notification that tells the same as this one followed by a
+     * newer one with the same key, or null if they should both be kept.
+     */
+    Notification compact(Notification newer);
+
+    /**
+     * Returns true if the notification tells of no change at all, which a compacted
+     * notification does when a later change undid an earlier one. It's then deleted.
+     */
+    boolean isCancelled();
+}
@@ -6,7 +6,7 @@ import android.text.Html;
  * A notification for a consultant that has been removed
  * from the web page.
  */
-public class ConsultantDeletedNotification extends Notification {
+public class ConsultantDeletedNotification extends ConsultantNotification {
 
     private static final String HEADER = "Borttagen konsult";
 
@@ -16,10 +16,7 @@ public class ConsultantDeletedNotification extends Notification {
     }
 
     public ConsultantDeletedNotification(int consultantId, String firstName, String lastName, String office) {
-        ConsultantId = consultantId;
-        FirstName = firstName;
-        LastName = lastName;
-        Office = office;
+        super(consultantId, firstName, lastName, office);
     }
 
     @Override
@@ -31,11 +28,4 @@ public class ConsultantDeletedNotification extends Notification {
     public String getDetails() {
         return String.format("<b>%s %s, %s</b> har tagits bort ur konsultregistret", FirstName, LastName, Office);
     }
-
-    // Fields
-
-    public int ConsultantId;
-    public String FirstName;
-    public String LastName;
-    public String Office;
 }
@@ -13,7 +13,7 @@ import se.danielkonsult.www.kvadratab.helpers.Constants;
  * A notification about a new consultant that was found
  * during a refresh.
  */
-public class ConsultantInsertedNotification extends Notification implements ClickableNotification {
+public class ConsultantInsertedNotification extends ConsultantNotification implements ClickableNotification, CompactableNotification {
 
     private static final String HEADER = "Ny konsult";
 
@@ -23,10 +23,7 @@ public class ConsultantInsertedNotification extends Notification implements Clic
     }
 
     public ConsultantInsertedNotification(int consultantId, String firstName, String lastName, String office) {
-        ConsultantId = consultantId;
-        FirstName = firstName;
-        LastName = lastName;
-        Office = office;
+        super(consultantId, firstName, lastName, office);
     }
 
     @Override
@@ -49,10 +46,30 @@ public class ConsultantInsertedNotification extends Notification implements Clic
         gotoConsultantDetailsActivity(context, ConsultantId);
     }
 
-    // Public fields
+    @Override
+    public String getCompactionKey() {
+        return getConsultantCompactionKey(ConsultantId);
+    }
+
+    @Override
+    public Notification compact(Notification newer) {
+        // Later changes are already part of the new consultant
+        if (newer instanceof ConsultantUpdatedNameNotification) {
+            ConsultantUpdatedNameNotification n = (ConsultantUpdatedNameNotification) newer;
+            return new ConsultantInsertedNotification(ConsultantId, n.NewFirstName, n.NewLastName, Office);
+        }
+        if (newer instanceof ConsultantUpdatedOfficeNotification) {
+            ConsultantUpdatedOfficeNotification n = (ConsultantUpdatedOfficeNotification) newer;
+            return new ConsultantInsertedNotification(ConsultantId, FirstName, LastName, n.NewOffice);
+        }
+        if (newer instanceof ConsultantUpdatedBitmapNotification)
+            return new ConsultantInsertedNotification(ConsultantId, FirstName, LastName, Office);
 
-    public int ConsultantId;
-    public String FirstName;
-    public String LastName;
-    public String Office;
+        return null;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
 }
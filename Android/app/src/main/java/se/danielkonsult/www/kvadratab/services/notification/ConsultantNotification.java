@@ -0,0 +1,27 @@
+package se.danielkonsult.www.kvadratab.services.notification;
+
+/**
+ * Base class of the notifications that only hold a consultant and the office
+ * that the consultant belongs to.
+ */
+public abstract class ConsultantNotification extends Notification {
+
+    // Constructors
+
+    public ConsultantNotification() {
+    }
+
+    public ConsultantNotification(int consultantId, String firstName, String lastName, String office) {
+        ConsultantId = consultantId;
+        FirstName = firstName;
+        LastName = lastName;
+        Office = office;
+    }
+
+    // Fields
+
+    public int ConsultantId;
+    public String FirstName;
+    public String LastName;
+    public String Office;
+}
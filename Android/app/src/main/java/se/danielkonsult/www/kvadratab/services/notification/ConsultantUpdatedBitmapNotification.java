@@ -10,7 +10,7 @@ import se.danielkonsult.www.kvadratab.AppCtrl;
  * A notification about a consultant whose profile
  * picture has been updated.
  */
-public class ConsultantUpdatedBitmapNotification extends Notification implements ClickableNotification {
+public class ConsultantUpdatedBitmapNotification extends ConsultantNotification implements ClickableNotification, CompactableNotification {
 
     private static final String HEADER = "Ny profilbild";
 
@@ -20,10 +20,7 @@ public class ConsultantUpdatedBitmapNotification extends Notification implements
     }
 
     public ConsultantUpdatedBitmapNotification(int consultantId, String firstName, String lastName, String office) {
-        ConsultantId = consultantId;
-        FirstName = firstName;
-        LastName = lastName;
-        Office = office;
+        super(consultantId, firstName, lastName, office);
     }
 
     @Override
@@ -46,10 +43,23 @@ public class ConsultantUpdatedBitmapNotification extends Notification implements
         gotoConsultantDetailsActivity(context, ConsultantId);
     }
 
-    // Fields
+    @Override
+    public String getCompactionKey() {
+        return getConsultantCompactionKey(ConsultantId);
+    }
+
+    @Override
+    public Notification compact(Notification newer) {
+        // The notification always shows the current image
+        if (!(newer instanceof ConsultantUpdatedBitmapNotification))
+            return null;
 
-    public int ConsultantId;
-    public String FirstName;
-    public String LastName;
-    public String Office;
+        ConsultantUpdatedBitmapNotification n = (ConsultantUpdatedBitmapNotification) newer;
+        return new ConsultantUpdatedBitmapNotification(ConsultantId, n.FirstName, n.LastName, n.Office);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
 }
@@ -9,7 +9,7 @@ import se.danielkonsult.www.kvadratab.AppCtrl;
 /**
  * Notification for when the name of a consultant has been changed.
  */
-public class ConsultantUpdatedNameNotification extends Notification implements ClickableNotification {
+public class ConsultantUpdatedNameNotification extends Notification implements ClickableNotification, CompactableNotification {
 
     private static final String HEADER = "Namnbyte";
 
@@ -47,6 +47,27 @@ public class ConsultantUpdatedNameNotification extends Notification implements C
         gotoConsultantDetailsActivity(context, ConsultantId);
     }
 
+    @Override
+    public String getCompactionKey() {
+        return getConsultantCompactionKey(ConsultantId);
+    }
+
+    @Override
+    public Notification compact(Notification newer) {
+        // Go straight from the first name to the last one
+        if (!(newer instanceof ConsultantUpdatedNameNotification))
+            return null;
+
+        ConsultantUpdatedNameNotification n = (ConsultantUpdatedNameNotification) newer;
+        return new ConsultantUpdatedNameNotification(ConsultantId, OldFirstName, OldLastName, n.NewFirstName, n.NewLastName, n.Office);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        // The name was changed back
+        return OldFirstName.equals(NewFirstName) && OldLastName.equals(NewLastName);
+    }
+
     // Fields
 
     public int ConsultantId;
@@ -6,7 +6,7 @@ import android.text.Html;
 /**
  * Created by Daniel on 2016-10-10.
  */
-public class ConsultantUpdatedOfficeNotification extends Notification implements ClickableNotification {
+public class ConsultantUpdatedOfficeNotification extends Notification implements ClickableNotification, CompactableNotification {
 
     private static final String HEADER = "Konsult har bytt kontor";
 
@@ -38,6 +38,26 @@ public class ConsultantUpdatedOfficeNotification extends Notification implements
         gotoConsultantDetailsActivity(context, ConsultantId);
     }
 
+    @Override
+    public String getCompactionKey() {
+        return getConsultantCompactionKey(ConsultantId);
+    }
+
+    @Override
+    public Notification compact(Notification newer) {
+        // Only the latest office is of interest
+        if (!(newer instanceof ConsultantUpdatedOfficeNotification))
+            return null;
+
+        ConsultantUpdatedOfficeNotification n = (ConsultantUpdatedOfficeNotification) newer;
+        return new ConsultantUpdatedOfficeNotification(ConsultantId, n.FirstName, n.LastName, n.NewOffice);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
     // Fields
 
     public int ConsultantId;
@@ -7,6 +7,7 @@ import android.content.Intent;
 import android.graphics.BitmapFactory;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.app.TaskStackBuilder;
+import android.util.Log;
 
 import java.util.List;
 import java.util.StringTokenizer;
@@ -21,6 +22,7 @@ import se.danielkonsult.www.kvadratab.activities.NotificationActivity;
  */
 public class DefaultNotificationService implements NotificationService {
 
+    private static final String TAG = "NotificationService";
     private static final int NOTIFICATION_ID = 11;
 
     // Private methods
@@ -83,4 +85,11 @@ public class DefaultNotificationService implements NotificationService {
             createNotification(notifications.size());
         }
     }
+
+    @Override
+    public void applyRetention() {
+        int removedCount = new NotificationRetention(AppCtrl.getDb().getNotificationRepository(),
+                NotificationRetentionPolicy.getDefault()).run();
+        Log.d(TAG, String.format("Removed %d notifications", removedCount));
+    }
 }
@@ -20,6 +20,13 @@ public abstract class Notification {
         context.startActivity(intent);
     }
 
+    /**
+     * Gets the compaction key of notifications about a consultant.
+     */
+    protected static String getConsultantCompactionKey(int consultantId) {
+        return "consultant:" + consultantId;
+    }
+
     // Constructor
 
     public Notification() {
@@ -43,4 +50,9 @@ public abstract class Notification {
     // Fields
 
     public long Timestamp;
+
+    /**
+     * The database id of the notification, 0 if it has not been read from the database.
+     */
+    public transient int RowId;
 }
@@ -0,0 +1,86 @@
+package se.danielkonsult.www.kvadratab.services.notification;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+/**
+ * Writes and reads one type of notification as JSON, field by field and
+ * without reflection. The JSON has the same format as Gson would give the
+ * notification class, so that rows stored by earlier versions can still be read.
+ */
+public abstract class NotificationCodec<T extends Notification> {
+
+    private static final String FIELD_TIMESTAMP = "Timestamp";
+
+    // Protected methods
+
+    /**
+     * Creates an empty notification that the read fields are set on.
+     */
+    protected abstract T create();
+
+    /**
+     * Writes the fields of the notification, except the timestamp.
+     */
+    protected abstract void writeFields(JsonWriter writer, T notification) throws IOException;
+
+    /**
+     * Reads the value of a named field into the notification. Returns false if
+     * the field is unknown, it is then skipped.
+     */
+    protected abstract boolean readField(JsonReader reader, String name, T notification) throws IOException;
+
+    /**
+     * Reads a string value that may be null.
+     */
+    protected static String nextString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    // Public methods
+
+    public String write(T notification) throws IOException {
+        StringWriter result = new StringWriter();
+        JsonWriter writer = new JsonWriter(result);
+        // Leave out null fields like Gson does
+        writer.setSerializeNulls(false);
+
+        writer.beginObject();
+        writeFields(writer, notification);
+        writer.name(FIELD_TIMESTAMP).value(notification.Timestamp);
+        writer.endObject();
+        writer.close();
+
+        return result.toString();
+    }
+
+    public T read(String data) throws IOException {
+        T result = create();
+
+        JsonReader reader = new JsonReader(new StringReader(data));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (FIELD_TIMESTAMP.equals(name))
+                    result.Timestamp = reader.nextLong();
+                else if (!readField(reader, name, result))
+                    reader.skipValue();
+            }
+            reader.endObject();
+        } finally {
+            reader.close();
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,283 @@
+package se.danielkonsult.www.kvadratab.services.notification;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Registry of the codecs of all notification types, keyed by the type tag that
+ * is stored with each notification in the database.
+ *
+ * The tags are the class names that earlier versions stored and must never be
+ * changed, also if a class is renamed. A new notification type needs a codec
+ * registered here before it can be saved.
+ */
+public class NotificationCodecs {
+
+    // Private variables
+
+    private static final Map<String, NotificationCodec<?>> _codecsByTag = new HashMap<>();
+    private static final Map<Class<?>, String> _tagsByClass = new HashMap<>();
+
+    static {
+        register("ConsultantInsertedNotification", ConsultantInsertedNotification.class, new ConsultantNotificationCodec<ConsultantInsertedNotification>() {
+            @Override
+            protected ConsultantInsertedNotification create() {
+                return new ConsultantInsertedNotification();
+            }
+        });
+
+        register("ConsultantDeletedNotification", ConsultantDeletedNotification.class, new ConsultantNotificationCodec<ConsultantDeletedNotification>() {
+            @Override
+            protected ConsultantDeletedNotification create() {
+                return new ConsultantDeletedNotification();
+            }
+        });
+
+        register("ConsultantUpdatedBitmapNotification", ConsultantUpdatedBitmapNotification.class, new ConsultantNotificationCodec<ConsultantUpdatedBitmapNotification>() {
+            @Override
+            protected ConsultantUpdatedBitmapNotification create() {
+                return new ConsultantUpdatedBitmapNotification();
+            }
+        });
+
+        register("ConsultantUpdatedNameNotification", ConsultantUpdatedNameNotification.class, new NotificationCodec<ConsultantUpdatedNameNotification>() {
+            @Override
+            protected ConsultantUpdatedNameNotification create() {
+                return new ConsultantUpdatedNameNotification();
+            }
+
+            @Override
+            protected void writeFields(JsonWriter writer, ConsultantUpdatedNameNotification n) throws IOException {
+                writer.name("ConsultantId").value(n.ConsultantId);
+                writer.name("OldFirstName").value(n.OldFirstName);
+                writer.name("OldLastName").value(n.OldLastName);
+                writer.name("NewFirstName").value(n.NewFirstName);
+                writer.name("NewLastName").value(n.NewLastName);
+                writer.name("Office").value(n.Office);
+            }
+
+            @Override
+            protected boolean readField(JsonReader reader, String name, ConsultantUpdatedNameNotification n) throws IOException {
+                switch (name) {
+                    case "ConsultantId": n.ConsultantId = reader.nextInt(); return true;
+                    case "OldFirstName": n.OldFirstName = nextString(reader); return true;
+                    case "OldLastName": n.OldLastName = nextString(reader); return true;
+                    case "NewFirstName": n.NewFirstName = nextString(reader); return true;
+                    case "NewLastName": n.NewLastName = nextString(reader); return true;
+                    case "Office": n.Office = nextString(reader); return true;
+                }
+                return false;
+            }
+        });
+
+        register("ConsultantUpdatedOfficeNotification", ConsultantUpdatedOfficeNotification.class, new NotificationCodec<ConsultantUpdatedOfficeNotification>() {
+            @Override
+            protected ConsultantUpdatedOfficeNotification create() {
+                return new ConsultantUpdatedOfficeNotification();
+            }
+
+            @Override
+            protected void writeFields(JsonWriter writer, ConsultantUpdatedOfficeNotification n) throws IOException {
+                writeConsultant(writer, n.ConsultantId, n.FirstName, n.LastName);
+                writer.name("NewOffice").value(n.NewOffice);
+            }
+
+            @Override
+            protected boolean readField(JsonReader reader, String name, ConsultantUpdatedOfficeNotification n) throws IOException {
+                switch (name) {
+                    case "ConsultantId": n.ConsultantId = reader.nextInt(); return true;
+                    case "FirstName": n.FirstName = nextString(reader); return true;
+                    case "LastName": n.LastName = nextString(reader); return true;
+                    case "NewOffice": n.NewOffice = nextString(reader); return true;
+                }
+                return false;
+            }
+        });
+
+        register("OfficeInsertedNotification", OfficeInsertedNotification.class, new NotificationCodec<OfficeInsertedNotification>() {
+            @Override
+            protected OfficeInsertedNotification create() {
+                return new OfficeInsertedNotification();
+            }
+
+            @Override
+            protected void writeFields(JsonWriter writer, OfficeInsertedNotification n) throws IOException {
+                writer.name("OfficeId").value(n.OfficeId);
+                writer.name("Name").value(n.Name);
+            }
+
+            @Override
+            protected boolean readField(JsonReader reader, String name, OfficeInsertedNotification n) throws IOException {
+                switch (name) {
+                    case "OfficeId": n.OfficeId = reader.nextInt(); return true;
+                    case "Name": n.Name = nextString(reader); return true;
+                }
+                return false;
+            }
+        });
+
+        register("OfficeDeletedNotification", OfficeDeletedNotification.class, new NotificationCodec<OfficeDeletedNotification>() {
+            @Override
+            protected OfficeDeletedNotification create() {
+                return new OfficeDeletedNotification();
+            }
+
+            @Override
+            protected void writeFields(JsonWriter writer, OfficeDeletedNotification n) throws IOException {
+                writer.name("Id").value(n.Id);
+                writer.name("Name").value(n.Name);
+            }
+
+            @Override
+            protected boolean readField(JsonReader reader, String name, OfficeDeletedNotification n) throws IOException {
+                switch (name) {
+                    case "Id": n.Id = reader.nextInt(); return true;
+                    case "Name": n.Name = nextString(reader); return true;
+                }
+                return false;
+            }
+        });
+
+        register("OfficeUpdatedNotification", OfficeUpdatedNotification.class, new NotificationCodec<OfficeUpdatedNotification>() {
+            @Override
+            protected OfficeUpdatedNotification create() {
+                return new OfficeUpdatedNotification();
+            }
+
+            @Override
+            protected void writeFields(JsonWriter writer, OfficeUpdatedNotification n) throws IOException {
+                writer.name("Id").value(n.Id);
+                writer.name("OldName").value(n.OldName);
+                writer.name("NewName").value(n.NewName);
+            }
+
+            @Override
+            protected boolean readField(JsonReader reader, String name, OfficeUpdatedNotification n) throws IOException {
+                switch (name) {
+                    case "Id": n.Id = reader.nextInt(); return true;
+                    case "OldName": n.OldName = nextString(reader); return true;
+                    case "NewName": n.NewName = nextString(reader); return true;
+                }
+                return false;
+            }
+        });
+
+        register("InfoNotification", InfoNotification.class, new NotificationCodec<InfoNotification>() {
+            @Override
+            protected InfoNotification create() {
+                return new InfoNotification();
+            }
+
+            @Override
+            protected void writeFields(JsonWriter writer, InfoNotification n) throws IOException {
+                writer.name("Message").value(n.Message);
+            }
+
+            @Override
+            protected boolean readField(JsonReader reader, String name, InfoNotification n) throws IOException {
+                if (!"Message".equals(name))
+                    return false;
+                n.Message = nextString(reader);
+                return true;
+            }
+        });
+
+        register("ErrorNotification", ErrorNotification.class, new NotificationCodec<ErrorNotification>() {
+            @Override
+            protected ErrorNotification create() {
+                return new ErrorNotification();
+            }
+
+            @Override
+            protected void writeFields(JsonWriter writer, ErrorNotification n) throws IOException {
+                writer.name("Message").value(n.Message);
+            }
+
+            @Override
+            protected boolean readField(JsonReader reader, String name, ErrorNotification n) throws IOException {
+                if (!"Message".equals(name))
+                    return false;
+                n.Message = nextString(reader);
+                return true;
+            }
+        });
+    }
+
+    // Private methods
+
+    private static <T extends Notification> void register(String tag, Class<T> clss, NotificationCodec<T> codec) {
+        if (_codecsByTag.containsKey(tag) || _tagsByClass.containsKey(clss))
+            throw new IllegalStateException(String.format("Notification type %s is registered twice", tag));
+
+        _codecsByTag.put(tag, codec);
+        _tagsByClass.put(clss, tag);
+    }
+
+    /**
+     * Writes the common fields of the notifications about a consultant.
+     */
+    private static void writeConsultant(JsonWriter writer, int consultantId, String firstName, String lastName) throws IOException {
+        writer.name("ConsultantId").value(consultantId);
+        writer.name("FirstName").value(firstName);
+        writer.name("LastName").value(lastName);
+    }
+
+    /**
+     * Codec of the notifications that only hold a consultant and its office.
+     */
+    private static abstract class ConsultantNotificationCodec<T extends ConsultantNotification> extends NotificationCodec<T> {
+        @Override
+        protected void writeFields(JsonWriter writer, T n) throws IOException {
+            writeConsultant(writer, n.ConsultantId, n.FirstName, n.LastName);
+            writer.name("Office").value(n.Office);
+        }
+
+        @Override
+        protected boolean readField(JsonReader reader, String name, T n) throws IOException {
+            switch (name) {
+                case "ConsultantId": n.ConsultantId = reader.nextInt(); return true;
+                case "FirstName": n.FirstName = nextString(reader); return true;
+                case "LastName": n.LastName = nextString(reader); return true;
+                case "Office": n.Office = nextString(reader); return true;
+            }
+            return false;
+        }
+    }
+
+    // Public methods
+
+    /**
+     * Gets the type tags of all registered notification types.
+     */
+    public static Set<String> getTags() {
+        return Collections.unmodifiableSet(_codecsByTag.keySet());
+    }
+
+    /**
+     * Gets the type tag of a notification, null if its type is not registered.
+     */
+    public static String getTag(Notification notification) {
+        return getTag(notification.getClass());
+    }
+
+    /**
+     * Gets the type tag of a notification class, null if it is not registered.
+     */
+    public static String getTag(Class<? extends Notification> clss) {
+        return _tagsByClass.get(clss);
+    }
+
+    /**
+     * Gets the codec of a type tag, null if the tag is unknown.
+     */
+    @SuppressWarnings("unchecked")
+    public static NotificationCodec<Notification> getCodec(String tag) {
+        return (NotificationCodec<Notification>) _codecsByTag.get(tag);
+    }
+}
@@ -1,39 +1,64 @@
 package se.danielkonsult.www.kvadratab.services.notification;
 
-import com.google.gson.Gson;
+import android.util.Log;
+
+import java.io.IOException;
 
 import se.danielkonsult.www.kvadratab.entities.NotificationData;
 
 /**
- * Converts between NotificationData and Notification descendants.
+ * Converts between NotificationData and Notification descendants, using
+ * the codecs registered in NotificationCodecs.
  */
 public class NotificationDataConverter {
 
-    // Private methods
+    // Private variables
 
-    private static final Gson _gson = new Gson();
-    private static String _packageName = NotificationDataConverter.class.getPackage().getName();
+    private static final String TAG = "NotificationConverter";
 
     // Static methods
 
+    /**
+     * Returns the notification stored in the data, or null if its type is unknown or
+     * the data could not be read.
+     */
     public static Notification toNotification(NotificationData notificationData) {
+        NotificationCodec<Notification> codec = NotificationCodecs.getCodec(notificationData.Type);
+        if (codec == null) {
+            Log.w(TAG, String.format("Unknown notification type %s", notificationData.Type));
+            return null;
+        }
+
         try {
-            Class<?> clss = Class.forName(String.format("%s.%s", _packageName, notificationData.Type));
-            Notification result = (Notification) _gson.fromJson(notificationData.Data, clss);
+            Notification result = codec.read(notificationData.Data);
             result.Timestamp = notificationData.Timestamp;
+            result.RowId = notificationData.Id;
 
             return result;
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, String.format("Could not read notification %d of type %s", notificationData.Id, notificationData.Type), e);
             return null;
         }
     }
 
+    /**
+     * Returns the notification in a format that can be stored. Throws an
+     * IllegalArgumentException if the notification type has no codec.
+     */
     public static NotificationData toNotificationData(Notification notification) {
+        String tag = NotificationCodecs.getTag(notification);
+        if (tag == null)
+            throw new IllegalArgumentException(String.format("No codec registered for %s", notification.getClass().getName()));
+
         NotificationData nd = new NotificationData();
         nd.Timestamp = notification.Timestamp;
-        nd.Type = notification.getClass().getSimpleName();
-        nd.Data = _gson.toJson(notification);
+        nd.Type = tag;
+        try {
+            nd.Data = NotificationCodecs.getCodec(tag).write(notification);
+        } catch (IOException e) {
+            // Writing to a string never fails
+            throw new IllegalStateException(e);
+        }
 
         return nd;
     }
@@ -0,0 +1,161 @@
+package se.danielkonsult.www.kvadratab.services.notification;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import se.danielkonsult.www.kvadratab.repositories.notification.NotificationRepository;
+
+/**
+ * Keeps the stored notifications within a retention policy. Runs of related
+ * notifications are first compacted into one, or deleted altogether if the changes
+ * cancel each other out, then the notifications that are
+ * too old or too many are deleted. All writes are made in batches so that
+ * readers of the notifications are never blocked for long.
+ */
+public class NotificationRetention {
+
+    // Private variables
+
+    private final NotificationRepository _repository;
+    private final NotificationRetentionPolicy _policy;
+
+    /**
+     * A notification that replaces one or more older ones.
+     */
+    private static class Run {
+        Notification Result;
+        List<Integer> ReplacedRowIds = new ArrayList<>();
+
+        Run(Notification first) {
+            Result = first;
+        }
+    }
+
+    // Constructor
+
+    public NotificationRetention(NotificationRepository repository, NotificationRetentionPolicy policy) {
+        _repository = repository;
+        _policy = policy;
+    }
+
+    // Private methods
+
+    /**
+     * Finds the runs of compactable notifications within the compaction window
+     * that can be merged into one.
+     */
+    private List<Run> findRuns(long now) {
+        List<Run> result = new ArrayList<>();
+        Map<String, Run> currentRuns = new HashMap<>();
+
+        // Go from oldest to newest
+        Notification[] notifications = _repository.getNotificationsSince(now - _policy.CompactionWindowMs);
+        for (int i = notifications.length - 1; i >= 0; i--) {
+            if (!(notifications[i] instanceof CompactableNotification))
+                continue;
+            Notification newer = notifications[i];
+            String key = ((CompactableNotification) newer).getCompactionKey();
+
+            Run run = currentRuns.get(key);
+            Notification merged = (run == null) ? null : ((CompactableNotification) run.Result).compact(newer);
+            if (merged == null) {
+                // Start a new run, keeping the previous one if anything was merged into it
+                if ((run != null) && (run.ReplacedRowIds.size() > 0))
+                    result.add(run);
+                currentRuns.put(key, new Run(newer));
+                continue;
+            }
+
+            // The merged notification takes the place of the newer one
+            merged.Timestamp = newer.Timestamp;
+            merged.RowId = newer.RowId;
+            run.ReplacedRowIds.add(run.Result.RowId);
+            run.Result = merged;
+        }
+
+        for (Run run : currentRuns.values()) {
+            if (run.ReplacedRowIds.size() > 0)
+                result.add(run);
+        }
+
+        return result;
+    }
+
+    /**
+     * Writes the merged notifications of runs, a batch at a time. A run whose merged
+     * notification is cancelled has all of its notifications deleted.
+     */
+    private int compact(List<Run> runs) {
+        int result = 0;
+
+        int i = 0;
+        while (i < runs.size()) {
+            List<Notification> notifications = new ArrayList<>();
+            List<Integer> deletedRowIds = new ArrayList<>();
+            while ((i < runs.size()) && (deletedRowIds.size() < _policy.BatchSize)) {
+                Run run = runs.get(i);
+                if (((CompactableNotification) run.Result).isCancelled())
+                    deletedRowIds.add(run.Result.RowId);
+                else
+                    notifications.add(run.Result);
+                deletedRowIds.addAll(run.ReplacedRowIds);
+                i++;
+            }
+
+            int[] rowIds = new int[deletedRowIds.size()];
+            for (int j = 0; j < rowIds.length; j++)
+                rowIds[j] = deletedRowIds.get(j);
+            _repository.replace(notifications.toArray(new Notification[notifications.size()]), rowIds);
+
+            result += rowIds.length;
+        }
+
+        return result;
+    }
+
+    /**
+     * Deletes all but the newest notifications of a type, or of all types if it is null.
+     */
+    private int deleteAllButNewest(String type, int keepCount) {
+        int result = 0;
+        int deleted;
+        do {
+            deleted = _repository.deleteAllButNewest(type, keepCount, _policy.BatchSize);
+            result += deleted;
+        } while (deleted >= _policy.BatchSize);
+
+        return result;
+    }
+
+    // Public methods
+
+    /**
+     * Applies the policy to the stored notifications.
+     * @return The number of notifications that were removed.
+     */
+    public int run() {
+        long now = System.currentTimeMillis();
+        int result = 0;
+
+        if (_policy.CompactionWindowMs > 0)
+            result += compact(findRuns(now));
+
+        if (_policy.MaxAgeMs > 0) {
+            int deleted;
+            do {
+                deleted = _repository.deleteOlderThan(now - _policy.MaxAgeMs, _policy.BatchSize);
+                result += deleted;
+            } while (deleted >= _policy.BatchSize);
+        }
+
+        for (Map.Entry<String, Integer> typeCap : _policy.TypeCaps.entrySet())
+            result += deleteAllButNewest(typeCap.getKey(), typeCap.getValue());
+
+        if (_policy.MaxCount > 0)
+            result += deleteAllButNewest(null, _policy.MaxCount);
+
+        return result;
+    }
+}
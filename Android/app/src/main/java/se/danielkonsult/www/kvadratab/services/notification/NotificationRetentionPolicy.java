@@ -0,0 +1,75 @@
+package se.danielkonsult.www.kvadratab.services.notification;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import se.danielkonsult.www.kvadratab.helpers.Constants;
+
+/**
+ * Settings for how many and how old stored notifications may be, and how
+ * far back related notifications are compacted.
+ */
+public class NotificationRetentionPolicy {
+
+    // Constructor
+
+    public NotificationRetentionPolicy() {
+    }
+
+    // Public methods
+
+    /**
+     * Gets the policy used by the app.
+     */
+    public static NotificationRetentionPolicy getDefault() {
+        long msPerDay = 24L * 3600 * 1000;
+
+        NotificationRetentionPolicy result = new NotificationRetentionPolicy();
+        result.MaxCount = Constants.NOTIFICATIONS_MAX_COUNT;
+        result.MaxAgeMs = Constants.NOTIFICATIONS_MAX_AGE_DAYS * msPerDay;
+        result.CompactionWindowMs = Constants.NOTIFICATIONS_COMPACTION_WINDOW_DAYS * msPerDay;
+        result.BatchSize = Constants.NOTIFICATIONS_RETENTION_BATCH_SIZE;
+        result.setTypeCap(InfoNotification.class, Constants.NOTIFICATIONS_MAX_MESSAGES);
+        result.setTypeCap(ErrorNotification.class, Constants.NOTIFICATIONS_MAX_MESSAGES);
+
+        return result;
+    }
+
+    /**
+     * Sets the maximum number of stored notifications of a type.
+     */
+    public void setTypeCap(Class<? extends Notification> clss, int maxCount) {
+        String tag = NotificationCodecs.getTag(clss);
+        if (tag == null)
+            throw new IllegalArgumentException(String.format("No codec registered for %s", clss.getName()));
+
+        TypeCaps.put(tag, maxCount);
+    }
+
+    // Public fields
+
+    /**
+     * The maximum number of stored notifications, 0 = no limit.
+     */
+    public int MaxCount;
+
+    /**
+     * The maximum age of stored notifications, 0 = no limit.
+     */
+    public long MaxAgeMs;
+
+    /**
+     * How old notifications may be to be compacted with newer ones, 0 = no compaction.
+     */
+    public long CompactionWindowMs;
+
+    /**
+     * The maximum number of notifications that are deleted or compacted at a time.
+     */
+    public int BatchSize = Constants.NOTIFICATIONS_RETENTION_BATCH_SIZE;
+
+    /**
+     * The maximum number of stored notifications of each type tag.
+     */
+    public Map<String, Integer> TypeCaps = new HashMap<>();
+}
@@ -10,4 +10,9 @@ public interface NotificationService {
     void add(Notification notification, boolean createNotification);
 
     void addAll(List<Notification> notifications, boolean createNotification);
+
+    /**
+     * Compacts and prunes the stored notifications according to the retention policy.
+     */
+    void applyRetention();
 }
@@ -1,17 +1,34 @@
 package se.danielkonsult.www.kvadratab.services.refresher;
 
 import android.graphics.Bitmap;
+import android.util.Log;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import se.danielkonsult.www.kvadratab.AppCtrl;
 import se.danielkonsult.www.kvadratab.entities.ConsultantData;
 import se.danielkonsult.www.kvadratab.entities.OfficeData;
 import se.danielkonsult.www.kvadratab.helpers.Constants;
+import se.danielkonsult.www.kvadratab.helpers.ContentHash;
 import se.danielkonsult.www.kvadratab.helpers.KvadratAppException;
+import se.danielkonsult.www.kvadratab.helpers.scraper.ConsultantScrapeListener;
+import se.danielkonsult.www.kvadratab.helpers.scraper.WebPageScraper;
+import se.danielkonsult.www.kvadratab.repositories.consultant.ConsultantDataRepository;
+import se.danielkonsult.www.kvadratab.services.image.ImageService;
 import se.danielkonsult.www.kvadratab.services.notification.ConsultantDeletedNotification;
 import se.danielkonsult.www.kvadratab.services.notification.ConsultantInsertedNotification;
 import se.danielkonsult.www.kvadratab.services.notification.ConsultantUpdatedNameNotification;
@@ -22,11 +39,192 @@ import se.danielkonsult.www.kvadratab.services.notification.Notification;
 /**
  * Compares new and existing consultant data and creates
  * notifications and performs database updates to reflect the changes.
+ *
+ * The offices are scraped in parallel. Offices that have been removed from the web page
+ * are not scraped, but deleted together with the other changes once their consultants
+ * have been moved or deleted. An office whose listing has the same fingerprint
+ * as at the last refresh is skipped, the others have their images downloaded and
+ * compared by the same worker as soon as the listing is in, while the other offices are
+ * still being scraped. A consultant listed by several offices has its image handled by
+ * the office that claims it first, so that two workers never write the same image
+ * files. The database is only updated from the calling thread, where the results are
+ * merged in office order so that the outcome doesn't depend on which office finished first.
+ * Failures are kept as local as possible: an office that can't be scraped is left as
+ * it is, and a new consultant whose image can't be downloaded is added on a later
+ * refresh.
  */
 public class ConsultantComparer {
 
-    public static List<Notification> compare() throws IOException, KvadratAppException {
-        List<Notification> result = new ArrayList<>();
+    // Private variables
+
+    private static final String TAG = "ConsultantComparer";
+
+    // Scraped images are saved with this offset to their id before they are compared
+    private static final int TEMP_BITMAP_ID_OFFSET = 100000;
+
+    // Private methods
+
+    /**
+     * Scrapes the consultant listing of one office and takes its fingerprint. Runs
+     * on a worker thread and must not touch the database.
+     */
+    private static void scrapeOffice(final OfficeResult officeResult, WebPageScraper scraper) throws IOException, KvadratAppException {
+        scraper.scrapeConsultants(officeResult.Office.Id, 0, new ConsultantScrapeListener() {
+            @Override
+            public void onConsultantScraped(ConsultantData scrapedConsultant) {
+                officeResult.Consultants.add(scrapedConsultant);
+            }
+        });
+        officeResult.Fingerprint = getListingFingerprint(officeResult.Consultants);
+    }
+
+    /**
+     * Gets a fingerprint of what the comparison uses of a listing, which is the ids
+     * and names of the consultants regardless of their order.
+     *
+     * It's taken from the parsed consultants rather than the response bodies, so it
+     * doesn't save any parsing. The listing is fetched in pages whose sizes adapt to
+     * timeouts, which makes the raw bodies differ for the same listing, and the ids of
+     * an unchanged listing are still needed to tell which consultants are listed.
+     */
+    private static String getListingFingerprint(List<ConsultantData> consultants) {
+        List<ConsultantData> sortedConsultants = new ArrayList<>(consultants);
+        Collections.sort(sortedConsultants, new Comparator<ConsultantData>() {
+            @Override
+            public int compare(ConsultantData cd1, ConsultantData cd2) {
+                return (cd1.Id < cd2.Id) ? -1 : ((cd1.Id == cd2.Id) ? 0 : 1);
+            }
+        });
+
+        ContentHash hash = new ContentHash();
+        for (ConsultantData cd : sortedConsultants)
+            hash.add(Integer.toString(cd.Id)).add(cd.FirstName).add(cd.LastName);
+
+        return hash.toHex();
+    }
+
+    /**
+     * Does the image work for the consultants of an office whose listing has changed,
+     * except those that another office has already claimed. Runs on a worker thread and
+     * must not touch the database.
+     */
+    private static void processImages(OfficeResult officeResult, Map<Integer, ConsultantData> existingHash,
+                                      ConcurrentHashMap<Integer, Integer> imageOwners,
+                                      boolean shouldCompareBitmaps, ImageService imageService) {
+        for (ConsultantData scrapedConsultant : officeResult.Consultants) {
+            if (imageOwners.putIfAbsent(scrapedConsultant.Id, officeResult.Office.Id) != null)
+                continue;
+            officeResult.ImageIds.add(scrapedConsultant.Id);
+
+            // Image failures only affect the consultant at hand
+            ConsultantData existing = existingHash.get(scrapedConsultant.Id);
+            try {
+                if (existing == null) {
+                    // A new consultant, download the image and save to file
+                    Bitmap bitmap = imageService.downloadConsultantBitmap(scrapedConsultant.Id);
+                    imageService.saveConsultantBitmapToFile(scrapedConsultant.Id, bitmap);
+                }
+                else if (shouldCompareBitmaps) {
+                    if (isBitmapChanged(existing.Id, imageService))
+                        officeResult.ChangedBitmapIds.add(existing.Id);
+                }
+            } catch (IOException e) {
+                Log.w(TAG, String.format("Image failed for consultant %d: %s", scrapedConsultant.Id, e.getMessage()));
+                if (existing == null)
+                    officeResult.FailedNewIds.add(scrapedConsultant.Id);
+            }
+        }
+    }
+
+    /**
+     * Downloads the image of an existing consultant and replaces the saved one if
+     * it has changed.
+     */
+    private static boolean isBitmapChanged(int consultantId, ImageService imageService) throws IOException {
+        // A missing image file is treated as a changed image, so that it's replaced
+        Bitmap existingBitmap = imageService.getConsultantBitmapFromFile(consultantId);
+
+        // Scrape the bitmap and save it to file to be able to compare it to the existing bitmap, also read from file
+        int tempId = TEMP_BITMAP_ID_OFFSET + consultantId;
+        try {
+            imageService.saveConsultantBitmapToFile(tempId, imageService.downloadConsultantBitmap(consultantId));
+            Bitmap scrapedBitmap = imageService.getConsultantBitmapFromFile(tempId);
+
+            if ((existingBitmap == null) || !existingBitmap.sameAs(scrapedBitmap)) {
+                imageService.saveConsultantBitmapToFile(consultantId, scrapedBitmap);
+                return true;
+            }
+            return false;
+        } finally {
+            imageService.deleteConsultantBitmapFile(tempId);
+        }
+    }
+
+    /**
+     * Compares one scraped consultant with the existing data, collecting the database
+     * writes and adding notifications for whatever has changed.
+     */
+    private static void mergeConsultant(ConsultantData scrapedConsultant, OfficeData office, HashMap<Integer, ConsultantData> existingHash,
+                                        Set<Integer> changedBitmapIds, PendingWrites pendingWrites, List<Notification> result) {
+        if (!existingHash.containsKey(scrapedConsultant.Id)) {
+            // Insert the consultant and link it to the correct office, the image has already been saved
+            scrapedConsultant.OfficeId = office.Id;
+            pendingWrites.Inserts.add(scrapedConsultant);
+            existingHash.put(scrapedConsultant.Id, scrapedConsultant);
+
+            // It's a new consultant
+            result.add(new ConsultantInsertedNotification(scrapedConsultant.Id, scrapedConsultant.FirstName, scrapedConsultant.LastName, office.Name));
+        }
+        else {
+            // It's an existing consultant
+            ConsultantData existing = existingHash.get(scrapedConsultant.Id);
+
+            // Have the consultant moved to another office?
+            if (existing.OfficeId != office.Id) {
+                pendingWrites.OfficeIds.put(existing.Id, office.Id);
+                result.add(new ConsultantUpdatedOfficeNotification(scrapedConsultant.Id, scrapedConsultant.FirstName, scrapedConsultant.LastName, office.Name));
+            }
+
+            // Has the name of the consultant changed?
+            if (!existing.FirstName.equals(scrapedConsultant.FirstName) ||
+                !existing.LastName.equals(scrapedConsultant.LastName)) {
+                pendingWrites.Names.add(scrapedConsultant);
+                result.add(new ConsultantUpdatedNameNotification(scrapedConsultant.Id, existing.FirstName, existing.LastName, scrapedConsultant.FirstName, scrapedConsultant.LastName, office.Name));
+            }
+
+            // Was the image found to be changed by a worker?
+            if (changedBitmapIds.contains(existing.Id))
+                result.add(new ConsultantUpdatedBitmapNotification(existing.Id, scrapedConsultant.FirstName, scrapedConsultant.LastName, office.Name));
+        }
+    }
+
+    /**
+     * Waits for an office to be scraped and unwraps any failure.
+     */
+    private static OfficeResult getOfficeResult(Future<OfficeResult> future, OfficeData office) throws IOException, KvadratAppException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KvadratAppException(String.format("Avbruten vid behandling av kontor! (Officeid: %d)", office.Id), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof KvadratAppException)
+                throw (KvadratAppException) cause;
+            throw new KvadratAppException(String.format("Fel vid behandling av kontor! (Officeid: %d)", office.Id), cause);
+        }
+    }
+
+    // Public methods
+
+    /**
+     * Compares the consultants of the offices, and deletes the offices that OfficeComparer
+     * found to be removed.
+     */
+    public static List<Notification> compare(final Set<Integer> removedOfficeIds) throws IOException, KvadratAppException {
+        final List<Notification> result = new ArrayList<>();
 
         long lastImageComparisonTimestamp = AppCtrl.getPrefsService().getImageComparisonTimestamp();
         if (lastImageComparisonTimestamp == 0) {
@@ -35,93 +233,213 @@ public class ConsultantComparer {
             lastImageComparisonTimestamp = System.currentTimeMillis();
             AppCtrl.getPrefsService().setImageComparisonTimestamp(lastImageComparisonTimestamp);
         }
-        boolean shouldCompareBitmaps = (System.currentTimeMillis() - lastImageComparisonTimestamp) >
+        final boolean shouldCompareBitmaps = (System.currentTimeMillis() - lastImageComparisonTimestamp) >
                 (1000 * 3600 * Constants.REFRESHER_CONSULTANT_IMAGE_COMPARISON_INTERVAL_HOURS);
 
-        // Get all offices from db
-        OfficeData[] offices = AppCtrl.getDb().getOfficeDataRepository().getAll();
+        // Get the remaining offices from db, with the fingerprints of their listings at the last refresh
+        List<OfficeData> remainingOffices = new ArrayList<>();
+        for (OfficeData od : AppCtrl.getDb().getOfficeDataRepository().getAll()) {
+            if (!removedOfficeIds.contains(od.Id))
+                remainingOffices.add(od);
+        }
+        OfficeData[] offices = remainingOffices.toArray(new OfficeData[remainingOffices.size()]);
+        Map<Integer, String> previousFingerprints = AppCtrl.getDb().getOfficeDataRepository().getListingFingerprints();
+
+        final WebPageScraper scraper = AppCtrl.getWebPageScraper();
+        final ImageService imageService = AppCtrl.getImageService();
 
-        // Load all consultants and create a hashmap for quick lookup
+        // Load all consultants and create a hashmap for quick lookup. The workers only read
+        // from the copy, the original is updated while merging.
         ConsultantData[] existingConsultants = AppCtrl.getDb().getConsultantDataRepository().getAll(true);
-        HashMap<Integer, ConsultantData> existingHash = new HashMap<>();
+        final HashMap<Integer, ConsultantData> existingHash = new HashMap<>();
         for (ConsultantData cd : existingConsultants)
-                existingHash.put(cd.Id, cd);
+            existingHash.put(cd.Id, cd);
+        final Map<Integer, ConsultantData> workerExistingHash = new HashMap<>(existingHash);
 
-        // Also build a hash of all scraped consultants to be able to detect deleted consultants later on
-        HashMap<Integer, ConsultantData> scrapedHash = new HashMap<>();
+        // Only offices whose listings have changed since the last refresh are compared, unless the
+        // images are due to be compared as well. When offices have been removed all are compared,
+        // since any of them may now list the consultants of a removed office.
+        final boolean shouldCompareAll = shouldCompareBitmaps || !removedOfficeIds.isEmpty();
 
-        // Loop the offices and request the consultants by them
-        for (OfficeData office : offices){
-            ConsultantData[] scrapedConsultants = AppCtrl.getWebPageScraper().scrapeConsultants(office.Id, 0);
+        // The office that does the image work of each consultant
+        final ConcurrentHashMap<Integer, Integer> imageOwners = new ConcurrentHashMap<>();
 
-            for (ConsultantData scrapedConsultant : scrapedConsultants){
-                try {
-                    scrapedHash.put(scrapedConsultant.Id, scrapedConsultant);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(Constants.REFRESHER_PARALLELISM, offices.length)));
+        try {
+            // Scrape the listings of the offices in parallel, and do the image work of a changed
+            // office right after its listing
+            List<OfficeResult> officeResults = new ArrayList<>();
+            List<Future<OfficeResult>> futures = new ArrayList<>();
+            for (OfficeData office : offices) {
+                final OfficeResult officeResult = new OfficeResult(office);
+                final String previousFingerprint = previousFingerprints.get(office.Id);
+                officeResults.add(officeResult);
+                futures.add(executor.submit(new Callable<OfficeResult>() {
+                    @Override
+                    public OfficeResult call() throws Exception {
+                        scrapeOffice(officeResult, scraper);
+                        officeResult.IsChanged = shouldCompareAll || !officeResult.Fingerprint.equals(previousFingerprint);
+                        if (officeResult.IsChanged)
+                            processImages(officeResult, workerExistingHash, imageOwners, shouldCompareBitmaps, imageService);
+                        return officeResult;
+                    }
+                }));
+            }
+
+            // Also build a hash of all scraped consultants to be able to detect deleted consultants later on
+            final HashMap<Integer, ConsultantData> scrapedHash = new HashMap<>();
+            List<OfficeResult> changedOffices = new ArrayList<>();
+            Set<Integer> failedOfficeIds = new HashSet<>();
+            Exception firstOfficeFailure = null;
 
-                    if (!existingHash.containsKey(scrapedConsultant.Id)) {
-                        // Insert the consultant and link it to the correct office
-                        scrapedConsultant.OfficeId = office.Id;
-                        AppCtrl.getDb().getConsultantDataRepository().insert(scrapedConsultant);
-                        // AppCtrl.getDb().getConsultantDataRepository().updateOffice(scrapedConsultant.Id, office.Id);
+            // The image results of all offices, since a consultant may be merged by another
+            // office than the one that did its image work
+            Set<Integer> failedNewIds = new HashSet<>();
+            Set<Integer> changedBitmapIds = new HashSet<>();
 
-                        // Download the image and save to file
-                        Bitmap bitmap = AppCtrl.getImageService().downloadConsultantBitmap(scrapedConsultant.Id);
-                        AppCtrl.getImageService().saveConsultantBitmapToFile(scrapedConsultant.Id, bitmap);
+            // Wait for all offices before merging, since the office that did the image work of
+            // a consultant may come after an office that merges it
+            for (int i = 0; i < offices.length; i++) {
+                OfficeResult officeResult = officeResults.get(i);
+                try {
+                    getOfficeResult(futures.get(i), offices[i]);
+                } catch (IOException | KvadratAppException e) {
+                    // Skip the office this time, the others can still be updated
+                    Log.w(TAG, String.format("Office %d failed: %s", offices[i].Id, e.getMessage()));
+                    failedOfficeIds.add(offices[i].Id);
+                    if (firstOfficeFailure == null)
+                        firstOfficeFailure = e;
 
-                        // It's a new consultant
-                        result.add(new ConsultantInsertedNotification(scrapedConsultant.Id, scrapedConsultant.FirstName, scrapedConsultant.LastName, office.Name));
+                    // The new consultants that it claimed have no images
+                    for (int id : officeResult.ImageIds) {
+                        if (!workerExistingHash.containsKey(id))
+                            failedNewIds.add(id);
                     }
-                    else {
-                        // It's an existing consultant
-                        ConsultantData existing = existingHash.get(scrapedConsultant.Id);
-
-                        // Have the consultant moved to another office?
-                        if (existing.OfficeId != office.Id) {
-                            AppCtrl.getDb().getConsultantDataRepository().updateOffice(existing.Id, office.Id);
-                            result.add(new ConsultantUpdatedOfficeNotification(scrapedConsultant.Id, scrapedConsultant.FirstName, scrapedConsultant.LastName, office.Name));
-                        }
+                    continue;
+                }
+                failedNewIds.addAll(officeResult.FailedNewIds);
+                changedBitmapIds.addAll(officeResult.ChangedBitmapIds);
 
-                        // Has the name of the consultant changed?
-                        if (!existing.FirstName.equals(scrapedConsultant.FirstName) ||
-                            !existing.LastName.equals(scrapedConsultant.LastName)) {
-                            AppCtrl.getDb().getConsultantDataRepository().updateName(existing.Id, scrapedConsultant.FirstName, scrapedConsultant.LastName);
-                            result.add(new ConsultantUpdatedNameNotification(scrapedConsultant.Id, existing.FirstName, existing.LastName, scrapedConsultant.FirstName, scrapedConsultant.LastName, office.Name));
-                        }
+                if (!officeResult.IsChanged) {
+                    // Unchanged, but its consultants are still listed in case another office lists them too
+                    for (ConsultantData scrapedConsultant : officeResult.Consultants)
+                        scrapedHash.put(scrapedConsultant.Id, scrapedConsultant);
+                    continue;
+                }
+                changedOffices.add(officeResult);
+            }
+
+            // Nothing could be scraped at all
+            if ((offices.length > 0) && (failedOfficeIds.size() == offices.length))
+                throw new KvadratAppException("Kunde inte läsa konsulter för något kontor!", firstOfficeFailure);
+
+            // Nothing to do unless some office has changed or has been removed
+            if (changedOffices.isEmpty() && removedOfficeIds.isEmpty())
+                return result;
+
+            final PendingWrites pendingWrites = new PendingWrites();
+            final Map<Integer, String> mergedFingerprints = new HashMap<>();
 
-                        // Should we compare bitmaps this time (determined earlier)?
-                        if (shouldCompareBitmaps){
-                            Bitmap existingBitmap = AppCtrl.getImageService().getConsultantBitmapFromFile(existing.Id);
-                            // Scrape the bitmap and save it to file to be able to compare it to the existing bitmap, also read from file
-                            AppCtrl.getImageService().saveConsultantBitmapToFile(100000, AppCtrl.getImageService().downloadConsultantBitmap(existing.Id));
-                            Bitmap scrapedBitmap = AppCtrl.getImageService().getConsultantBitmapFromFile(100000);
-
-                            if (!existingBitmap.sameAs(scrapedBitmap)){
-                                AppCtrl.getImageService().saveConsultantBitmapToFile(existing.Id, scrapedBitmap);
-                                result.add(new ConsultantUpdatedBitmapNotification(existing.Id, scrapedConsultant.FirstName, scrapedConsultant.LastName, office.Name));
-                            }
+            // Merge the results in office order
+            for (OfficeResult officeResult : changedOffices) {
+                OfficeData office = officeResult.Office;
+                boolean isComplete = true;
+                for (ConsultantData scrapedConsultant : officeResult.Consultants) {
+                    try {
+                        scrapedHash.put(scrapedConsultant.Id, scrapedConsultant);
+
+                        // New consultants without an image are picked up again on the next refresh
+                        if (failedNewIds.contains(scrapedConsultant.Id)) {
+                            isComplete = false;
+                            continue;
                         }
+
+                        mergeConsultant(scrapedConsultant, office, existingHash, changedBitmapIds, pendingWrites, result);
+                    } catch (Exception ex) {
+                        throw new KvadratAppException(String.format("Fel vid behandling av konsult tillhörande kontor! (Officeid: %d, konsultid: %d)", office.Id, scrapedConsultant.Id), ex);
                     }
-                } catch (Exception ex) {
-                    throw new KvadratAppException(String.format("Fel vid behandling av konsult tillhörande kontor! (Officeid: %d, konsultid: %d)", office.Id, scrapedConsultant.Id), ex);
                 }
+
+                // The listing is skipped from now on, unless it still has to be compared again
+                if (isComplete)
+                    mergedFingerprints.put(office.Id, officeResult.Fingerprint);
             }
-        }
 
-        // Loop all existing consultants and see if anyone of them is missing in the scraped data
-        for (ConsultantData exCon : existingConsultants) {
-            if (!scrapedHash.containsKey(exCon.Id)) {
-                // The consultant is gone, delete from database and create notification
-                AppCtrl.getDb().getConsultantDataRepository().delete(exCon.Id);
-                result.add(new ConsultantDeletedNotification(exCon.Id, exCon.FirstName, exCon.LastName, exCon.Office.Name));
+            // Loop all existing consultants and see if anyone of them is missing in the scraped data. Consultants
+            // of offices that failed are kept, since we don't know if they are still there.
+            for (ConsultantData exCon : existingConsultants) {
+                if (!scrapedHash.containsKey(exCon.Id) && !failedOfficeIds.contains(exCon.OfficeId)) {
+                    // The consultant is gone, delete from database and create notification
+                    pendingWrites.DeletedIds.add(exCon.Id);
+                    String officeName = (exCon.Office != null) ? exCon.Office.Name : "";
+                    result.add(new ConsultantDeletedNotification(exCon.Id, exCon.FirstName, exCon.LastName, officeName));
+                }
             }
-        }
 
-        // Update the timestamp for when images were being compared
-        if (shouldCompareBitmaps){
-            AppCtrl.getPrefsService().setImageComparisonTimestamp(System.currentTimeMillis());
+            // Save all changes in bulk together with the listings that they were made from, so that
+            // a listing is never skipped on the next refresh unless its changes were saved. The
+            // removed offices are deleted last, when no consultant refers to them any longer.
+            AppCtrl.getDb().runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    pendingWrites.save(AppCtrl.getDb().getConsultantDataRepository());
+                    AppCtrl.getDb().getOfficeDataRepository().updateListingFingerprints(mergedFingerprints);
+                    for (int officeId : removedOfficeIds)
+                        AppCtrl.getDb().getOfficeDataRepository().delete(officeId);
+                }
+            });
+
+            // Update the timestamp for when images were being compared, unless some offices were missed
+            if (shouldCompareBitmaps && failedOfficeIds.isEmpty()){
+                AppCtrl.getPrefsService().setImageComparisonTimestamp(System.currentTimeMillis());
+            }
+        } finally {
+            // Stops any offices that are still running if something went wrong
+            executor.shutdownNow();
         }
 
         return result;
     }
 
+    /**
+     * The database writes collected while merging, saved in a single transaction.
+     */
+    private static class PendingWrites {
+        final List<ConsultantData> Inserts = new ArrayList<>();
+        final Map<Integer, Integer> OfficeIds = new HashMap<>();
+        final List<ConsultantData> Names = new ArrayList<>();
+        final List<Integer> DeletedIds = new ArrayList<>();
+
+        void save(ConsultantDataRepository repository) {
+            if (!Inserts.isEmpty())
+                repository.insertAll(Inserts.toArray(new ConsultantData[Inserts.size()]));
+            if (!OfficeIds.isEmpty())
+                repository.updateOffices(OfficeIds);
+            if (!Names.isEmpty())
+                repository.updateNames(Names.toArray(new ConsultantData[Names.size()]));
+            if (!DeletedIds.isEmpty()) {
+                int[] ids = new int[DeletedIds.size()];
+                for (int i = 0; i < ids.length; i++)
+                    ids[i] = DeletedIds.get(i);
+                repository.deleteAll(ids);
+            }
+        }
+    }
+
+    /**
+     * What was scraped for one office.
+     */
+    private static class OfficeResult {
+        final OfficeData Office;
+        final List<ConsultantData> Consultants = new ArrayList<>();
+        String Fingerprint;
+        boolean IsChanged;
+        final Set<Integer> ImageIds = new HashSet<>();
+        final Set<Integer> ChangedBitmapIds = new HashSet<>();
+        final Set<Integer> FailedNewIds = new HashSet<>();
+
+        OfficeResult(OfficeData office) {
+            Office = office;
+        }
+    }
 }
@@ -10,8 +10,10 @@ import android.widget.Toast;
 
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 import se.danielkonsult.www.kvadratab.AppCtrl;
 import se.danielkonsult.www.kvadratab.helpers.Constants;
@@ -47,9 +49,10 @@ public class DefaultRefresherService extends BroadcastReceiver implements Refres
                         notifications.add(new InfoNotification("Refresh av data"));
                     }
 
-                    // Compare offices
-                    notifications.addAll(OfficeComparer.compare());
-                    notifications.addAll(ConsultantComparer.compare());
+                    // Compare offices, removed offices are deleted once their consultants have been dealt with
+                    Set<Integer> removedOfficeIds = new HashSet<>();
+                    notifications.addAll(OfficeComparer.compare(removedOfficeIds));
+                    notifications.addAll(ConsultantComparer.compare(removedOfficeIds));
 
                     // Send all notifications to the service
                     if (notifications.size() > 0) {
@@ -58,6 +61,9 @@ public class DefaultRefresherService extends BroadcastReceiver implements Refres
 
                         AppCtrl.getNotificationService().addAll(notifications, true);
                     }
+
+                    // Keep the stored notifications in check
+                    AppCtrl.getNotificationService().applyRetention();
                 } catch (Exception e) {
                     e.printStackTrace();
 
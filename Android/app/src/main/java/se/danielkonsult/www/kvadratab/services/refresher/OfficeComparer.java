@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
 
 import se.danielkonsult.www.kvadratab.AppCtrl;
 import se.danielkonsult.www.kvadratab.entities.OfficeData;
@@ -20,13 +21,24 @@ import se.danielkonsult.www.kvadratab.services.notification.OfficeDeletedNotific
  */
 public class OfficeComparer {
 
-    public static List<Notification> compare() throws IOException, KvadratAppException {
-        SummaryData summaryData = AppCtrl.getWebPageScraper().scrapeSummaryData();
-        OfficeData[] existingOffices = AppCtrl.getDb().getOfficeDataRepository().getAll();
-        OfficeData[] scrapedOffices = summaryData.OfficeDatas;
+    // Public methods
 
+    /**
+     * Compares the offices. Removed offices are not deleted here, since their consultants
+     * may have moved to other offices. Their ids are added to removedOfficeIds, which
+     * is passed on to ConsultantComparer that deletes them.
+     */
+    public static List<Notification> compare(Set<Integer> removedOfficeIds) throws IOException, KvadratAppException {
         List<Notification> result = new ArrayList<>();
 
+        // Nothing to compare if the summary page hasn't changed since the last time
+        SummaryData summaryData = AppCtrl.getWebPageScraper().scrapeSummaryDataIfModified();
+        if (summaryData == null)
+            return result;
+
+        OfficeData[] existingOffices = AppCtrl.getDb().getOfficeDataRepository().getAll();
+        OfficeData[] scrapedOffices = summaryData.OfficeDatas;
+
         if ((existingOffices == null) || (existingOffices.length == 0))
             throw new KvadratAppException("Kunde inte läsa kontor från databasen!");
         if ((scrapedOffices == null) || (scrapedOffices.length == 0))
@@ -46,7 +58,7 @@ public class OfficeComparer {
             try {
                 if (!scrapedHash.containsKey(od.Id)) {
                     result.add(new OfficeDeletedNotification(od.Id, od.Name));
-                    AppCtrl.getDb().getOfficeDataRepository().delete(od.Id);
+                    removedOfficeIds.add(od.Id);
                 }
                 else {
                     // It exists, but it might have changed?
@@ -75,6 +87,11 @@ public class OfficeComparer {
             }
         }
 
+        // Only now that all changes are stored may the page be treated as unchanged next time. Removed
+        // offices are still stored, so then the page is read again until they have been deleted.
+        if (removedOfficeIds.isEmpty())
+            AppCtrl.getWebPageScraper().saveValidator(summaryData.Validator);
+
         return result;
     }
 }
@@ -0,0 +1,86 @@
+package se.danielkonsult.www.kvadratab.helpers.http;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import se.danielkonsult.www.kvadratab.mocks.TestClock;
+
+/**
+ * Tests of when the circuit breaker stops and lets through requests to a host.
+ */
+public class CircuitBreakerTests {
+
+    // Private variables
+
+    private static final String HOST = "www.kvadrat.se";
+    private static final long OPEN_TIME_MS = 60000;
+
+    // Private methods
+
+    private static boolean isAllowed(CircuitBreaker breaker, String host) {
+        try {
+            breaker.checkAllowed(host);
+            return true;
+        } catch (CircuitOpenException e) {
+            return false;
+        }
+    }
+
+    // Tests
+
+    /**
+     * Test that a host is only stopped after the given number of failures in a row,
+     * and that other hosts aren't affected.
+     */
+    @Test
+    public void shouldOpenAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(3, OPEN_TIME_MS, new TestClock());
+
+        breaker.recordFailure(HOST);
+        breaker.recordFailure(HOST);
+        breaker.recordSuccess(HOST);
+        breaker.recordFailure(HOST);
+        breaker.recordFailure(HOST);
+        Assert.assertTrue(isAllowed(breaker, HOST));
+
+        breaker.recordFailure(HOST);
+        Assert.assertFalse(isAllowed(breaker, HOST));
+        Assert.assertTrue(isAllowed(breaker, "www.example.com"));
+    }
+
+    /**
+     * Test that a single trial request is let through once the open time has passed,
+     * and that it either closes the circuit or opens it for another period.
+     */
+    @Test
+    public void shouldLetOneTrialThroughWhenHalfOpen() {
+        TestClock clock = new TestClock();
+        CircuitBreaker breaker = new CircuitBreaker(3, OPEN_TIME_MS, clock);
+        for (int i = 0; i < 3; i++)
+            breaker.recordFailure(HOST);
+
+        clock.advance(OPEN_TIME_MS - 1);
+        Assert.assertFalse(isAllowed(breaker, HOST));
+
+        // Half open, only one request at a time
+        clock.advance(1);
+        Assert.assertTrue(isAllowed(breaker, HOST));
+        Assert.assertFalse(isAllowed(breaker, HOST));
+
+        // A failed trial opens it again at once
+        breaker.recordFailure(HOST);
+        Assert.assertFalse(isAllowed(breaker, HOST));
+        clock.advance(OPEN_TIME_MS - 1);
+        Assert.assertFalse(isAllowed(breaker, HOST));
+
+        // A successful trial closes it, and the failures are counted from the start
+        clock.advance(1);
+        Assert.assertTrue(isAllowed(breaker, HOST));
+        breaker.recordSuccess(HOST);
+        Assert.assertTrue(isAllowed(breaker, HOST));
+        Assert.assertTrue(isAllowed(breaker, HOST));
+        breaker.recordFailure(HOST);
+        breaker.recordFailure(HOST);
+        Assert.assertTrue(isAllowed(breaker, HOST));
+    }
+}
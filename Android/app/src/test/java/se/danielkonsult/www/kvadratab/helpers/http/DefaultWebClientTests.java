@@ -0,0 +1,229 @@
+package se.danielkonsult.www.kvadratab.helpers.http;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Random;
+
+import se.danielkonsult.www.kvadratab.helpers.Constants;
+import se.danielkonsult.www.kvadratab.mocks.TestClock;
+
+/**
+ * Tests of how the web client retries, backs off and reports to the circuit breaker.
+ * No requests are sent, each attempt fails with a given exception instead.
+ */
+public class DefaultWebClientTests {
+
+    // Private variables
+
+    private static final String URL = "http://www.kvadrat.se/konsulter/konsulter/";
+    private static final String HOST = "www.kvadrat.se";
+
+    // Private methods
+
+    private static Random fixedRandom(final double value) {
+        return new Random() {
+            @Override
+            public double nextDouble() {
+                return value;
+            }
+        };
+    }
+
+    private static ScriptedWebClient createClient(CircuitBreaker breaker, TestClock clock, IOException... failures) {
+        RequestScheduler scheduler = new RequestScheduler(1000, 1000, 10);
+        return new ScriptedWebClient(scheduler, breaker, clock, failures);
+    }
+
+    private static boolean isAllowed(CircuitBreaker breaker) {
+        try {
+            breaker.checkAllowed(HOST);
+            return true;
+        } catch (CircuitOpenException e) {
+            return false;
+        }
+    }
+
+    // Tests
+
+    /**
+     * Test which failures are worth another try.
+     */
+    @Test
+    public void shouldClassifyTransientFailures() {
+        Assert.assertTrue(DefaultWebClient.isTransient(new SocketTimeoutException()));
+        Assert.assertTrue(DefaultWebClient.isTransient(new UnknownHostException()));
+        Assert.assertTrue(DefaultWebClient.isTransient(new IOException("Connection reset")));
+        Assert.assertTrue(DefaultWebClient.isTransient(new HttpStatusException(408, URL, 0)));
+        Assert.assertTrue(DefaultWebClient.isTransient(new HttpStatusException(429, URL, 0)));
+        Assert.assertTrue(DefaultWebClient.isTransient(new HttpStatusException(500, URL, 0)));
+        Assert.assertTrue(DefaultWebClient.isTransient(new HttpStatusException(503, URL, 0)));
+
+        Assert.assertFalse(DefaultWebClient.isTransient(new HttpStatusException(400, URL, 0)));
+        Assert.assertFalse(DefaultWebClient.isTransient(new HttpStatusException(404, URL, 0)));
+        Assert.assertFalse(DefaultWebClient.isTransient(new InterruptedIOException()));
+        Assert.assertFalse(DefaultWebClient.isTransient(new CircuitOpenException(HOST)));
+    }
+
+    /**
+     * Test that the backoff doubles for each retry up to the max, and that the jitter
+     * keeps it between half and all of that.
+     */
+    @Test
+    public void shouldBackOffExponentiallyWithJitter() {
+        long base = Constants.WEBCLIENT_RETRY_BASE_DELAY_MS;
+        long max = Constants.WEBCLIENT_RETRY_MAX_DELAY_MS;
+
+        DefaultWebClient lowest = new DefaultWebClient(null, null, fixedRandom(0), new TestClock());
+        Assert.assertEquals(base / 2, lowest.getBackoffMs(1));
+        Assert.assertEquals(base, lowest.getBackoffMs(2));
+        Assert.assertEquals(base * 2, lowest.getBackoffMs(3));
+        Assert.assertEquals(max / 2, lowest.getBackoffMs(20));
+
+        DefaultWebClient highest = new DefaultWebClient(null, null, fixedRandom(0.9999), new TestClock());
+        Assert.assertTrue(highest.getBackoffMs(1) >= base - 1);
+        Assert.assertTrue(highest.getBackoffMs(1) <= base);
+        Assert.assertTrue(highest.getBackoffMs(20) >= max - 1);
+        Assert.assertTrue(highest.getBackoffMs(20) <= max);
+    }
+
+    /**
+     * Test how long a host is held back after 429 and 503, and that a server can't
+     * hold it back for longer than the cap.
+     */
+    @Test
+    public void shouldCapRetryAfter() {
+        Assert.assertEquals(Constants.WEBCLIENT_DEFAULT_RETRY_AFTER_MS, DefaultWebClient.getRetryAfterMs(429, null));
+        Assert.assertEquals(Constants.WEBCLIENT_DEFAULT_RETRY_AFTER_MS, DefaultWebClient.getRetryAfterMs(429, "soon"));
+        Assert.assertEquals(10000, DefaultWebClient.getRetryAfterMs(429, " 10 "));
+        Assert.assertEquals(0, DefaultWebClient.getRetryAfterMs(503, null));
+        Assert.assertEquals(2000, DefaultWebClient.getRetryAfterMs(503, "2"));
+        Assert.assertEquals(0, DefaultWebClient.getRetryAfterMs(404, "10"));
+
+        Assert.assertEquals(Constants.WEBCLIENT_MAX_RETRY_AFTER_MS, DefaultWebClient.getRetryAfterMs(429, "86400"));
+        Assert.assertEquals(Constants.WEBCLIENT_MAX_RETRY_AFTER_MS, DefaultWebClient.getRetryAfterMs(503, "Fri, 31 Dec 2100 23:59:59 GMT"));
+        Assert.assertEquals(0, DefaultWebClient.getRetryAfterMs(503, "Thu, 01 Jan 1970 00:00:00 GMT"));
+    }
+
+    /**
+     * Test that transient failures are retried after a backoff until a request succeeds.
+     */
+    @Test
+    public void shouldRetryTransientFailures() throws IOException {
+        TestClock clock = new TestClock();
+        ScriptedWebClient client = createClient(new CircuitBreaker(10, 60000, clock), clock,
+                new SocketTimeoutException(), new HttpStatusException(503, URL, 0));
+
+        client.execute(new WebRequest(URL, null));
+
+        Assert.assertEquals(3, client.Attempts);
+        List<Long> sleeps = clock.getSleeps();
+        Assert.assertEquals(2, sleeps.size());
+        Assert.assertTrue(sleeps.get(0) < sleeps.get(1));
+    }
+
+    /**
+     * Test that a transient failure is given up on after the last attempt.
+     */
+    @Test
+    public void shouldGiveUpAfterMaxAttempts() {
+        TestClock clock = new TestClock();
+        IOException[] failures = new IOException[Constants.WEBCLIENT_MAX_ATTEMPTS + 1];
+        for (int i = 0; i < failures.length; i++)
+            failures[i] = new SocketTimeoutException();
+        ScriptedWebClient client = createClient(new CircuitBreaker(10, 60000, clock), clock, failures);
+
+        try {
+            client.execute(new WebRequest(URL, null));
+            Assert.fail("The request should have failed");
+        } catch (IOException e) {
+            Assert.assertTrue(e instanceof SocketTimeoutException);
+        }
+        Assert.assertEquals(Constants.WEBCLIENT_MAX_ATTEMPTS, client.Attempts);
+        Assert.assertEquals(Constants.WEBCLIENT_MAX_ATTEMPTS - 1, clock.getSleeps().size());
+    }
+
+    /**
+     * Test that a failure that isn't retried only counts as a success for the circuit
+     * breaker when the host answered with a status.
+     */
+    @Test
+    public void shouldCountAnsweredFailureAsSuccess() {
+        TestClock clock = new TestClock();
+
+        // The host answered, so the earlier failure is forgotten
+        CircuitBreaker breaker = new CircuitBreaker(2, 60000, clock);
+        breaker.recordFailure(HOST);
+        ScriptedWebClient client = createClient(breaker, clock, new HttpStatusException(404, URL, 0));
+        try {
+            client.execute(new WebRequest(URL, null));
+            Assert.fail("The request should have failed");
+        } catch (IOException e) {
+            Assert.assertEquals(404, ((HttpStatusException) e).getStatusCode());
+        }
+        Assert.assertEquals(1, client.Attempts);
+        breaker.recordFailure(HOST);
+        Assert.assertTrue(isAllowed(breaker));
+
+        // Nothing is known about the host, so the earlier failure still counts
+        breaker = new CircuitBreaker(2, 60000, clock);
+        breaker.recordFailure(HOST);
+        client = createClient(breaker, clock, new InterruptedIOException());
+        try {
+            client.execute(new WebRequest(URL, null));
+            Assert.fail("The request should have failed");
+        } catch (IOException e) {
+            Assert.assertTrue(e instanceof InterruptedIOException);
+        }
+        Assert.assertEquals(1, client.Attempts);
+        breaker.recordFailure(HOST);
+        Assert.assertFalse(isAllowed(breaker));
+    }
+
+    /**
+     * Test that nothing is sent while the circuit of the host is open.
+     */
+    @Test
+    public void shouldNotSendWhileCircuitIsOpen() {
+        TestClock clock = new TestClock();
+        CircuitBreaker breaker = new CircuitBreaker(1, 60000, clock);
+        breaker.recordFailure(HOST);
+        ScriptedWebClient client = createClient(breaker, clock);
+
+        try {
+            client.execute(new WebRequest(URL, null));
+            Assert.fail("The request should have failed");
+        } catch (IOException e) {
+            Assert.assertTrue(e instanceof CircuitOpenException);
+        }
+        Assert.assertEquals(0, client.Attempts);
+    }
+
+    /**
+     * Web client whose attempts fail with the given exceptions in turn, and then
+     * succeed with an empty response.
+     */
+    private static class ScriptedWebClient extends DefaultWebClient {
+
+        private final IOException[] _failures;
+        int Attempts;
+
+        ScriptedWebClient(RequestScheduler scheduler, CircuitBreaker breaker, Clock clock, IOException[] failures) {
+            super(scheduler, breaker, new Random(), clock);
+            _failures = failures;
+        }
+
+        @Override
+        WebResponse executeOnce(WebRequest request, String host) throws IOException {
+            Attempts++;
+            if (Attempts <= _failures.length)
+                throw _failures[Attempts - 1];
+            return null;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package se.danielkonsult.www.kvadratab.helpers.http;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import se.danielkonsult.www.kvadratab.mocks.TestClock;
+
+/**
+ * Tests of the token bucket and Retry-After blocking of the request scheduler.
+ */
+public class RequestSchedulerTests {
+
+    // Private variables
+
+    private static final String HOST = "www.kvadrat.se";
+
+    // Private methods
+
+    private static void acquire(RequestScheduler scheduler, String host, int count) throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            scheduler.acquire(host);
+            scheduler.release(host);
+        }
+    }
+
+    // Tests
+
+    /**
+     * Test that a burst of requests is sent at once, and that the next one has to wait
+     * for a token.
+     */
+    @Test
+    public void shouldAllowBurst() throws InterruptedException {
+        TestClock clock = new TestClock();
+        RequestScheduler scheduler = new RequestScheduler(2, 3, 10, clock);
+
+        acquire(scheduler, HOST, 3);
+        Assert.assertEquals(0, clock.getSleeps().size());
+
+        acquire(scheduler, HOST, 1);
+        Assert.assertEquals(Arrays.asList(500L), clock.getSleeps());
+    }
+
+    /**
+     * Test that tokens are refilled at the given rate, but never beyond the burst.
+     */
+    @Test
+    public void shouldRefillTokens() throws InterruptedException {
+        TestClock clock = new TestClock();
+        RequestScheduler scheduler = new RequestScheduler(2, 3, 10, clock);
+        acquire(scheduler, HOST, 3);
+
+        // Two tokens a second
+        clock.advance(1000);
+        acquire(scheduler, HOST, 2);
+        Assert.assertEquals(0, clock.getSleeps().size());
+        acquire(scheduler, HOST, 1);
+        Assert.assertEquals(1, clock.getSleeps().size());
+
+        // A long pause only gives a full bucket
+        clock.advance(60000);
+        acquire(scheduler, HOST, 3);
+        Assert.assertEquals(1, clock.getSleeps().size());
+        acquire(scheduler, HOST, 1);
+        Assert.assertEquals(2, clock.getSleeps().size());
+    }
+
+    /**
+     * Test that a host is blocked for the time that a 429 asked for, even with tokens
+     * left, and that other hosts are not.
+     */
+    @Test
+    public void shouldWaitForRetryAfter() throws InterruptedException {
+        TestClock clock = new TestClock();
+        RequestScheduler scheduler = new RequestScheduler(2, 3, 10, clock);
+
+        long start = clock.currentTimeMillis();
+        scheduler.retryAfter(HOST, 5000);
+
+        acquire(scheduler, "www.example.com", 1);
+        Assert.assertEquals(start, clock.currentTimeMillis());
+
+        acquire(scheduler, HOST, 1);
+        Assert.assertEquals(start + 5000, clock.currentTimeMillis());
+
+        // A shorter block doesn't shorten a longer one
+        scheduler.retryAfter(HOST, 3000);
+        scheduler.retryAfter(HOST, 1000);
+        acquire(scheduler, HOST, 1);
+        Assert.assertEquals(start + 8000, clock.currentTimeMillis());
+    }
+}
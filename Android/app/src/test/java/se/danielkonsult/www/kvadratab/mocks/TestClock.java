@@ -0,0 +1,44 @@
+package se.danielkonsult.www.kvadratab.mocks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import se.danielkonsult.www.kvadratab.helpers.http.Clock;
+
+/**
+ * Clock whose time only moves when it's advanced or slept on. Sleeping returns at
+ * once and is recorded.
+ */
+public class TestClock implements Clock {
+
+    // Private variables
+
+    private long _timeMillis = 1000000;
+    private final List<Long> _sleeps = new ArrayList<>();
+
+    // Public methods
+
+    public synchronized void advance(long ms) {
+        _timeMillis += ms;
+    }
+
+    public synchronized List<Long> getSleeps() {
+        return new ArrayList<>(_sleeps);
+    }
+
+    @Override
+    public synchronized long currentTimeMillis() {
+        return _timeMillis;
+    }
+
+    @Override
+    public synchronized long nanoTime() {
+        return _timeMillis * 1000000;
+    }
+
+    @Override
+    public synchronized void sleep(long ms) {
+        _sleeps.add(ms);
+        _timeMillis += ms;
+    }
+}